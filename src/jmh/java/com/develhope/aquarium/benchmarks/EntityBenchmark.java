@@ -0,0 +1,108 @@
+package com.develhope.aquarium.benchmarks;
+
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rules of {@link Fish} and {@link Aquarium} applied in memory to an aquarium of generated fishes,
+ * the per-entity work of the ENTITY tick without the database. Results are per fish.
+ * Every call restores the generated stats at its end, so that all calls do the same work;
+ * the cost of the restore alone is measured by {@link #restore()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityBenchmark {
+
+    private static final int FISHES = 1024;
+
+    private Aquarium aquarium;
+    private Fish[] fishes;
+    private int[] hungers;
+    private int[] healths;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        aquarium = new Aquarium(1L, (long) FISHES, 100, 25, new ArrayList<>());
+        fishes = new Fish[FISHES];
+        hungers = new int[FISHES];
+        healths = new int[FISHES];
+        for (int i = 0; i < FISHES; i++) {
+            Fish fish = new Fish("Fish " + i, FishSpecies.values()[i % FishSpecies.values().length]);
+            hungers[i] = random.nextInt(101);
+            healths[i] = 1 + random.nextInt(100);
+            fishes[i] = fish;
+        }
+        restore();
+    }
+
+    /**
+     * Same loop as the ENTITY tick: fishes which die are removed from the aquarium.
+     * @param blackhole
+     */
+    @Benchmark
+    @OperationsPerInvocation(FISHES)
+    public void tick(Blackhole blackhole) {
+        aquarium.dirty(1);
+        for (Fish fish : fishes) {
+            fish.increaseHunger();
+            fish.updateHealth();
+            if (aquarium.getClearness() <= Aquarium.LOW_CLEARNESS) {
+                fish.decreaseHealth();
+            }
+            if (fish.getHealth() <= 0) {
+                aquarium.removeFish(fish);
+                fish.setAquarium(null);
+            }
+        }
+        blackhole.consume(aquarium.getFishes().size());
+        restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FISHES)
+    public void feed() {
+        for (Fish fish : fishes) {
+            fish.feed(1);
+        }
+        restore();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FISHES)
+    public void increaseAge() {
+        for (Fish fish : fishes) {
+            fish.increaseAge();
+        }
+        restore();
+    }
+
+    /**
+     * Puts back the generated stats and the fishes removed by a tick.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FISHES)
+    public void restore() {
+        aquarium.setClearness(100);
+        aquarium.getFishes().clear();
+        aquarium.getFishes().addAll(Arrays.asList(fishes));
+        for (int i = 0; i < FISHES; i++) {
+            fishes[i].setHunger(hungers[i]);
+            fishes[i].setHealth(healths[i]);
+            fishes[i].setAge(0L);
+            fishes[i].setAquarium(aquarium);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.develhope.aquarium.benchmarks;
+
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.exceptions.AquariumCapacityExceededException;
+import com.develhope.aquarium.exceptions.AquariumNotFoundException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticks and writes of {@link com.develhope.aquarium.services.AquariumService} against the embedded database,
+ * for every tick mode and population size of {@link SimulationState}.
+ * Reports throughput and the latency distribution, run with "-prof gc" for the allocation rate.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ServiceBenchmark {
+
+    @Benchmark
+    public void updateStats(SimulationState state) {
+        state.aquariumService.updateStats();
+    }
+
+    @Benchmark
+    public void updateFishesAge(SimulationState state) {
+        state.aquariumService.updateFishesAge();
+    }
+
+    @Benchmark
+    public Aquarium feedFishes(SimulationState state) throws AquariumNotFoundException {
+        return state.aquariumService.feedFishes(state.nextAquariumId(), 5);
+    }
+
+    @Benchmark
+    public Fish addFish(SimulationState state) throws AquariumNotFoundException, AquariumCapacityExceededException {
+        return state.aquariumService.addFish(state.nextAquariumId(), "Benchmark", FishSpecies.GOLDFISH);
+    }
+}
@@ -0,0 +1,138 @@
+package com.develhope.aquarium.benchmarks;
+
+import com.develhope.aquarium.AquariumApplication;
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import com.develhope.aquarium.simulation.StatsMaterializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application context running on an embedded H2 database with a generated population of fishes.
+ * Benchmarks change the population, so it's reset to its generated values every RESET_INTERVAL invocations,
+ * before any fish can die, any aquarium can get dirty or fill up, and the work done by a tick changes.
+ * Resets aren't timed, but the gc profiler counts their allocations spread over the invocations.
+ */
+@State(Scope.Benchmark)
+public class SimulationState {
+
+    // Fishes are generated with hunger <= 50 and health >= 80 in aquariums with clearness >= 60,
+    // so no fish gets very hungry and no aquarium gets dirty in 20 ticks
+    private static final int RESET_INTERVAL = 20;
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"1000", "10000"})
+    public int fishes;
+
+    @Param("10")
+    public int fishesPerAquarium;
+
+    @Param({"ENTITY", "BULK", "ENGINE", "LAZY"})
+    public TickMode mode;
+
+    public AquariumService aquariumService;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private int aquariums;
+    private int invocations;
+    private final AtomicLong nextAquarium = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+
+        // Passed as arguments, as default properties don't override application.yml.
+        // Single writes are measured, they don't wait for others to combine with
+        context = new SpringApplicationBuilder(AquariumApplication.class)
+                .profiles("benchmark")
+                .run("--aquarium.tick.mode=" + mode, "--aquarium.mailbox.combine-window=0");
+        aquariumService = context.getBean(AquariumService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        aquariums = Math.max(1, fishes / fishesPerAquarium);
+
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> generate());
+        reset();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetPeriodically() {
+        if (++invocations % RESET_INTERVAL == 0) {
+            reset();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /**
+     * @return the id of an aquarium, going through all of them in turn.
+     */
+    public long nextAquariumId() {
+        return 1 + nextAquarium.getAndIncrement() % aquariums;
+    }
+
+    /**
+     * Inserts the aquariums and the fishes with JDBC batches, their stats are set by the reset.
+     * Aquariums have room for the fishes added between two resets.
+     */
+    private void generate() {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= aquariums; id++) {
+            rows.add(new Object[]{id, (long) fishesPerAquarium + RESET_INTERVAL, 25});
+            if (rows.size() == BATCH_SIZE || id == aquariums) {
+                jdbcTemplate.batchUpdate("INSERT INTO aquariums (id, capacity, clearness, temperature) VALUES (?, ?, 100, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        FishSpecies[] species = FishSpecies.values();
+        for (long id = 1; id <= fishes; id++) {
+            rows.add(new Object[]{id, "Fish " + id, species[(int) (id % species.length)].name(), 1 + (id - 1) % aquariums});
+            if (rows.size() == BATCH_SIZE || id == fishes) {
+                jdbcTemplate.batchUpdate("INSERT INTO fishes (id, name, species, hunger, health, age, aquarium_id) VALUES (?, ?, ?, 0, 100, 0, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        // Fishes added by the benchmarks get ids after the generated ones
+        context.getBean(FishRepository.class).advanceIdSequence((long) fishes + Fish.ID_ALLOCATION_SIZE);
+    }
+
+    /**
+     * Removes the added fishes and sets the stats of all aquariums and fishes to their generated values,
+     * scattered but reproducible, then reloads the state held outside the database.
+     */
+    private void reset() {
+        jdbcTemplate.update("DELETE FROM fishes WHERE id > ?", fishes);
+        jdbcTemplate.update("UPDATE fishes SET hunger = MOD(id * 7919, 51), health = 80 + MOD(id * 104729, 21), age = 0, stats_tick = NULL");
+        jdbcTemplate.update("""
+                UPDATE aquariums SET clearness = 60 + MOD(id * 31, 41), stats_tick = NULL,
+                fish_count = (SELECT COUNT(*) FROM fishes f WHERE f.aquarium_id = aquariums.id)""");
+
+        if (mode == TickMode.ENGINE) {
+            context.getBean(SimulationEngine.class).load();
+        }
+        if (mode == TickMode.LAZY) {
+            StatsMaterializer statsMaterializer = context.getBean(StatsMaterializer.class);
+            statsMaterializer.rebase();
+            statsMaterializer.materializeAll();
+        }
+        context.getBean(EntityCache.class).invalidateAll();
+    }
+}
@@ -1,23 +1,75 @@
 package com.develhope.aquarium;
 
+import com.develhope.aquarium.caches.JsonSnapshots;
+import com.develhope.aquarium.cluster.PartitionLeases;
+import com.develhope.aquarium.configurations.ChangeFeedProperties;
+import com.develhope.aquarium.configurations.ClusterProperties;
+import com.develhope.aquarium.configurations.SnapshotProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.metrics.TickMetrics;
 import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.services.ChangeFeedService;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import com.develhope.aquarium.simulation.StatsMaterializer;
+import com.develhope.aquarium.simulation.TickScheduler;
+import com.develhope.aquarium.snapshots.StateSnapshots;
 import org.apache.catalina.core.ApplicationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-import java.util.Date;
+import java.io.IOException;
 import java.util.Timer;
 import java.util.TimerTask;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class AquariumApplication implements ApplicationRunner {
 
+	private static final Logger logger = LoggerFactory.getLogger(AquariumApplication.class);
+
 	@Autowired
 	private AquariumService aquariumService;
 
+	@Autowired
+	private SimulationEngine simulationEngine;
+
+	@Autowired
+	private TickProperties tickProperties;
+
+	@Autowired
+	private StatsMaterializer statsMaterializer;
+
+	@Autowired
+	private JsonSnapshots jsonSnapshots;
+
+	@Autowired
+	private StateSnapshots stateSnapshots;
+
+	@Autowired
+	private SnapshotProperties snapshotProperties;
+
+	@Autowired
+	private TickScheduler tickScheduler;
+
+	@Autowired
+	private PartitionLeases partitionLeases;
+
+	@Autowired
+	private ClusterProperties clusterProperties;
+
+	@Autowired
+	private ChangeFeedService changeFeedService;
+
+	@Autowired
+	private ChangeFeedProperties changeFeedProperties;
+
 	public static void main(String[] args) {
 		SpringApplication.run(AquariumApplication.class, args);
 	}
@@ -25,29 +77,167 @@ public class AquariumApplication implements ApplicationRunner {
 	@Override
 	public void run(ApplicationArguments args) throws Exception {
 
-		TimerTask updateStats = new TimerTask() {
+		// Restore the last snapshot before anything reads the database
+		boolean restored = snapshotProperties.getEnabled() && stateSnapshots.restore();
+		if (snapshotProperties.getEnabled()) {
+			startSnapshots();
+		}
+
+		startTombstonePruning();
+
+		// Take the share of partitions of this node before ticking any of them
+		if (clusterProperties.getEnabled()) {
+			startLeases();
+		}
+
+		// Finish the ticks a failure or a crash left halfway, before the next ones
+		// Failed segments are counted and logged, and tried again by the next run
+		try {
+			aquariumService.resumeTicks();
+		} catch (RuntimeException e) {
+			logger.warn("Resuming the unfinished ticks failed: {}", e.getMessage());
+		}
+
+		if (tickProperties.getMode() == TickMode.ENGINE) {
+			startSimulationEngine();
+		}
+
+		// In LAZY mode stats are computed when aquariums are read or written,
+		// so ticks only handle due fish events and age needs no timer
+		boolean lazy = tickProperties.getMode() == TickMode.LAZY;
+		if (lazy) {
+
+			// Restored stats ticks are already moved to the current clock
+			if (!restored) {
+				statsMaterializer.rebase();
+			}
+			statsMaterializer.materializeAll();
+		}
+
+		if (!tickProperties.getScheduled()) {
+			return;
+		}
+
+		// Stats every minute, late ticks are coalesced into the next run
+		tickScheduler.schedule(TickMetrics.STATS, tickProperties.getStatsPeriod(), ticks -> {
+			aquariumService.updateStats(ticks);
+			refreshJsonSnapshots();
+		});
+
+		if (lazy) {
+			return;
+		}
+
+		// Age every day
+		tickScheduler.schedule(TickMetrics.AGING, tickProperties.getAgingPeriod(), ticks -> {
+			aquariumService.updateFishesAge(ticks);
+			refreshJsonSnapshots();
+		});
+	}
+
+	/**
+	 * Rebuilds the JSON snapshots after a tick.
+	 * A failure leaves them stale until the next tick, and doesn't fail the tick, whose changes are already applied.
+	 */
+	private void refreshJsonSnapshots() {
+		try {
+			jsonSnapshots.refresh();
+		} catch (RuntimeException e) {
+			logger.warn("Refreshing the JSON snapshots failed: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Schedules the periodic snapshots of the simulation state, the last one is written on shutdown.
+	 */
+	private void startSnapshots() {
+
+		TimerTask snapshot = new TimerTask() {
+			public void run() {
+				try {
+					stateSnapshots.write();
+				} catch (IOException e) {
+
+					// Keep the timer running, the previous snapshot is left in place
+					logger.warn("Writing the snapshot failed: {}", e.getMessage());
+				}
+			}
+		};
+
+		Timer snapshotTimer = new Timer("Snapshot Timer", true);
+		long snapshotPeriod = snapshotProperties.getPeriod().toMillis();
+		snapshotTimer.scheduleAtFixedRate(snapshot, snapshotPeriod, snapshotPeriod);
+	}
+
+	/**
+	 * Schedules the pruning of the tombstones the change feed no longer retains.
+	 */
+	private void startTombstonePruning() {
+
+		TimerTask prune = new TimerTask() {
 			public void run() {
-				aquariumService.updateStats();
+				try {
+					changeFeedService.pruneTombstones();
+				} catch (RuntimeException e) {
+
+					// Keep the timer running, the tombstones are pruned by the next run
+					logger.warn("Pruning the tombstones failed: {}", e.getMessage());
+				}
 			}
 		};
 
-		TimerTask updateFishesAge = new TimerTask() {
+		Timer pruneTimer = new Timer("Prune Timer", true);
+		long prunePeriod = changeFeedProperties.getPrunePeriod().toMillis();
+		pruneTimer.scheduleAtFixedRate(prune, prunePeriod, prunePeriod);
+	}
+
+	/**
+	 * Joins the cluster and schedules the heartbeat renewing and rebalancing the partition leases.
+	 */
+	private void startLeases() {
+
+		partitionLeases.heartbeat();
+
+		TimerTask heartbeat = new TimerTask() {
 			public void run() {
-				aquariumService.updateFishesAge();
+				try {
+					partitionLeases.heartbeat();
+				} catch (RuntimeException e) {
+
+					// Keep the timer running, leases not renewed in time are left to the other nodes
+					logger.warn("Partition lease heartbeat failed: {}", e.getMessage());
+				}
 			}
 		};
 
-		Timer updateTimer = new Timer("Stats Timer");
-		Timer agingTimer = new Timer("Aging Timer");
+		Timer leaseTimer = new Timer("Lease Timer", true);
+		long heartbeatPeriod = clusterProperties.getHeartbeatPeriod().toMillis();
+		leaseTimer.scheduleAtFixedRate(heartbeat, heartbeatPeriod, heartbeatPeriod);
+	}
+
+	/**
+	 * Loads the simulation engine and schedules its write-behind flush.
+	 */
+	private void startSimulationEngine() {
+
+		simulationEngine.load();
+
+		TimerTask flush = new TimerTask() {
+			public void run() {
+				try {
+					simulationEngine.flush();
+				} catch (RuntimeException e) {
+
+					// Keep the timer running, the changes left unwritten are written by the next flush
+					logger.warn("Flushing the simulation engine failed: {}", e.getMessage());
+				}
+			}
+		};
 
-		// Update stats any minute
-		long updateDelay = 1000 * 60;
-		long updatePeriod = 1000 * 60;
-		updateTimer.scheduleAtFixedRate(updateStats, updateDelay, updatePeriod);
+		Timer flushTimer = new Timer("Flush Timer", true);
 
-		// Update age any day
-		long agingDelay = 1000 * 60 * 60 * 24;
-		long agingPeriod = 1000 * 60 * 60 * 24;
-		agingTimer.scheduleAtFixedRate(updateFishesAge, agingDelay, agingPeriod);
+		// Write engine changes to the database
+		long flushPeriod = tickProperties.getFlushPeriod().toMillis();
+		flushTimer.scheduleAtFixedRate(flush, flushPeriod, flushPeriod);
 	}
 }
@@ -0,0 +1,42 @@
+package com.develhope.aquarium.caches;
+
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+
+/**
+ * Already serialized JSON value, with the entity tag of its content.
+ * @param body
+ * @param etag hash of the body, so that it only changes when the body does.
+ */
+public record EncodedJson(byte[] body, String etag) {
+
+    /**
+     * @param body
+     * @return the encoded value with the given body.
+     */
+    public static EncodedJson of(byte[] body) {
+        return new EncodedJson(body, DigestUtils.md5DigestAsHex(body));
+    }
+
+    /**
+     * Joins the given encoded values into a JSON array, copying their bytes without serializing them again.
+     * @param values
+     * @return the encoded array.
+     */
+    public static EncodedJson arrayOf(Collection<EncodedJson> values) {
+        ByteArrayOutputStream array = new ByteArrayOutputStream(values.stream().mapToInt(value -> value.body().length + 1).sum() + 2);
+        array.write('[');
+        boolean first = true;
+        for (EncodedJson value : values) {
+            if (!first) {
+                array.write(',');
+            }
+            array.writeBytes(value.body());
+            first = false;
+        }
+        array.write(']');
+        return of(array.toByteArray());
+    }
+}
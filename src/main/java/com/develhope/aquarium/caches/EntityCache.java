@@ -0,0 +1,169 @@
+package com.develhope.aquarium.caches;
+
+import com.develhope.aquarium.configurations.CacheProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.dtos.AquariumDto;
+import com.develhope.aquarium.dtos.CacheStatistics;
+import com.develhope.aquarium.dtos.FishDto;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.TickMode;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Read-through caches of the find-by-id views of aquariums and fishes.
+ * Writes invalidate exactly the entries they change once their transaction has committed,
+ * ticks change every entity, so they invalidate everything.
+ * In ENGINE mode reads are already served from memory, so the caches are bypassed.
+ * Every invalidation is forwarded to the registered {@link EntityChangeListener}s.
+ */
+@Component
+public class EntityCache {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    private ReadThroughCache<Long, AquariumDto> aquariums;
+
+    // Fishes are grouped by aquarium, so that feeding an aquarium invalidates all its fishes
+    private ReadThroughCache<Long, CachedFish> fishes;
+
+    private final List<EntityChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        aquariums = new ReadThroughCache<>("aquariums", cacheProperties.getMaximumSize(), aquarium -> null);
+        fishes = new ReadThroughCache<>("fishes", cacheProperties.getMaximumSize(), CachedFish::aquariumId);
+    }
+
+    /**
+     * Registers the given listener, which is notified of every invalidation.
+     * @param listener
+     */
+    public void addListener(EntityChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Finds the view of the aquarium with the given id, loading it with the given loader on a miss.
+     * @param id
+     * @param loader
+     * @return an optional containing the found aquarium view.
+     */
+    public Optional<AquariumDto> findAquarium(Long id, Function<Long, Optional<Aquarium>> loader) {
+        if (!isEnabled()) {
+            return loader.apply(id).map(AquariumDto::from);
+        }
+        return aquariums.get(id, key -> loader.apply(key).map(AquariumDto::from));
+    }
+
+    /**
+     * Finds the view of the fish with the given id, loading it with the given loader on a miss.
+     * @param id
+     * @param loader
+     * @return an optional containing the found fish view.
+     */
+    public Optional<FishDto> findFish(Long id, Function<Long, Optional<Fish>> loader) {
+        if (!isEnabled()) {
+            return loader.apply(id).map(FishDto::from);
+        }
+        return fishes.get(id, key -> loader.apply(key).map(CachedFish::from)).map(CachedFish::fish);
+    }
+
+    /**
+     * Invalidates the aquarium with the given id, but not its fishes.
+     * @param aquariumId
+     */
+    public void invalidateAquarium(Long aquariumId) {
+        afterCommit(() -> {
+            aquariums.invalidate(aquariumId);
+            listeners.forEach(listener -> listener.aquariumChanged(aquariumId));
+        });
+    }
+
+    /**
+     * Invalidates the aquarium with the given id together with all its fishes.
+     * @param aquariumId
+     */
+    public void invalidateAquariumWithFishes(Long aquariumId) {
+        afterCommit(() -> {
+            aquariums.invalidate(aquariumId);
+            fishes.invalidateGroup(aquariumId);
+            listeners.forEach(listener -> listener.aquariumChanged(aquariumId));
+        });
+    }
+
+    /**
+     * Invalidates the fish with the given id together with the aquarium it lives in, if any.
+     * @param fishId
+     * @param aquariumId
+     */
+    public void invalidateFish(Long fishId, Long aquariumId) {
+        afterCommit(() -> {
+            fishes.invalidate(fishId);
+            if (aquariumId != null) {
+                aquariums.invalidate(aquariumId);
+            }
+            listeners.forEach(listener -> listener.fishChanged(fishId, aquariumId));
+        });
+    }
+
+    /**
+     * Invalidates all aquariums and fishes.
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            aquariums.invalidateAll();
+            fishes.invalidateAll();
+            listeners.forEach(EntityChangeListener::allChanged);
+        });
+    }
+
+    /**
+     * @return the statistics of the aquarium and fish caches.
+     */
+    public List<CacheStatistics> statistics() {
+        return List.of(aquariums.statistics(), fishes.statistics());
+    }
+
+    private boolean isEnabled() {
+        return cacheProperties.getEnabled() && tickProperties.getMode() != TickMode.ENGINE;
+    }
+
+    /**
+     * Runs the given invalidation after the current transaction commits, or right away if there isn't one,
+     * so that readers can't load and cache values which are going to change.
+     * @param invalidation
+     */
+    private void afterCommit(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        } else {
+            invalidation.run();
+        }
+    }
+
+    private record CachedFish(FishDto fish, Long aquariumId) {
+
+        private static CachedFish from(Fish fish) {
+            return new CachedFish(FishDto.from(fish), fish.getAquarium() == null ? null : fish.getAquarium().getId());
+        }
+    }
+}
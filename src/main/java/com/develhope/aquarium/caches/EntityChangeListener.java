@@ -0,0 +1,25 @@
+package com.develhope.aquarium.caches;
+
+/**
+ * Gets notified by {@link EntityCache} when aquariums or fishes change, once the change has committed.
+ */
+public interface EntityChangeListener {
+
+    /**
+     * Called when the aquarium with the given id, or the list of its fishes, changed or was deleted.
+     * @param aquariumId
+     */
+    void aquariumChanged(Long aquariumId);
+
+    /**
+     * Called when the fish with the given id changed or was deleted.
+     * @param fishId
+     * @param aquariumId id of the aquarium the fish lives in, null if it doesn't live in any.
+     */
+    void fishChanged(Long fishId, Long aquariumId);
+
+    /**
+     * Called when all aquariums and fishes changed, at the end of a tick.
+     */
+    void allChanged();
+}
@@ -0,0 +1,257 @@
+package com.develhope.aquarium.caches;
+
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.dtos.AquariumDto;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.services.FishService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable snapshots of the find-all responses and of every aquarium, already serialized to JSON,
+ * so that polling reads between ticks cost no query and no serialization.
+ * Snapshots are rebuilt at the end of every tick with {@link #refresh()}.
+ * Writes only mark the changed aquariums, which are loaded and serialized again on the next read,
+ * while the find-all array is joined again from the bytes of the other aquariums.
+ * Every rebuild of aquariums is passed to the registered {@link SnapshotListener}s.
+ */
+@Component
+public class JsonSnapshots implements EntityChangeListener {
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private FishService fishService;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Counts the ticks, a snapshot built at an older count is entirely stale
+    private final AtomicLong allChanges = new AtomicLong();
+
+    // Counts all changes, as any of them can change the list of fishes
+    private final AtomicLong fishChanges = new AtomicLong();
+
+    private final Set<Long> changedAquariumIds = ConcurrentHashMap.newKeySet();
+
+    private final List<SnapshotListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile AquariumsSnapshot aquariumsSnapshot;
+    private volatile FishesSnapshot fishesSnapshot;
+
+    @PostConstruct
+    public void init() {
+        entityCache.addListener(this);
+    }
+
+    /**
+     * Registers the given listener, which is passed every rebuild of aquariums.
+     * @param listener
+     */
+    public void addListener(SnapshotListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the find-all array of aquariums.
+     */
+    public EncodedJson allAquariums() {
+        return currentAquariums().all();
+    }
+
+    /**
+     * Finds the aquarium with the given id.
+     * Aquariums missing from the snapshot are looked up with {@link AquariumService#findById(Long)},
+     * in case they have been created in the meantime.
+     * @param id
+     * @return an optional containing the found aquarium.
+     */
+    public Optional<EncodedJson> aquarium(Long id) {
+        EncodedJson aquarium = currentAquariums().aquariums().get(id);
+        if (aquarium != null) {
+            return Optional.of(aquarium);
+        }
+        return aquariumService.findById(id).map(this::encode);
+    }
+
+    /**
+     * @return the find-all array of fishes.
+     */
+    public EncodedJson allFishes() {
+        FishesSnapshot snapshot = fishesSnapshot;
+        if (snapshot == null || snapshot.builtAt() != fishChanges.get()) {
+            snapshot = rebuildFishes();
+        }
+        return snapshot.all();
+    }
+
+    /**
+     * Rebuilds the stale snapshots, called at the end of every tick.
+     */
+    public void refresh() {
+        rebuildAquariums();
+        rebuildFishes();
+    }
+
+    /**
+     * Rebuilds the snapshot of aquariums if it's stale.
+     */
+    public void refreshAquariums() {
+        rebuildAquariums();
+    }
+
+    @Override
+    public void aquariumChanged(Long aquariumId) {
+        changedAquariumIds.add(aquariumId);
+        fishChanges.incrementAndGet();
+    }
+
+    @Override
+    public void fishChanged(Long fishId, Long aquariumId) {
+        if (aquariumId != null) {
+            changedAquariumIds.add(aquariumId);
+        }
+        fishChanges.incrementAndGet();
+    }
+
+    @Override
+    public void allChanged() {
+        allChanges.incrementAndGet();
+        fishChanges.incrementAndGet();
+    }
+
+    private AquariumsSnapshot currentAquariums() {
+        AquariumsSnapshot snapshot = aquariumsSnapshot;
+        if (snapshot == null || snapshot.builtAt() != allChanges.get() || !changedAquariumIds.isEmpty()) {
+            snapshot = rebuildAquariums();
+        }
+        return snapshot;
+    }
+
+    private synchronized AquariumsSnapshot rebuildAquariums() {
+        long changes = allChanges.get();
+        AquariumsSnapshot snapshot = aquariumsSnapshot;
+
+        // Marks are taken before loading, so that changes committed in the meantime stay marked
+        List<Long> changedIds = List.copyOf(changedAquariumIds);
+        changedAquariumIds.removeAll(changedIds);
+
+        SortedMap<Long, EncodedJson> aquariums;
+        Map<Long, AquariumDto> views = new TreeMap<>();
+        Set<Long> deletedIds = new TreeSet<>();
+        boolean all = snapshot == null || snapshot.builtAt() != changes;
+        if (all) {
+
+            // Load and serialize all aquariums
+            aquariums = new TreeMap<>();
+            for (Aquarium aquarium : findAllAquariums()) {
+                AquariumDto view = AquariumDto.from(aquarium);
+                views.put(view.id(), view);
+                aquariums.put(view.id(), encode(view));
+            }
+
+        } else if (!changedIds.isEmpty()) {
+
+            // Load and serialize only the changed aquariums, deleted ones are removed
+            aquariums = new TreeMap<>(snapshot.aquariums());
+            for (Long id : changedIds) {
+                Optional<AquariumDto> aquarium = aquariumService.findById(id);
+                if (aquarium.isPresent()) {
+                    views.put(id, aquarium.get());
+                    aquariums.put(id, encode(aquarium.get()));
+                } else {
+                    deletedIds.add(id);
+                    aquariums.remove(id);
+                }
+            }
+
+        } else {
+            return snapshot;
+        }
+
+        snapshot = new AquariumsSnapshot(changes, Collections.unmodifiableSortedMap(aquariums), EncodedJson.arrayOf(aquariums.values()));
+        aquariumsSnapshot = snapshot;
+
+        // Listeners are called while holding the lock, so they get rebuilds in order
+        for (SnapshotListener listener : listeners) {
+            if (all) {
+                listener.allAquariumsRebuilt(views);
+            } else {
+                listener.aquariumsRebuilt(views, deletedIds);
+            }
+        }
+        return snapshot;
+    }
+
+    private synchronized FishesSnapshot rebuildFishes() {
+        long changes = fishChanges.get();
+        FishesSnapshot snapshot = fishesSnapshot;
+        if (snapshot != null && snapshot.builtAt() == changes) {
+            return snapshot;
+        }
+
+        snapshot = new FishesSnapshot(changes, encode(findAllFishes()));
+        fishesSnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Finds all aquariums without writing them: in LAZY mode they are projected from a database cursor,
+     * as materializing them would lock every aquarium.
+     * @return the list of found aquariums.
+     */
+    private List<Aquarium> findAllAquariums() {
+        if (tickProperties.getMode() != TickMode.LAZY) {
+            return aquariumService.findAll();
+        }
+        List<Aquarium> aquariums = new ArrayList<>();
+        aquariumService.streamAll(aquariums::add);
+        return aquariums;
+    }
+
+    /**
+     * Finds all fishes without writing them, in the same way as {@link #findAllAquariums()}.
+     * @return the list of found fishes.
+     */
+    private List<Fish> findAllFishes() {
+        if (tickProperties.getMode() != TickMode.LAZY) {
+            return fishService.findAll();
+        }
+        List<Fish> fishes = new ArrayList<>();
+        fishService.streamAll(fishes::add);
+        return fishes;
+    }
+
+    private EncodedJson encode(Object value) {
+        try {
+            return EncodedJson.of(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record AquariumsSnapshot(long builtAt, SortedMap<Long, EncodedJson> aquariums, EncodedJson all) {
+    }
+
+    private record FishesSnapshot(long builtAt, EncodedJson all) {
+    }
+}
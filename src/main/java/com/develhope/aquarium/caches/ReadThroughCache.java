@@ -0,0 +1,117 @@
+package com.develhope.aquarium.caches;
+
+import com.develhope.aquarium.dtos.CacheStatistics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache backed by Caffeine, evicting the least used entries when full.
+ * Concurrent misses on the same key run the loader only once, the other readers wait for its result.
+ * Empty results aren't cached.
+ * Entries can be invalidated one at a time, by group or all together:
+ * entries whose load started before an invalidation covering them are never returned,
+ * even if the load was still running when the invalidation happened.
+ * @param <K> type of the keys.
+ * @param <V> type of the values.
+ */
+public class ReadThroughCache<K, V> {
+
+    private final String name;
+    private final Cache<K, Entry<V>> cache;
+    private final Function<V, Object> groupOf;
+
+    // Every load and invalidation takes a stamp, entries are valid if loaded after the invalidations covering them
+    private final AtomicLong stamps = new AtomicLong();
+    private volatile long allInvalidatedAt;
+    private final Map<Object, Long> groupsInvalidatedAt = new ConcurrentHashMap<>();
+
+    /**
+     * @param name name of the cache, used in statistics.
+     * @param maximumSize maximum number of entries.
+     * @param groupOf finds the group of a value, it may return null for values without group.
+     */
+    public ReadThroughCache(String name, long maximumSize, Function<V, Object> groupOf) {
+        this.name = name;
+        this.groupOf = groupOf;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the value with the given key, loading it on a miss.
+     * @param key
+     * @param loader
+     * @return an optional containing the found value.
+     */
+    public Optional<V> get(K key, Function<K, Optional<V>> loader) {
+        while (true) {
+            Entry<V> entry = cache.get(key, k -> {
+                long loadedAt = stamps.get();
+                return loader.apply(k).map(value -> new Entry<>(value, loadedAt)).orElse(null);
+            });
+
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (isValid(entry)) {
+                return Optional.of(entry.value());
+            }
+
+            // Loaded before an invalidation, load it again
+            cache.asMap().remove(key, entry);
+        }
+    }
+
+    /**
+     * Invalidates the value with the given key, waiting for its load if it's running.
+     * @param key
+     */
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Invalidates all values of the given group.
+     * @param group
+     */
+    public void invalidateGroup(Object group) {
+        groupsInvalidatedAt.put(group, stamps.incrementAndGet());
+    }
+
+    /**
+     * Invalidates all values.
+     */
+    public void invalidateAll() {
+        allInvalidatedAt = stamps.incrementAndGet();
+        groupsInvalidatedAt.clear();
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of the cache.
+     */
+    public CacheStatistics statistics() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(name, stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.estimatedSize());
+    }
+
+    private boolean isValid(Entry<V> entry) {
+        if (entry.loadedAt() < allInvalidatedAt) {
+            return false;
+        }
+        Object group = groupOf.apply(entry.value());
+        return group == null || entry.loadedAt() >= groupsInvalidatedAt.getOrDefault(group, 0L);
+    }
+
+    private record Entry<V>(V value, long loadedAt) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.develhope.aquarium.caches;
+
+import com.develhope.aquarium.dtos.AquariumDto;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gets passed the aquarium views every time {@link JsonSnapshots} rebuilds them, in the order of the rebuilds.
+ * Listeners are called while the snapshots are locked, so they must not block.
+ */
+public interface SnapshotListener {
+
+    /**
+     * Called when all aquariums have been rebuilt, at the end of a tick.
+     * @param aquariums views of all aquariums by id, aquariums missing from it don't exist anymore.
+     */
+    void allAquariumsRebuilt(Map<Long, AquariumDto> aquariums);
+
+    /**
+     * Called when only the aquariums changed by writes have been rebuilt.
+     * @param aquariums views of the changed aquariums by id.
+     * @param deletedIds ids of the deleted aquariums.
+     */
+    void aquariumsRebuilt(Map<Long, AquariumDto> aquariums, Set<Long> deletedIds);
+}
@@ -0,0 +1,43 @@
+package com.develhope.aquarium.changes;
+
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.ChangeEntityType;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Stamps the change version on aquariums and fishes written through the entity manager,
+ * and records a tombstone for the deleted ones, including deletions cascaded from other entities.
+ * Set-based statements stamp the version themselves.
+ */
+public class ChangeVersionListener {
+
+    // Lazy, as listeners are created together with the entity manager factory the repositories depend on
+    @Lazy
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @PrePersist
+    @PreUpdate
+    public void stamp(Object entity) {
+        long version = changeVersions.currentVersion();
+        if (entity instanceof Aquarium aquarium) {
+            aquarium.setChangeVersion(version);
+        } else if (entity instanceof Fish fish) {
+            fish.setChangeVersion(version);
+        }
+    }
+
+    @PreRemove
+    public void recordDeletion(Object entity) {
+        if (entity instanceof Aquarium aquarium) {
+            changeVersions.recordDeletion(ChangeEntityType.AQUARIUM, aquarium.getId());
+        } else if (entity instanceof Fish fish) {
+            changeVersions.recordDeletion(ChangeEntityType.FISH, fish.getId());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.develhope.aquarium.changes;
+
+import com.develhope.aquarium.entities.Tombstone;
+import com.develhope.aquarium.enumerations.ChangeEntityType;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.repositories.TombstoneRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Hands out the monotonically increasing versions of the change feed.
+ * Every transaction writing aquariums or fishes takes one version, stamped on all the rows it writes
+ * and on the tombstones of the rows it deletes.
+ * Transactions commit in any order, so the feed only exposes versions up to the watermark:
+ * the highest version below which every transaction has completed.
+ */
+@Component
+public class ChangeVersions {
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private long lastVersion;
+
+    // Versions of the transactions still running
+    private final SortedSet<Long> runningVersions = new TreeSet<>();
+
+    @PostConstruct
+    public void init() {
+
+        // Continue from the last stored version
+        lastVersion = Math.max(aquariumRepository.findMaxChangeVersion(),
+                Math.max(fishRepository.findMaxChangeVersion(), tombstoneRepository.findMaxChangeVersion()));
+    }
+
+    /**
+     * Gets the version of the current transaction, taking a new one on its first write.
+     * Outside of transactions every call takes a new version.
+     * @return the version.
+     */
+    public long currentVersion() {
+        return currentChanges().version;
+    }
+
+    /**
+     * Records the deletion of the given entity, its tombstone is written when the current transaction commits.
+     * @param entityType
+     * @param entityId
+     */
+    public void recordDeletion(ChangeEntityType entityType, Long entityId) {
+        TransactionChanges changes = currentChanges();
+        changes.tombstones.add(new Tombstone(entityType, entityId, changes.version));
+    }
+
+    /**
+     * @return the last version handed out, committed or not.
+     */
+    public synchronized long lastVersion() {
+        return lastVersion;
+    }
+
+    /**
+     * Makes the next versions greater than the given one, which a restored snapshot had already reached.
+     * Versions are never moved back.
+     * @param version
+     */
+    public synchronized void advanceTo(long version) {
+        lastVersion = Math.max(lastVersion, version);
+    }
+
+    /**
+     * @return the highest version such that every version up to it has been committed or rolled back.
+     */
+    public synchronized long watermark() {
+        return runningVersions.isEmpty() ? lastVersion : runningVersions.first() - 1;
+    }
+
+    private TransactionChanges currentChanges() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new TransactionChanges(nextVersion(false));
+        }
+
+        TransactionChanges changes = (TransactionChanges) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            TransactionChanges newChanges = new TransactionChanges(nextVersion(true));
+            TransactionSynchronizationManager.bindResource(this, newChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+
+                    // Tombstones are persisted before the final flush, together with the deletions
+                    newChanges.tombstones.forEach(entityManager::persist);
+                    newChanges.tombstones.clear();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeVersions.this);
+                    complete(newChanges.version);
+                }
+            });
+            changes = newChanges;
+        }
+        return changes;
+    }
+
+    private synchronized long nextVersion(boolean running) {
+        lastVersion++;
+        if (running) {
+            runningVersions.add(lastVersion);
+        }
+        return lastVersion;
+    }
+
+    private synchronized void complete(long version) {
+        runningVersions.remove(version);
+    }
+
+    private static class TransactionChanges {
+
+        private final long version;
+        private final List<Tombstone> tombstones = new ArrayList<>();
+
+        private TransactionChanges(long version) {
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.develhope.aquarium.cluster;
+
+import com.develhope.aquarium.configurations.ClusterProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.entities.ClusterNode;
+import com.develhope.aquarium.entities.TickLease;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.ClusterNodeRepository;
+import com.develhope.aquarium.repositories.TickLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Splits the aquariums among the nodes sharing the database, so that every tick runs once on the whole world.
+ * Aquariums are grouped in partitions of "partition-width" consecutive ids, and every partition has a {@link TickLease}.
+ * Every heartbeat a node renews its leases and takes its fair share of the partitions among the live nodes:
+ * it releases the partitions above the share, for joining nodes to claim them,
+ * and claims the free ones and the ones of nodes which stopped renewing, with a conditional update.
+ * A node only ticks the partitions it holds, and checks the lease again in the transaction of every chunk,
+ * so a partition handed over halfway is resumed from its checkpoint by the new owner.
+ * Nodes don't share a clock, so a partition handed over may get one tick more or less than the others.
+ * When the cluster is disabled the node holds every partition.
+ * Only ENTITY and BULK ticks can run in a cluster, the other modes keep state in the node:
+ * in ENGINE mode every node would flush its own copy of the world over the others,
+ * and in LAZY mode stats ticks are counted from the start of the node which wrote them.
+ */
+@Component
+public class PartitionLeases {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionLeases.class);
+
+    @Autowired
+    private ClusterProperties clusterProperties;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private ClusterNodeRepository clusterNodeRepository;
+
+    @Autowired
+    private TickLeaseRepository tickLeaseRepository;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private String nodeId;
+
+    // Partitions held after the last heartbeat, trusted until the leases expire
+    private volatile Set<Long> ownedPartitions = Set.of();
+    private volatile Instant ownedUntil = Instant.MIN;
+
+    private boolean left;
+
+    @PostConstruct
+    public void init() {
+        TickMode mode = tickProperties.getMode();
+        if (clusterProperties.getEnabled() && mode != TickMode.ENTITY && mode != TickMode.BULK) {
+            throw new IllegalStateException("The cluster can't be enabled in " + mode + " tick mode");
+        }
+        nodeId = clusterProperties.getNodeId() != null ? clusterProperties.getNodeId() : UUID.randomUUID().toString();
+    }
+
+    /**
+     * Renews this node and its leases, then rebalances the partitions among the live nodes.
+     * Nodes joining or leaving are balanced within a couple of heartbeats of every node.
+     */
+    public synchronized void heartbeat() {
+        if (!clusterProperties.getEnabled() || left) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(clusterProperties.getLeaseDuration());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // Announce this node and forget the ones which stopped renewing
+        transactionTemplate.executeWithoutResult(status -> {
+            clusterNodeRepository.save(new ClusterNode(nodeId, expiresAt));
+            clusterNodeRepository.deleteExpired(now);
+        });
+
+        createLeases(transactionTemplate);
+
+        ownedPartitions = transactionTemplate.execute(status -> rebalance(now, expiresAt));
+        ownedUntil = expiresAt;
+    }
+
+    /**
+     * Releases all leases of this node and leaves the cluster, so that the other nodes take its partitions
+     * on their next heartbeat instead of waiting for the leases to expire.
+     */
+    @PreDestroy
+    public synchronized void leave() {
+        if (!clusterProperties.getEnabled() || left) {
+            return;
+        }
+        left = true;
+        ownedPartitions = Set.of();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            tickLeaseRepository.releaseAll(nodeId);
+            clusterNodeRepository.deleteById(nodeId);
+        });
+    }
+
+    /**
+     * @param aquariumId
+     * @return the partition of the given aquarium, always 0 when the cluster is disabled.
+     */
+    public long partitionOf(Long aquariumId) {
+        return clusterProperties.getEnabled() ? aquariumId / clusterProperties.getPartitionWidth() : 0;
+    }
+
+    /**
+     * @param partition
+     * @return whether this node held the lease of the given partition at the last heartbeat, and it didn't expire since.
+     */
+    public boolean owns(long partition) {
+        if (!clusterProperties.getEnabled()) {
+            return true;
+        }
+        return ownedPartitions.contains(partition) && Instant.now().isBefore(ownedUntil);
+    }
+
+    /**
+     * @param aquariumId
+     * @return whether this node ticks the given aquarium.
+     */
+    public boolean ownsAquarium(Long aquariumId) {
+        return owns(partitionOf(aquariumId));
+    }
+
+    /**
+     * Checks in the database that this node still holds the lease of the given partition,
+     * locking it until the end of the current transaction so that it can't be released or claimed meanwhile.
+     * @param partition
+     * @return whether the lease is held.
+     */
+    public boolean holds(long partition) {
+        if (!clusterProperties.getEnabled()) {
+            return true;
+        }
+        return tickLeaseRepository.findHeldForUpdate(partition, nodeId, Instant.now()).isPresent();
+    }
+
+    /**
+     * @return the partitions held after the last heartbeat.
+     */
+    public Set<Long> getOwnedPartitions() {
+        return ownedPartitions;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Creates the leases of the partitions of the aquariums created since the last heartbeat.
+     * Another node may create the same leases at the same time, they are then left to it.
+     * @param transactionTemplate
+     */
+    private void createLeases(TransactionTemplate transactionTemplate) {
+        long partitions = partitionOf(aquariumRepository.findMaxId()) + 1;
+        long created = tickLeaseRepository.findMaxPartitionNumber() + 1;
+        if (created >= partitions) {
+            return;
+        }
+
+        List<TickLease> leases = new ArrayList<>();
+        for (long partition = created; partition < partitions; partition++) {
+            leases.add(new TickLease(partition));
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> tickLeaseRepository.saveAllAndFlush(leases));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Leases created by another node: {}", e.getMessage());
+        }
+    }
+
+    private Set<Long> rebalance(Instant now, Instant expiresAt) {
+        tickLeaseRepository.renew(nodeId, expiresAt);
+
+        List<TickLease> leases = tickLeaseRepository.findAllOrdered();
+        long liveNodes = Math.max(1, clusterNodeRepository.countLive(now));
+        long share = Math.ceilDiv(leases.size(), liveNodes);
+
+        TreeSet<Long> owned = new TreeSet<>();
+        for (TickLease lease : leases) {
+            if (nodeId.equals(lease.getOwner())) {
+                owned.add(lease.getPartitionNumber());
+            }
+        }
+
+        // Give back the partitions above the fair share, for the nodes which joined to claim them
+        while (owned.size() > share) {
+            tickLeaseRepository.release(owned.pollLast(), nodeId);
+        }
+
+        // Claim free partitions, and the ones of nodes which stopped renewing, up to the fair share
+        for (TickLease lease : leases) {
+            if (owned.size() >= share) {
+                break;
+            }
+            boolean free = lease.getOwner() == null || !lease.getExpiresAt().isAfter(now);
+            if (free && tickLeaseRepository.claim(lease.getPartitionNumber(), nodeId, now, expiresAt) == 1) {
+                owned.add(lease.getPartitionNumber());
+            }
+        }
+        return Set.copyOf(owned);
+    }
+}
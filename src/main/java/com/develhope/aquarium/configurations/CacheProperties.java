@@ -0,0 +1,39 @@
+package com.develhope.aquarium.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the read-through caches of aquariums and fishes, bound from the "aquarium.cache" prefix.
+ */
+@ConfigurationProperties(prefix = "aquarium.cache")
+public class CacheProperties {
+
+    /**
+     * Whether find-by-id reads are served from the caches.
+     */
+    private Boolean enabled = true;
+
+    /**
+     * Maximum number of entries of each cache, least used entries are evicted first.
+     */
+    private Long maximumSize = 10_000L;
+
+
+    // Getter and Setter
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(Long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+}
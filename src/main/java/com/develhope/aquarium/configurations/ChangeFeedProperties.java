@@ -0,0 +1,42 @@
+package com.develhope.aquarium.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the change feed, bound from the "aquarium.changes" prefix.
+ */
+@ConfigurationProperties(prefix = "aquarium.changes")
+public class ChangeFeedProperties {
+
+    /**
+     * Number of versions below the watermark whose deletions are kept,
+     * older tombstones are pruned and the feed can't be read since an older version.
+     */
+    private Long retainedVersions = 1_000_000L;
+
+    /**
+     * How often the tombstones older than the oldest retained version are pruned.
+     */
+    private Duration prunePeriod = Duration.ofMinutes(10);
+
+
+    // Getter and Setter
+
+    public Long getRetainedVersions() {
+        return retainedVersions;
+    }
+
+    public void setRetainedVersions(Long retainedVersions) {
+        this.retainedVersions = retainedVersions;
+    }
+
+    public Duration getPrunePeriod() {
+        return prunePeriod;
+    }
+
+    public void setPrunePeriod(Duration prunePeriod) {
+        this.prunePeriod = prunePeriod;
+    }
+}
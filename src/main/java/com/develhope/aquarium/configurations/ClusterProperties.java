@@ -0,0 +1,83 @@
+package com.develhope.aquarium.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the nodes sharing one database, bound from the "aquarium.cluster" prefix.
+ */
+@ConfigurationProperties(prefix = "aquarium.cluster")
+public class ClusterProperties {
+
+    /**
+     * Whether ticks only run on the aquarium partitions leased by this node.
+     * When disabled the node ticks the whole world, as a single node should.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * Name of this node in the lease table, a random one is taken when missing.
+     * Must be unique among the nodes sharing the database.
+     */
+    private String nodeId;
+
+    /**
+     * How long a lease lasts without being renewed, after that the partition can be claimed by another node.
+     */
+    private Duration leaseDuration = Duration.ofSeconds(30);
+
+    /**
+     * How often leases are renewed and partitions are rebalanced among the live nodes.
+     * Should be well below the lease duration.
+     */
+    private Duration heartbeatPeriod = Duration.ofSeconds(10);
+
+    /**
+     * Number of consecutive aquarium ids in a partition.
+     */
+    private Long partitionWidth = 1000L;
+
+
+    // Getter and Setter
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public Duration getHeartbeatPeriod() {
+        return heartbeatPeriod;
+    }
+
+    public void setHeartbeatPeriod(Duration heartbeatPeriod) {
+        this.heartbeatPeriod = heartbeatPeriod;
+    }
+
+    public Long getPartitionWidth() {
+        return partitionWidth;
+    }
+
+    public void setPartitionWidth(Long partitionWidth) {
+        this.partitionWidth = partitionWidth;
+    }
+}
@@ -0,0 +1,56 @@
+package com.develhope.aquarium.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the per-aquarium command mailboxes, bound from the "aquarium.mailbox" prefix.
+ */
+@ConfigurationProperties(prefix = "aquarium.mailbox")
+public class MailboxProperties {
+
+    /**
+     * Whether writes on an aquarium are queued in its mailbox and run one at a time.
+     * When disabled they run right away on the calling thread.
+     */
+    private Boolean enabled = true;
+
+    /**
+     * Maximum number of queued commands of an aquarium run in one transaction.
+     */
+    private Integer maxBatchSize = 100;
+
+    /**
+     * How long a combinable mutation, like a feeding or a cleaning, waits in the mailbox for the following ones,
+     * so that a burst of them is written once. Zero doesn't wait.
+     */
+    private Duration combineWindow = Duration.ofMillis(20);
+
+
+    // Getter and Setter
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Integer getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(Integer maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public Duration getCombineWindow() {
+        return combineWindow;
+    }
+
+    public void setCombineWindow(Duration combineWindow) {
+        this.combineWindow = combineWindow;
+    }
+}
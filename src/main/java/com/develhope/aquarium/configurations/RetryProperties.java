@@ -0,0 +1,55 @@
+package com.develhope.aquarium.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the retries of writes failed on an optimistic lock conflict, bound from the "aquarium.retry" prefix.
+ */
+@ConfigurationProperties(prefix = "aquarium.retry")
+public class RetryProperties {
+
+    /**
+     * Maximum number of times a write is tried, the conflict of the last one is thrown.
+     */
+    private Integer maxAttempts = 5;
+
+    /**
+     * Backoff before the first retry, doubled at every following one.
+     * The actual wait is a random time up to the backoff, so that conflicting writers don't retry together.
+     */
+    private Duration initialBackoff = Duration.ofMillis(5);
+
+    /**
+     * Maximum backoff before a retry.
+     */
+    private Duration maxBackoff = Duration.ofMillis(200);
+
+
+    // Getter and Setter
+
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+}
@@ -0,0 +1,69 @@
+package com.develhope.aquarium.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the binary snapshots of the simulation state, bound from the "aquarium.snapshot" prefix.
+ */
+@ConfigurationProperties(prefix = "aquarium.snapshot")
+public class SnapshotProperties {
+
+    /**
+     * Whether the state is written to the snapshot file periodically and on shutdown,
+     * and restored from it on startup when the database is empty.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * Location of the snapshot file.
+     */
+    private Path path = Path.of("snapshots", "aquarium.snapshot");
+
+    /**
+     * How often the snapshot file is written.
+     */
+    private Duration period = Duration.ofMinutes(5);
+
+    /**
+     * Number of rows inserted in one JDBC batch by a restore.
+     */
+    private Integer batchSize = 1000;
+
+
+    // Getter and Setter
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void setPath(Path path) {
+        this.path = path;
+    }
+
+    public Duration getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+}
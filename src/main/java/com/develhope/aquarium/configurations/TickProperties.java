@@ -0,0 +1,122 @@
+package com.develhope.aquarium.configurations;
+
+import com.develhope.aquarium.enumerations.TickMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the simulation ticks, bound from the "aquarium.tick" prefix.
+ */
+@ConfigurationProperties(prefix = "aquarium.tick")
+public class TickProperties {
+
+    /**
+     * Strategy used by the stats and aging ticks.
+     */
+    private TickMode mode = TickMode.ENTITY;
+
+    /**
+     * Whether the stats and aging ticks run on timers, benchmarks turn them off to run ticks themselves.
+     */
+    private Boolean scheduled = true;
+
+    /**
+     * Period of the stats tick.
+     */
+    private Duration statsPeriod = Duration.ofMinutes(1);
+
+    /**
+     * Period of the aging tick.
+     */
+    private Duration agingPeriod = Duration.ofDays(1);
+
+    /**
+     * Maximum number of segments of aquariums processed at the same time by the ENTITY and BULK ticks.
+     * Every running segment holds a database connection.
+     */
+    private Integer parallelism = 1;
+
+    /**
+     * Maximum number of aquariums in a chunk of the ENTITY and BULK ticks,
+     * each chunk is committed in its own transaction together with the tick checkpoint.
+     */
+    private Integer partitionSize = 1000;
+
+    /**
+     * How often the simulation engine writes its changes to the database (ENGINE mode only).
+     */
+    private Duration flushPeriod = Duration.ofSeconds(10);
+
+    /**
+     * Maximum number of rows written in one batch by the simulation engine.
+     */
+    private Integer flushBatchSize = 500;
+
+
+    // Getter and Setter
+
+    public TickMode getMode() {
+        return mode;
+    }
+
+    public void setMode(TickMode mode) {
+        this.mode = mode;
+    }
+
+    public Boolean getScheduled() {
+        return scheduled;
+    }
+
+    public void setScheduled(Boolean scheduled) {
+        this.scheduled = scheduled;
+    }
+
+    public Duration getStatsPeriod() {
+        return statsPeriod;
+    }
+
+    public void setStatsPeriod(Duration statsPeriod) {
+        this.statsPeriod = statsPeriod;
+    }
+
+    public Duration getAgingPeriod() {
+        return agingPeriod;
+    }
+
+    public void setAgingPeriod(Duration agingPeriod) {
+        this.agingPeriod = agingPeriod;
+    }
+
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Integer getPartitionSize() {
+        return partitionSize;
+    }
+
+    public void setPartitionSize(Integer partitionSize) {
+        this.partitionSize = partitionSize;
+    }
+
+    public Duration getFlushPeriod() {
+        return flushPeriod;
+    }
+
+    public void setFlushPeriod(Duration flushPeriod) {
+        this.flushPeriod = flushPeriod;
+    }
+
+    public Integer getFlushBatchSize() {
+        return flushBatchSize;
+    }
+
+    public void setFlushBatchSize(Integer flushBatchSize) {
+        this.flushBatchSize = flushBatchSize;
+    }
+}
@@ -1,29 +1,59 @@
 package com.develhope.aquarium.controllers;
 
+import com.develhope.aquarium.caches.EncodedJson;
+import com.develhope.aquarium.caches.JsonSnapshots;
+import com.develhope.aquarium.dtos.AquariumDto;
+import com.develhope.aquarium.dtos.AquariumSummary;
+import com.develhope.aquarium.dtos.FeedRequest;
+import com.develhope.aquarium.dtos.FishCreationResult;
+import com.develhope.aquarium.dtos.FishRequest;
+import com.develhope.aquarium.dtos.KeysetPage;
 import com.develhope.aquarium.entities.Aquarium;
 import com.develhope.aquarium.entities.Fish;
 import com.develhope.aquarium.enumerations.FishSpecies;
 import com.develhope.aquarium.exceptions.AquariumCapacityExceededException;
 import com.develhope.aquarium.exceptions.AquariumNotFoundException;
 import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.streams.AquariumDeltaPublisher;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @CrossOrigin
 @RestController
 @RequestMapping("/aquariums")
 public class AquariumController {
 
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    private static final int MAX_PAGE_LIMIT = 1000;
+
     @Autowired
     private AquariumService aquariumService;
 
+    @Autowired
+    private JsonSnapshots jsonSnapshots;
+
+    @Autowired
+    private AquariumDeltaPublisher aquariumDeltaPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping("/create")
     public ResponseEntity<Aquarium> create(@RequestBody Aquarium aquarium) {
         Aquarium savedAquarium = aquariumService.save(aquarium);
@@ -31,20 +61,45 @@ public class AquariumController {
     }
 
     @GetMapping("/find-all")
-    public ResponseEntity<List<Aquarium>> findAll() {
-        List<Aquarium> aquariums = aquariumService.findAll();
-        return ResponseEntity.ok(aquariums);
+    public ResponseEntity<?> findAll(
+            @RequestParam(required = false) @Min(0) Long after,
+            @RequestParam(required = false) @Min(1) @Max(MAX_PAGE_LIMIT) Integer limit) {
+
+        // Without keyset parameters the whole list is returned from the snapshot
+        if (after == null && limit == null) {
+            return SnapshotResponse.of(jsonSnapshots.allAquariums());
+        }
+
+        KeysetPage<Aquarium> page = aquariumService.findPage(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_LIMIT : limit);
+        return KeysetPageResponse.of(page, page.items().stream().map(AquariumDto::from).toList());
+    }
+
+    @GetMapping(value = "/find-all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return NdjsonResponse.<AquariumDto>of(objectMapper,
+                consumer -> aquariumService.streamAll(aquarium -> consumer.accept(AquariumDto.from(aquarium))));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) Set<Long> ids) {
+        return aquariumDeltaPublisher.subscribe(ids);
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<List<AquariumSummary>> findAllSummaries() {
+        List<AquariumSummary> summaries = aquariumService.findAllSummaries();
+        return ResponseEntity.ok(summaries);
     }
 
     @GetMapping("/find-by-id/{id}")
-    public ResponseEntity<Aquarium> findById(@PathVariable Long id) {
-        Optional<Aquarium> aquarium = aquariumService.findById(id);
+    public ResponseEntity<byte[]> findById(@PathVariable Long id) {
+        Optional<EncodedJson> aquarium = jsonSnapshots.aquarium(id);
 
         if (aquarium.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
 
-        return ResponseEntity.ok(aquarium.get());
+        return SnapshotResponse.of(aquarium.get());
     }
 
     @PutMapping("/update/{id}")
@@ -92,6 +147,41 @@ public class AquariumController {
 
     }
 
+    @PostMapping(value = "{aquariumId}/add-fishes", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> addFishes(
+            @PathVariable Long aquariumId,
+            @RequestBody List<FishRequest> fishRequests) {
+
+        try {
+
+            List<FishCreationResult> results = aquariumService.addFishes(aquariumId, fishRequests);
+            return ResponseEntity.ok(results);
+
+        } catch (AquariumNotFoundException e) {
+
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+
+        }
+    }
+
+    @PostMapping(value = "{aquariumId}/add-fishes", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> addFishesFromStream(
+            @PathVariable Long aquariumId,
+            InputStream fishRequestStream) throws IOException {
+
+        // Read one fish request per line, while the previous ones are inserted
+        try (MappingIterator<FishRequest> fishRequests = objectMapper.readerFor(FishRequest.class).readValues(fishRequestStream)) {
+
+            List<FishCreationResult> results = aquariumService.addFishes(aquariumId, fishRequests);
+            return ResponseEntity.ok(results);
+
+        } catch (AquariumNotFoundException e) {
+
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+
+        }
+    }
+
     @PutMapping("{aquariumId}/feed-fishes")
     public ResponseEntity<?> feedFishes (
             @PathVariable Long aquariumId,
@@ -110,6 +200,22 @@ public class AquariumController {
         }
     }
 
+    @PutMapping("/feed-fishes")
+    public ResponseEntity<?> feedFishes(@RequestBody List<@Valid FeedRequest> feedRequests) {
+
+        try {
+
+            List<AquariumSummary> summaries = aquariumService.feedFishes(feedRequests);
+            return ResponseEntity.ok(summaries);
+
+        } catch (AquariumNotFoundException e) {
+
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+
+        }
+    }
+
     @PutMapping("{aquariumId}/clean")
     public ResponseEntity<?> clean(@PathVariable Long aquariumId) {
 
@@ -0,0 +1,23 @@
+package com.develhope.aquarium.controllers;
+
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.dtos.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin
+@RestController
+@RequestMapping("/caches")
+public class CacheController {
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @GetMapping("/statistics")
+    public ResponseEntity<List<CacheStatistics>> statistics() {
+        return ResponseEntity.ok(entityCache.statistics());
+    }
+}
@@ -0,0 +1,33 @@
+package com.develhope.aquarium.controllers;
+
+import com.develhope.aquarium.dtos.ChangeFeed;
+import com.develhope.aquarium.exceptions.ChangesPrunedException;
+import com.develhope.aquarium.services.ChangeFeedService;
+import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@CrossOrigin
+@RestController
+@RequestMapping("/changes")
+public class ChangeController {
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @GetMapping
+    public ResponseEntity<?> findChanges(@RequestParam(defaultValue = "0") @Min(0) Long since) {
+        try {
+
+            ChangeFeed changes = changeFeedService.findChangesSince(since);
+            return ResponseEntity.ok(changes);
+
+        } catch (ChangesPrunedException e) {
+
+            // The reader has to sync again from version 0
+            return ResponseEntity.status(HttpStatus.GONE).body(e.getMessage());
+        }
+    }
+}
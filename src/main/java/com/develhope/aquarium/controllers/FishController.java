@@ -1,14 +1,21 @@
 package com.develhope.aquarium.controllers;
 
+import com.develhope.aquarium.caches.JsonSnapshots;
+import com.develhope.aquarium.dtos.FishDto;
+import com.develhope.aquarium.dtos.KeysetPage;
 import com.develhope.aquarium.entities.Fish;
 import com.develhope.aquarium.enumerations.FishSpecies;
 import com.develhope.aquarium.services.FishService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 import java.util.Optional;
 
 @CrossOrigin
@@ -16,9 +23,18 @@ import java.util.Optional;
 @RequestMapping("/fishes")
 public class FishController {
 
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    private static final int MAX_PAGE_LIMIT = 1000;
+
     @Autowired
     private FishService fishService;
 
+    @Autowired
+    private JsonSnapshots jsonSnapshots;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping("/create")
     public ResponseEntity<Fish> create(@RequestBody Fish fish) {
         Fish savedFish = fishService.save(fish);
@@ -26,16 +42,29 @@ public class FishController {
     }
 
     @GetMapping("/find-all")
-    public ResponseEntity<List<Fish>> findAll() {
-        List<Fish> fishes = fishService.findAll();
-        return ResponseEntity.ok(fishes);
+    public ResponseEntity<?> findAll(
+            @RequestParam(required = false) @Min(0) Long after,
+            @RequestParam(required = false) @Min(1) @Max(MAX_PAGE_LIMIT) Integer limit) {
+
+        // Without keyset parameters the whole list is returned from the snapshot
+        if (after == null && limit == null) {
+            return SnapshotResponse.of(jsonSnapshots.allFishes());
+        }
+
+        KeysetPage<Fish> page = fishService.findPage(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_LIMIT : limit);
+        return KeysetPageResponse.of(page, page.items());
+    }
+
+    @GetMapping(value = "/find-all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return NdjsonResponse.<Fish>of(objectMapper, fishService::streamAll);
     }
 
     @GetMapping("/find-by-id/{id}")
-    public ResponseEntity<Fish> findById(
+    public ResponseEntity<FishDto> findById(
             @PathVariable Long id) {
 
-        Optional<Fish> fish = fishService.findById(id);
+        Optional<FishDto> fish = fishService.findById(id);
 
         if (fish.isEmpty()) {
             return ResponseEntity.notFound().build();
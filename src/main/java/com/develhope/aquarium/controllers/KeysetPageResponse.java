@@ -0,0 +1,34 @@
+package com.develhope.aquarium.controllers;
+
+import com.develhope.aquarium.dtos.KeysetPage;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * Builds responses of keyset pages.
+ */
+public final class KeysetPageResponse {
+
+    /**
+     * Header carrying the id to pass as after for the next page, missing after the last page.
+     * It can be past the last item, when the rows following it have been skipped.
+     */
+    public static final String NEXT_AFTER_HEADER = "X-Next-After";
+
+    private KeysetPageResponse() {
+    }
+
+    /**
+     * @param page
+     * @param body the items of the page as they are sent.
+     * @return the response with the body and the cursor of the next page.
+     */
+    public static <T> ResponseEntity<List<T>> of(KeysetPage<?> page, List<T> body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextAfter() != null) {
+            response.header(NEXT_AFTER_HEADER, page.nextAfter().toString());
+        }
+        return response.body(body);
+    }
+}
@@ -0,0 +1,47 @@
+package com.develhope.aquarium.controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Builds newline delimited JSON responses, writing values to the response as they are produced.
+ */
+public final class NdjsonResponse {
+
+    private NdjsonResponse() {
+    }
+
+    /**
+     * @param objectMapper
+     * @param producer passes the values to write, one at a time, to the given consumer.
+     * @return the response streaming one JSON value per line.
+     */
+    public static <T> ResponseEntity<StreamingResponseBody> of(ObjectMapper objectMapper, Consumer<Consumer<T>> producer) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+
+                // Values are separated by new lines only
+                generator.setRootValueSeparator(null);
+                producer.accept(value -> {
+                    try {
+                        objectMapper.writeValue(generator, value);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
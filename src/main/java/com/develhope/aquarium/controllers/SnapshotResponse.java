@@ -0,0 +1,27 @@
+package com.develhope.aquarium.controllers;
+
+import com.develhope.aquarium.caches.EncodedJson;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Builds responses from already serialized JSON snapshots.
+ */
+public final class SnapshotResponse {
+
+    private SnapshotResponse() {
+    }
+
+    /**
+     * The response carries the entity tag of the snapshot,
+     * so requests with a matching If-None-Match header get a 304 Not Modified without body.
+     * @param snapshot
+     * @return the response copying the snapshot bytes.
+     */
+    public static ResponseEntity<byte[]> of(EncodedJson snapshot) {
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.body());
+    }
+}
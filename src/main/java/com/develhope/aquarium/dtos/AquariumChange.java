@@ -0,0 +1,12 @@
+package com.develhope.aquarium.dtos;
+
+/**
+ * Current values of a changed aquarium.
+ * @param id
+ * @param capacity
+ * @param clearness
+ * @param temperature
+ * @param version version of the last change.
+ */
+public record AquariumChange(Long id, Long capacity, Integer clearness, Integer temperature, Long version) {
+}
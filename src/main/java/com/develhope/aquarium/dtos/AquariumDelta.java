@@ -0,0 +1,94 @@
+package com.develhope.aquarium.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.*;
+
+/**
+ * Changes of an aquarium and its fishes, unchanged fields are null and left out of the JSON.
+ * @param id
+ * @param capacity
+ * @param clearness
+ * @param temperature
+ * @param fishes deltas of the new and changed fishes.
+ * @param removedFishIds ids of the fishes which died or were deleted.
+ * @param deleted true if the aquarium was deleted, in which case there are no other changes.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record AquariumDelta(Long id, Long capacity, Integer clearness, Integer temperature,
+                            List<FishDelta> fishes, List<Long> removedFishIds, Boolean deleted) {
+
+    /**
+     * @param before view of the aquarium before the change, null for new aquariums.
+     * @param after view of the aquarium after the change.
+     * @return the delta between the given views, null if nothing changed.
+     */
+    public static AquariumDelta between(AquariumDto before, AquariumDto after) {
+        if (before != null && before.equals(after)) {
+            return null;
+        }
+
+        // Fishes are matched by id
+        Map<Long, FishDto> fishesBefore = new HashMap<>();
+        if (before != null) {
+            before.fishes().forEach(fish -> fishesBefore.put(fish.id(), fish));
+        }
+
+        List<FishDelta> fishes = new ArrayList<>();
+        for (FishDto fish : after.fishes()) {
+            FishDelta fishDelta = FishDelta.between(fishesBefore.remove(fish.id()), fish);
+            if (fishDelta != null) {
+                fishes.add(fishDelta);
+            }
+        }
+        List<Long> removedFishIds = new ArrayList<>(fishesBefore.keySet());
+        Collections.sort(removedFishIds);
+
+        if (before == null) {
+            return new AquariumDelta(after.id(), after.capacity(), after.clearness(), after.temperature(), fishes, removedFishIds, null);
+        }
+
+        AquariumDelta delta = new AquariumDelta(after.id(),
+                FishDelta.changed(before.capacity(), after.capacity()),
+                FishDelta.changed(before.clearness(), after.clearness()),
+                FishDelta.changed(before.temperature(), after.temperature()),
+                fishes, removedFishIds, null);
+        return delta.isEmpty() ? null : delta;
+    }
+
+    /**
+     * @param id
+     * @return the delta of the deleted aquarium with the given id.
+     */
+    public static AquariumDelta deleted(Long id) {
+        return new AquariumDelta(id, null, null, null, List.of(), List.of(), true);
+    }
+
+    /**
+     * @param newer delta following this one.
+     * @return a delta with the changes of both, fields of the newer delta win.
+     */
+    public AquariumDelta mergedWith(AquariumDelta newer) {
+        if (Boolean.TRUE.equals(newer.deleted()) || Boolean.TRUE.equals(deleted)) {
+            return newer;
+        }
+
+        Map<Long, FishDelta> mergedFishes = new LinkedHashMap<>();
+        fishes.forEach(fish -> mergedFishes.put(fish.id(), fish));
+        newer.fishes().forEach(fish -> mergedFishes.merge(fish.id(), fish, FishDelta::mergedWith));
+
+        Set<Long> mergedRemovedFishIds = new TreeSet<>(removedFishIds);
+        mergedRemovedFishIds.addAll(newer.removedFishIds());
+        mergedRemovedFishIds.forEach(mergedFishes::remove);
+
+        return new AquariumDelta(id,
+                newer.capacity() != null ? newer.capacity() : capacity,
+                newer.clearness() != null ? newer.clearness() : clearness,
+                newer.temperature() != null ? newer.temperature() : temperature,
+                List.copyOf(mergedFishes.values()), List.copyOf(mergedRemovedFishIds), null);
+    }
+
+    private boolean isEmpty() {
+        return capacity == null && clearness == null && temperature == null && fishes.isEmpty() && removedFishIds.isEmpty();
+    }
+}
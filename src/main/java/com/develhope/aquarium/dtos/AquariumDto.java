@@ -0,0 +1,29 @@
+package com.develhope.aquarium.dtos;
+
+import com.develhope.aquarium.entities.Aquarium;
+
+import java.util.List;
+
+/**
+ * Read view of an aquarium with its fishes.
+ * Built from aquariums whose fishes have already been loaded, so serializing it never hits the database.
+ * @param id
+ * @param capacity
+ * @param clearness
+ * @param temperature
+ * @param fishes
+ */
+public record AquariumDto(Long id, Long capacity, Integer clearness, Integer temperature, List<FishDto> fishes) {
+
+    /**
+     * @param aquarium
+     * @return the view of the given aquarium.
+     */
+    public static AquariumDto from(Aquarium aquarium) {
+        List<FishDto> fishes = aquarium.getFishes() == null
+                ? List.of()
+                : aquarium.getFishes().stream().map(FishDto::from).toList();
+
+        return new AquariumDto(aquarium.getId(), aquarium.getCapacity(), aquarium.getClearness(), aquarium.getTemperature(), fishes);
+    }
+}
@@ -0,0 +1,12 @@
+package com.develhope.aquarium.dtos;
+
+/**
+ * Summary view of an aquarium, counting its fishes instead of listing them.
+ * @param id
+ * @param capacity
+ * @param clearness
+ * @param temperature
+ * @param fishCount
+ */
+public record AquariumSummary(Long id, Long capacity, Integer clearness, Integer temperature, Long fishCount) {
+}
@@ -0,0 +1,12 @@
+package com.develhope.aquarium.dtos;
+
+/**
+ * Statistics of a cache since the start of the application.
+ * @param name
+ * @param hits
+ * @param misses
+ * @param evictions
+ * @param size estimated number of entries.
+ */
+public record CacheStatistics(String name, Long hits, Long misses, Long evictions, Long size) {
+}
@@ -0,0 +1,16 @@
+package com.develhope.aquarium.dtos;
+
+import java.util.List;
+
+/**
+ * Everything created, updated or deleted in a range of versions.
+ * Rows changed more than once only appear with their last change.
+ * @param since exclusive.
+ * @param until inclusive, the since of the next request.
+ * @param aquariums
+ * @param fishes
+ * @param deletions
+ */
+public record ChangeFeed(Long since, Long until, List<AquariumChange> aquariums, List<FishChange> fishes,
+                         List<DeletionChange> deletions) {
+}
@@ -0,0 +1,12 @@
+package com.develhope.aquarium.dtos;
+
+import com.develhope.aquarium.enumerations.ChangeEntityType;
+
+/**
+ * Deletion of an aquarium or a fish.
+ * @param type
+ * @param id
+ * @param version version of the deletion.
+ */
+public record DeletionChange(ChangeEntityType type, Long id, Long version) {
+}
@@ -0,0 +1,13 @@
+package com.develhope.aquarium.dtos;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Request to feed the fishes of an aquarium.
+ * @param aquariumId
+ * @param foodQuantity
+ */
+public record FeedRequest(@NotNull Long aquariumId, @NotNull @Min(0) @Max(100) Integer foodQuantity) {
+}
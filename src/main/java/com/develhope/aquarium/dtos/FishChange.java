@@ -0,0 +1,18 @@
+package com.develhope.aquarium.dtos;
+
+import com.develhope.aquarium.enumerations.FishSpecies;
+
+/**
+ * Current values of a changed fish.
+ * @param id
+ * @param aquariumId id of the aquarium the fish lives in, null if it doesn't live in any.
+ * @param name
+ * @param species
+ * @param hunger
+ * @param health
+ * @param age
+ * @param version version of the last change.
+ */
+public record FishChange(Long id, Long aquariumId, String name, FishSpecies species,
+                         Integer hunger, Integer health, Long age, Long version) {
+}
@@ -0,0 +1,28 @@
+package com.develhope.aquarium.dtos;
+
+/**
+ * Result of the creation of one fish of a bulk request.
+ * @param index position of the fish in the request.
+ * @param fishId id of the created fish, null if it wasn't created.
+ * @param error reason why the fish wasn't created, null if it was.
+ */
+public record FishCreationResult(int index, Long fishId, String error) {
+
+    /**
+     * @param index
+     * @param fishId
+     * @return the result of a created fish.
+     */
+    public static FishCreationResult created(int index, Long fishId) {
+        return new FishCreationResult(index, fishId, null);
+    }
+
+    /**
+     * @param index
+     * @param error
+     * @return the result of a rejected fish.
+     */
+    public static FishCreationResult rejected(int index, String error) {
+        return new FishCreationResult(index, null, error);
+    }
+}
@@ -0,0 +1,56 @@
+package com.develhope.aquarium.dtos;
+
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Objects;
+
+/**
+ * Changed fields of a fish, unchanged fields are null and left out of the JSON.
+ * @param id
+ * @param name
+ * @param species
+ * @param hunger
+ * @param health
+ * @param age
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FishDelta(Long id, String name, FishSpecies species, Integer hunger, Integer health, Long age) {
+
+    /**
+     * @param before view of the fish before the change, null for new fishes.
+     * @param after view of the fish after the change.
+     * @return the delta between the given views, null if nothing changed.
+     */
+    public static FishDelta between(FishDto before, FishDto after) {
+        if (before == null) {
+            return new FishDelta(after.id(), after.name(), after.species(), after.hunger(), after.health(), after.age());
+        }
+        if (before.equals(after)) {
+            return null;
+        }
+        return new FishDelta(after.id(),
+                changed(before.name(), after.name()),
+                changed(before.species(), after.species()),
+                changed(before.hunger(), after.hunger()),
+                changed(before.health(), after.health()),
+                changed(before.age(), after.age()));
+    }
+
+    /**
+     * @param newer delta following this one.
+     * @return a delta with the changes of both, fields of the newer delta win.
+     */
+    public FishDelta mergedWith(FishDelta newer) {
+        return new FishDelta(id,
+                newer.name() != null ? newer.name() : name,
+                newer.species() != null ? newer.species() : species,
+                newer.hunger() != null ? newer.hunger() : hunger,
+                newer.health() != null ? newer.health() : health,
+                newer.age() != null ? newer.age() : age);
+    }
+
+    static <T> T changed(T before, T after) {
+        return Objects.equals(before, after) ? null : after;
+    }
+}
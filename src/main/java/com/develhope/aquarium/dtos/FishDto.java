@@ -0,0 +1,24 @@
+package com.develhope.aquarium.dtos;
+
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+
+/**
+ * Read view of a fish.
+ * @param id
+ * @param name
+ * @param species
+ * @param hunger
+ * @param health
+ * @param age
+ */
+public record FishDto(Long id, String name, FishSpecies species, Integer hunger, Integer health, Long age) {
+
+    /**
+     * @param fish
+     * @return the view of the given fish.
+     */
+    public static FishDto from(Fish fish) {
+        return new FishDto(fish.getId(), fish.getName(), fish.getSpecies(), fish.getHunger(), fish.getHealth(), fish.getAge());
+    }
+}
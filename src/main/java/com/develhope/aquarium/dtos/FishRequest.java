@@ -0,0 +1,18 @@
+package com.develhope.aquarium.dtos;
+
+import com.develhope.aquarium.enumerations.FishSpecies;
+
+/**
+ * Request to create a fish.
+ * @param name
+ * @param species
+ */
+public record FishRequest(String name, FishSpecies species) {
+
+    /**
+     * @return true if both name and species are given.
+     */
+    public boolean isValid() {
+        return name != null && !name.isBlank() && species != null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.develhope.aquarium.dtos;
+
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Page of a keyset pagination.
+ * Rows scanned but left out of the items, like dead fishes, still move the cursor forward.
+ * @param items
+ * @param nextAfter id of the last scanned row, to be passed as the next page's after, null after the last page.
+ */
+public record KeysetPage<T>(List<T> items, Long nextAfter) {
+
+    /**
+     * Makes the page of the items kept from the rows scanned by one query.
+     * @param items
+     * @param scannedIds ids of the scanned rows in ascending order.
+     * @param limit limit of the query, fewer scanned rows mean there are no more.
+     * @return the page.
+     */
+    public static <T> KeysetPage<T> of(List<T> items, List<Long> scannedIds, Limit limit) {
+        Long nextAfter = scannedIds.size() < limit.max() ? null : scannedIds.get(scannedIds.size() - 1);
+        return new KeysetPage<>(items, nextAfter);
+    }
+
+    /**
+     * Scans pages until the given number of items is reached or there are no more rows,
+     * so that rows left out of the items never make a page come back short before the end.
+     * @param after
+     * @param limit
+     * @param scan finds the page following the given id, with the given limit.
+     * @return the page.
+     */
+    public static <T> KeysetPage<T> fill(Long after, Integer limit, BiFunction<Long, Limit, KeysetPage<T>> scan) {
+        List<T> items = new ArrayList<>(limit);
+        Long nextAfter = after;
+        while (nextAfter != null && items.size() < limit) {
+            KeysetPage<T> page = scan.apply(nextAfter, Limit.of(limit - items.size()));
+            items.addAll(page.items());
+            nextAfter = page.nextAfter();
+        }
+        return new KeysetPage<>(items, nextAfter);
+    }
+}
@@ -1,19 +1,23 @@
 package com.develhope.aquarium.entities;
 
+import com.develhope.aquarium.changes.ChangeVersionListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.List;
 
 @Entity
-@Table(name = "aquariums")
+@Table(name = "aquariums", indexes = @Index(name = "idx_aquariums_change_version", columnList = "change_version"))
+@EntityListeners(ChangeVersionListener.class)
 public class Aquarium {
 
     private final Integer STARTING_CLEARNESS = 100;
     private final Integer STARTING_TEMPERATURE = 30;
 
-    public final Integer LOW_CLEARNESS = 30;
+    public static final Integer LOW_CLEARNESS = 30;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -31,6 +35,30 @@ public class Aquarium {
     @Column(name = "temperature")
     private Integer temperature = STARTING_TEMPERATURE;
 
+    // Tick in which stats were last materialized (LAZY tick mode only)
+    @JsonIgnore
+    @Column(name = "stats_tick")
+    private Long statsTick;
+
+    // Number of fishes living in the aquarium, only changed by atomic update statements
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "fish_count", nullable = false, insertable = false, updatable = false)
+    private Long fishCount = 0L;
+
+    // Version of the last change, read by the change feed
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "change_version", nullable = false)
+    private Long changeVersion = 0L;
+
+    // Optimistic lock, incremented by every update so that a write based on a stale read fails instead of overwriting
+    @JsonIgnore
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "aquarium", cascade = CascadeType.ALL)
     private List<Fish> fishes;
 
@@ -118,6 +146,38 @@ public class Aquarium {
         this.temperature = temperature;
     }
 
+    public Long getStatsTick() {
+        return statsTick;
+    }
+
+    public void setStatsTick(Long statsTick) {
+        this.statsTick = statsTick;
+    }
+
+    public Long getFishCount() {
+        return fishCount;
+    }
+
+    public void setFishCount(Long fishCount) {
+        this.fishCount = fishCount;
+    }
+
+    public Long getChangeVersion() {
+        return changeVersion;
+    }
+
+    public void setChangeVersion(Long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public List<Fish> getFishes() {
         return fishes;
     }
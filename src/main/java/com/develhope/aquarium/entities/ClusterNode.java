@@ -0,0 +1,51 @@
+package com.develhope.aquarium.entities;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A node sharing the database, alive until its registration expires.
+ * Live nodes split the tick leases among themselves.
+ */
+@Entity
+@Table(name = "cluster_nodes")
+public class ClusterNode {
+
+    @Id
+    @Column(name = "node_id")
+    private String nodeId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+
+    // Constructors
+
+    public ClusterNode() {
+    }
+
+    public ClusterNode(String nodeId, Instant expiresAt) {
+        this.nodeId = nodeId;
+        this.expiresAt = expiresAt;
+    }
+
+
+    // Getter and Setter
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
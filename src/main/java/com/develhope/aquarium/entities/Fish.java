@@ -1,24 +1,31 @@
 package com.develhope.aquarium.entities;
 
+import com.develhope.aquarium.changes.ChangeVersionListener;
 import com.develhope.aquarium.enumerations.FishSpecies;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "fishes")
+@Table(name = "fishes", indexes = @Index(name = "idx_fishes_change_version", columnList = "change_version"))
+@EntityListeners(ChangeVersionListener.class)
 public class Fish {
 
     private final Integer STARTING_HEALTH = 100;
     private final Integer STARTING_HUNGER = 0;
     private final Long STARTING_AGE = 0L;
 
-    private final Integer LOW_HUNGER = 30;
-    private final Integer HIGH_HUNGER = 70;
+    public static final Integer LOW_HUNGER = 30;
+    public static final Integer HIGH_HUNGER = 70;
+    public static final int ID_ALLOCATION_SIZE = 50;
 
+    // Ids are allocated in pools of 50 from a sequence (a table on databases without sequences),
+    // so that inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fish_seq")
+    @SequenceGenerator(name = "fish_seq", sequenceName = "fish_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "name")
@@ -42,6 +49,24 @@ public class Fish {
     @Column(name = "age")
     private Long age = STARTING_AGE;
 
+    // Tick in which stats were last materialized (LAZY tick mode only)
+    @JsonIgnore
+    @Column(name = "stats_tick")
+    private Long statsTick;
+
+    // Version of the last change, read by the change feed
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "change_version", nullable = false)
+    private Long changeVersion = 0L;
+
+    // Optimistic lock, incremented by every update so that a write based on a stale read fails instead of overwriting
+    @JsonIgnore
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @JsonIgnore
     @ManyToOne(cascade = CascadeType.ALL)
     @JoinColumn(name = "aquarium_id")
@@ -105,6 +130,14 @@ public class Fish {
         age++;
     }
 
+    /**
+     * Increases fish age by the given number of aging ticks.
+     * @param ticks
+     */
+    public void increaseAge(long ticks) {
+        age += ticks;
+    }
+
 
     // Getter and Setter
 
@@ -156,6 +189,30 @@ public class Fish {
         this.age = age;
     }
 
+    public Long getStatsTick() {
+        return statsTick;
+    }
+
+    public void setStatsTick(Long statsTick) {
+        this.statsTick = statsTick;
+    }
+
+    public Long getChangeVersion() {
+        return changeVersion;
+    }
+
+    public void setChangeVersion(Long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Aquarium getAquarium() {
         return aquarium;
     }
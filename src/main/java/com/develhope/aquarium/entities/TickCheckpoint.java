@@ -0,0 +1,134 @@
+package com.develhope.aquarium.entities;
+
+import jakarta.persistence.*;
+
+/**
+ * Records the progress of a chunked tick over a segment of aquariums, from the first to the last aquarium id.
+ * The last processed aquarium id advances in the same transaction of every chunk,
+ * so a tick stopped by a failure or a restart resumes right after the last committed chunk.
+ * The checkpoint is deleted once the whole segment is processed.
+ */
+@Entity
+@Table(name = "tick_checkpoints", indexes = @Index(name = "idx_tick_checkpoints_tick", columnList = "tick"))
+public class TickCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String tick;
+
+    @Column(name = "tick_number", nullable = false)
+    private Long tickNumber;
+
+    @Column(nullable = false)
+    private Long ticks;
+
+    @Column(name = "from_aquarium_id", nullable = false)
+    private Long fromAquariumId;
+
+    @Column(name = "to_aquarium_id", nullable = false)
+    private Long toAquariumId;
+
+    @Column(name = "last_processed_id", nullable = false)
+    private Long lastProcessedId;
+
+
+    // Constructors
+
+    public TickCheckpoint() {
+    }
+
+    public TickCheckpoint(String tick, Long tickNumber, Long ticks, Long fromAquariumId, Long toAquariumId) {
+        this.tick = tick;
+        this.tickNumber = tickNumber;
+        this.ticks = ticks;
+        this.fromAquariumId = fromAquariumId;
+        this.toAquariumId = toAquariumId;
+
+        // Nothing processed yet
+        this.lastProcessedId = fromAquariumId - 1;
+    }
+
+
+    // Methods
+
+    /**
+     * @param aquariumId
+     * @return whether the given aquarium is still waiting for the ticks of this checkpoint.
+     */
+    public boolean isPending(Long aquariumId) {
+        return aquariumId > lastProcessedId && aquariumId <= toAquariumId;
+    }
+
+    /**
+     * Adds the ticks of a later run to the aquariums still waiting for this checkpoint,
+     * so that they get all their ticks together instead of piling up a checkpoint per run.
+     * @param tickNumber number of the later run.
+     * @param ticks number of ticks of the later run.
+     */
+    public void merge(Long tickNumber, Long ticks) {
+        this.tickNumber = tickNumber;
+        this.ticks += ticks;
+    }
+
+
+    // Getter and Setter
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTick() {
+        return tick;
+    }
+
+    public void setTick(String tick) {
+        this.tick = tick;
+    }
+
+    public Long getTickNumber() {
+        return tickNumber;
+    }
+
+    public void setTickNumber(Long tickNumber) {
+        this.tickNumber = tickNumber;
+    }
+
+    public Long getTicks() {
+        return ticks;
+    }
+
+    public void setTicks(Long ticks) {
+        this.ticks = ticks;
+    }
+
+    public Long getFromAquariumId() {
+        return fromAquariumId;
+    }
+
+    public void setFromAquariumId(Long fromAquariumId) {
+        this.fromAquariumId = fromAquariumId;
+    }
+
+    public Long getToAquariumId() {
+        return toAquariumId;
+    }
+
+    public void setToAquariumId(Long toAquariumId) {
+        this.toAquariumId = toAquariumId;
+    }
+
+    public Long getLastProcessedId() {
+        return lastProcessedId;
+    }
+
+    public void setLastProcessedId(Long lastProcessedId) {
+        this.lastProcessedId = lastProcessedId;
+    }
+}
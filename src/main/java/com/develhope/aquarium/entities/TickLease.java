@@ -0,0 +1,61 @@
+package com.develhope.aquarium.entities;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Lease of a partition of consecutive aquarium ids, held by the node which runs its ticks.
+ * A lease without owner, or not renewed before it expires, can be claimed by any node.
+ */
+@Entity
+@Table(name = "tick_leases")
+public class TickLease {
+
+    @Id
+    @Column(name = "partition_number")
+    private Long partitionNumber;
+
+    @Column(name = "owner_node")
+    private String owner;
+
+    @Column(name = "expires_at")
+    private Instant expiresAt;
+
+
+    // Constructors
+
+    public TickLease() {
+    }
+
+    public TickLease(Long partitionNumber) {
+        this.partitionNumber = partitionNumber;
+    }
+
+
+    // Getter and Setter
+
+    public Long getPartitionNumber() {
+        return partitionNumber;
+    }
+
+    public void setPartitionNumber(Long partitionNumber) {
+        this.partitionNumber = partitionNumber;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
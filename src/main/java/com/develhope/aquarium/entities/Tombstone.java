@@ -0,0 +1,73 @@
+package com.develhope.aquarium.entities;
+
+import com.develhope.aquarium.enumerations.ChangeEntityType;
+import jakarta.persistence.*;
+
+/**
+ * Records the deletion of an aquarium or a fish, so that the change feed can report it.
+ */
+@Entity
+@Table(name = "tombstones", indexes = @Index(name = "idx_tombstones_change_version", columnList = "change_version"))
+public class Tombstone {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "entity_type", nullable = false)
+    @Enumerated(value = EnumType.STRING)
+    private ChangeEntityType entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(name = "change_version", nullable = false)
+    private Long changeVersion;
+
+
+    // Constructors
+
+    public Tombstone() {
+    }
+
+    public Tombstone(ChangeEntityType entityType, Long entityId, Long changeVersion) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.changeVersion = changeVersion;
+    }
+
+
+    // Getter and Setter
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ChangeEntityType getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(ChangeEntityType entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public Long getChangeVersion() {
+        return changeVersion;
+    }
+
+    public void setChangeVersion(Long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+}
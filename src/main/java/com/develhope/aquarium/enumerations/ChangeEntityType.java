@@ -0,0 +1,6 @@
+package com.develhope.aquarium.enumerations;
+
+public enum ChangeEntityType {
+    AQUARIUM,
+    FISH
+}
@@ -0,0 +1,17 @@
+package com.develhope.aquarium.enumerations;
+
+public enum FishEventType {
+    DEATH("Health reaches 0"),
+    LOW_HUNGER_CROSSED("Hunger goes over the low hunger threshold, health stops growing"),
+    HIGH_HUNGER_CROSSED("Hunger goes over the high hunger threshold, health starts decreasing");
+
+    private final String description;
+
+    FishEventType(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,18 @@
+package com.develhope.aquarium.enumerations;
+
+public enum TickMode {
+    ENTITY("Loads every aquarium and fish and applies the rules entity by entity"),
+    BULK("Applies the rules with a few set-based UPDATE/DELETE statements"),
+    ENGINE("Applies the rules to the in-memory simulation engine and writes changes behind"),
+    LAZY("Computes stats in closed form when aquariums are read or written, without any timer");
+
+    private final String description;
+
+    TickMode(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,7 @@
+package com.develhope.aquarium.exceptions;
+
+public class ChangesPrunedException extends RuntimeException {
+    public ChangesPrunedException(String message) {
+        super(message);
+    }
+}
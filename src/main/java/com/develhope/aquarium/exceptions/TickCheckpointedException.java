@@ -0,0 +1,10 @@
+package com.develhope.aquarium.exceptions;
+
+/**
+ * Failure of a tick whose remaining work is kept in checkpoints, so the tick mustn't be run again from scratch.
+ */
+public class TickCheckpointedException extends RuntimeException {
+    public TickCheckpointedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
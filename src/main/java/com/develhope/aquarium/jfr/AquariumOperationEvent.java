@@ -0,0 +1,66 @@
+package com.develhope.aquarium.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a service operation on an aquarium, like feeding its fishes, adding a fish or cleaning it.
+ * Failed operations are recorded too, with their exception.
+ */
+@Name("com.develhope.aquarium.AquariumOperation")
+@Label("Aquarium Operation")
+@Category({"Aquarium", "Service"})
+@Description("Service operation on an aquarium")
+public class AquariumOperationEvent extends jdk.jfr.Event {
+
+    public static final String FEED_FISHES = "feedFishes";
+    public static final String ADD_FISH = "addFish";
+    public static final String CLEAN = "clean";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Aquarium Id")
+    long aquariumId;
+
+    @Label("Fish Count")
+    @Description("Fishes of the aquarium, or added to it")
+    long fishCount;
+
+    @Label("Row Count")
+    @Description("Rows written by the operation")
+    long rowCount;
+
+    @Label("Exception")
+    String exception;
+
+    /**
+     * Starts timing an operation on the aquarium with the given id.
+     * @param operation
+     * @param aquariumId
+     * @return the started event.
+     */
+    public static AquariumOperationEvent begin(String operation, long aquariumId) {
+        AquariumOperationEvent event = new AquariumOperationEvent();
+        event.begin();
+        event.operation = operation;
+        event.aquariumId = aquariumId;
+        return event;
+    }
+
+    /**
+     * Sets the counts of a successful operation.
+     * @param fishCount
+     * @param rowCount
+     */
+    public void setCounts(long fishCount, long rowCount) {
+        this.fishCount = fishCount;
+        this.rowCount = rowCount;
+    }
+
+    public void setException(Throwable exception) {
+        this.exception = exception.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,50 @@
+package com.develhope.aquarium.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the processing of one aquarium and its fishes by the stats tick.
+ */
+@Name("com.develhope.aquarium.AquariumProcessing")
+@Label("Aquarium Processing")
+@Category({"Aquarium", "Tick"})
+@Description("Stats rules applied to an aquarium and its fishes")
+@StackTrace(false)
+public class AquariumProcessingEvent extends jdk.jfr.Event {
+
+    @Label("Aquarium Id")
+    long aquariumId;
+
+    @Label("Fish Count")
+    long fishCount;
+
+    @Label("Dead Fish Count")
+    long deadFishCount;
+
+    /**
+     * Starts timing the processing of the aquarium with the given id.
+     * @param aquariumId
+     * @return the started event.
+     */
+    public static AquariumProcessingEvent begin(long aquariumId) {
+        AquariumProcessingEvent event = new AquariumProcessingEvent();
+        event.begin();
+        event.aquariumId = aquariumId;
+        return event;
+    }
+
+    /**
+     * Ends the processing and commits the event, if recorded, once the current transaction commits.
+     * @param fishCount processed fishes, including the dead ones.
+     * @param deadFishCount
+     */
+    public void complete(long fishCount, long deadFishCount) {
+        this.fishCount = fishCount;
+        this.deadFishCount = deadFishCount;
+        EventCommits.commitAfterTransaction(this);
+    }
+}
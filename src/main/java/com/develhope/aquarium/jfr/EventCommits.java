@@ -0,0 +1,34 @@
+package com.develhope.aquarium.jfr;
+
+import jdk.jfr.Event;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Commits the events of work done in a transaction only if the transaction commits,
+ * so that a chunk rolled back and run again isn't recorded twice.
+ */
+final class EventCommits {
+
+    private EventCommits() {
+    }
+
+    /**
+     * Ends the given event now, and commits it when the current transaction commits, or right away outside of transactions.
+     * @param event
+     */
+    static void commitAfterTransaction(Event event) {
+        event.end();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            event.commit();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            @Override
+            public void afterCommit() {
+                event.commit();
+            }
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package com.develhope.aquarium.jfr;
+
+import com.develhope.aquarium.enumerations.TickMode;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a phase of the stats tick, for a range of aquariums or for all of them.
+ * Phases are LOAD of the entities, PROCESS of the rules, DELETE of the dead fishes and FLUSH of the changes.
+ */
+@Name("com.develhope.aquarium.TickPhase")
+@Label("Tick Phase")
+@Category({"Aquarium", "Tick"})
+@Description("Phase of the stats tick")
+@StackTrace(false)
+public class TickPhaseEvent extends jdk.jfr.Event {
+
+    public static final String LOAD = "LOAD";
+    public static final String PROCESS = "PROCESS";
+    public static final String DELETE = "DELETE";
+    public static final String FLUSH = "FLUSH";
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("From Aquarium Id")
+    @Description("First aquarium id of the partition, 0 for all aquariums")
+    long fromAquariumId;
+
+    @Label("To Aquarium Id")
+    @Description("Last aquarium id of the partition, 0 for all aquariums")
+    long toAquariumId;
+
+    @Label("Row Count")
+    @Description("Rows loaded, updated or deleted by the phase")
+    long rowCount;
+
+    /**
+     * Starts timing a phase of the tick.
+     * @param mode
+     * @param phase
+     * @param fromAquariumId first aquarium id of the partition, or 0 for all aquariums.
+     * @param toAquariumId last aquarium id of the partition, or 0 for all aquariums.
+     * @return the started event.
+     */
+    public static TickPhaseEvent begin(TickMode mode, String phase, long fromAquariumId, long toAquariumId) {
+        TickPhaseEvent event = new TickPhaseEvent();
+        event.begin();
+        event.mode = mode.name();
+        event.phase = phase;
+        event.fromAquariumId = fromAquariumId;
+        event.toAquariumId = toAquariumId;
+        return event;
+    }
+
+    /**
+     * Ends the phase and commits the event, if recorded, once the current transaction commits.
+     * @param rowCount
+     */
+    public void complete(long rowCount) {
+        this.rowCount = rowCount;
+        EventCommits.commitAfterTransaction(this);
+    }
+}
@@ -0,0 +1,394 @@
+package com.develhope.aquarium.mailboxes;
+
+import com.develhope.aquarium.configurations.MailboxProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.retries.OptimisticRetry;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import com.develhope.aquarium.simulation.StatsMaterializer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs the writes on every aquarium one at a time, in the order they are submitted, so that every aquarium has a single writer.
+ * Every aquarium has a mailbox while it has commands, drained by a virtual thread and removed once idle.
+ * The commands found waiting are run in one transaction, so that a burst of writes is flushed and committed once,
+ * and in ENGINE and LAZY mode the aquarium is reloaded or materialized once for the whole batch.
+ * If a command of a batch fails, the batch is rolled back and its commands are run again one transaction each,
+ * so that only the failing command fails.
+ * A command run alone is tried again when it conflicts with a write made outside of the mailbox,
+ * like a fish update or a write of another node, see {@link OptimisticRetry}.
+ * Aquariums are independent, so mailboxes run concurrently and single commands take no lock.
+ * Operations on many aquariums, like the ticks, take the mailboxes of all of them with {@link #runExclusive}.
+ * Mutations submitted with a {@link Combiner} wait "combine-window" for the following ones,
+ * and the ones found one after the other in a batch are applied together with a single write.
+ */
+@Component
+public class AquariumMailboxes {
+
+    private static final Logger logger = LoggerFactory.getLogger(AquariumMailboxes.class);
+
+    @Autowired
+    private MailboxProperties mailboxProperties;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private StatsMaterializer statsMaterializer;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Mailboxes are added and removed atomically with their entries, so an aquarium never has two of them
+    private final ConcurrentHashMap<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Mailbox ", 0).factory());
+
+    /**
+     * Combines the mutations queued one after the other in the mailbox of an aquarium into a single write.
+     */
+    @FunctionalInterface
+    public interface Combiner<M, T> {
+
+        /**
+         * Applies the given mutations in order, in the transaction of the mailbox.
+         * @param aquariumId
+         * @param mutations
+         * @return the result of every mutation, as if it was applied alone, in the same order.
+         */
+        List<T> combine(Long aquariumId, List<M> mutations);
+    }
+
+    /**
+     * Queues the given database write in the mailbox of the aquarium with the given id.
+     * Writes without an aquarium, or with disabled mailboxes, run right away on the calling thread.
+     * @param aquariumId
+     * @param command
+     * @return a future completed with the result of the write once its transaction is committed,
+     * or with its exception.
+     */
+    public <T> CompletableFuture<T> submit(Long aquariumId, Supplier<T> command) {
+        Command<T> queued = new Command<>(aquariumId, command);
+        if (!mailboxProperties.getEnabled() || aquariumId == null) {
+            queued.runAlone();
+        } else {
+            enqueue(aquariumId, queued);
+        }
+        return queued.future;
+    }
+
+    /**
+     * Queues the given mutation in the mailbox of the aquarium with the given id,
+     * to be applied by the given combiner together with the mutations of the same combiner queued right after it.
+     * The mutation waits "combine-window" before running, for the mutations following it to be queued.
+     * The combiner has to be the same instance for all the mutations to combine.
+     * @param aquariumId
+     * @param combiner
+     * @param mutation
+     * @return a future completed with the result of the mutation once its transaction is committed,
+     * or with its exception.
+     */
+    public <M, T> CompletableFuture<T> submit(Long aquariumId, Combiner<M, T> combiner, M mutation) {
+        Command<T> queued = new Command<>(aquariumId, combiner, mutation);
+        if (!mailboxProperties.getEnabled() || aquariumId == null) {
+            queued.runAlone();
+        } else {
+            enqueue(aquariumId, queued);
+        }
+        return queued.future;
+    }
+
+    /**
+     * Runs the given task on the calling thread once the commands queued before in the mailboxes of the given aquariums are done,
+     * holding the commands queued after until the task ends.
+     * Mailboxes are taken in ascending order of id, so that concurrent calls can't wait on each other.
+     * Must not be called from a command.
+     * @param aquariumIds
+     * @param task
+     * @return the result of the task.
+     */
+    public <T> T runExclusive(Collection<Long> aquariumIds, Supplier<T> task) {
+        if (!mailboxProperties.getEnabled()) {
+            return task.get();
+        }
+
+        CountDownLatch released = new CountDownLatch(1);
+        try {
+            for (Long aquariumId : new TreeSet<>(aquariumIds)) {
+                Gate gate = new Gate(released);
+                enqueue(aquariumId, gate);
+                gate.reached.join();
+            }
+            return task.get();
+        } finally {
+            released.countDown();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Adds the given command or gate to the mailbox of the aquarium with the given id, creating it if missing,
+     * and starts draining the mailbox if it's idle.
+     * @param aquariumId
+     * @param entry
+     */
+    private void enqueue(Long aquariumId, Object entry) {
+        Mailbox mailbox = mailboxes.compute(aquariumId, (id, existing) -> {
+            Mailbox target = existing != null ? existing : new Mailbox(id);
+            target.queue.add(entry);
+            return target;
+        });
+        mailbox.schedule();
+    }
+
+    private class Mailbox implements Runnable {
+
+        private final Long aquariumId;
+        private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(Long aquariumId) {
+            this.aquariumId = aquariumId;
+        }
+
+        private void schedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object entry;
+                while ((entry = queue.peek()) != null) {
+                    if (entry instanceof Gate gate) {
+                        queue.poll();
+                        gate.pass();
+                        continue;
+                    }
+
+                    // Wait for the mutations following a combinable one, so that a burst is written once
+                    if (entry instanceof Command<?> head && head.combiner != null) {
+                        awaitCombineWindow(head);
+                    }
+
+                    // Take the commands up to the next gate
+                    List<Command<?>> batch = new ArrayList<>();
+                    while (batch.size() < mailboxProperties.getMaxBatchSize() && queue.peek() instanceof Command<?> command) {
+                        queue.poll();
+                        batch.add(command);
+                    }
+                    runBatch(aquariumId, batch);
+                }
+            } finally {
+
+                // An idle mailbox is removed, unless an entry was queued or a new drain started meanwhile
+                scheduled.set(false);
+                mailboxes.computeIfPresent(aquariumId,
+                        (id, mailbox) -> mailbox == this && queue.isEmpty() && !scheduled.get() ? null : mailbox);
+
+                // Commands queued while stopping are run by a new drain
+                schedule();
+            }
+        }
+    }
+
+    private void runBatch(Long aquariumId, List<Command<?>> batch) {
+        try {
+            if (batch.size() == 1) {
+                batch.getFirst().runAlone();
+                return;
+            }
+
+            try {
+                write(aquariumId, () -> new TransactionTemplate(transactionManager).execute(status -> {
+                    runAll(aquariumId, batch);
+                    return null;
+                }));
+            } catch (Throwable e) {
+
+                // Nothing was written, run every command again so that only the failing one fails
+                batch.forEach(Command::runAlone);
+                return;
+            }
+            batch.forEach(Command::complete);
+        } catch (Throwable e) {
+
+            // No caller is left waiting, the commands already completed keep their result
+            logger.error("Batch of the mailbox of aquarium {} failed", aquariumId, e);
+            batch.forEach(command -> command.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Runs the commands of a batch in order, combining the consecutive mutations of the same combiner.
+     * @param aquariumId
+     * @param batch
+     */
+    private static void runAll(Long aquariumId, List<Command<?>> batch) {
+        int from = 0;
+        while (from < batch.size()) {
+            Command<?> first = batch.get(from);
+            int to = from + 1;
+            while (first.combiner != null && to < batch.size() && batch.get(to).combiner == first.combiner) {
+                to++;
+            }
+            if (to - from == 1) {
+                first.run();
+            } else {
+                combine(aquariumId, batch.subList(from, to));
+            }
+            from = to;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <M, T> void combine(Long aquariumId, List<Command<?>> commands) {
+        Combiner<M, T> combiner = (Combiner<M, T>) commands.getFirst().combiner;
+        List<M> mutations = new ArrayList<>(commands.size());
+        for (Command<?> command : commands) {
+            mutations.add((M) command.mutation);
+        }
+
+        List<T> results = combiner.combine(aquariumId, mutations);
+        for (int i = 0; i < commands.size(); i++) {
+            ((Command<T>) commands.get(i)).result = results.get(i);
+        }
+    }
+
+    private void awaitCombineWindow(Command<?> command) {
+        long remaining = command.queuedAt + mailboxProperties.getCombineWindow().toNanos() - System.nanoTime();
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the given database write on the aquarium with the given id, in the way of the tick mode.
+     * In ENGINE mode the write goes through the simulation engine, so that it stays in sync with the database.
+     * In LAZY mode the aquarium is materialized around the write.
+     * The engine lock is taken before the transaction, so that the engine flush can't wait on rows locked by the write.
+     * @param aquariumId
+     * @param write
+     * @return the result of the write.
+     */
+    private <T> T write(Long aquariumId, Supplier<T> write) {
+        return switch (tickProperties.getMode()) {
+            case ENGINE -> simulationEngine.writeAquarium(aquariumId, write);
+            case LAZY -> statsMaterializer.writeAquarium(aquariumId, write);
+            default -> write.get();
+        };
+    }
+
+    private class Command<T> {
+
+        private final Long aquariumId;
+        private final Supplier<T> command;
+        private final Combiner<?, T> combiner;
+        private final Object mutation;
+        private final long queuedAt = System.nanoTime();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+
+        private Command(Long aquariumId, Supplier<T> command) {
+            this.aquariumId = aquariumId;
+            this.command = command;
+            this.combiner = null;
+            this.mutation = null;
+        }
+
+        private <M> Command(Long aquariumId, Combiner<M, T> combiner, M mutation) {
+            this.aquariumId = aquariumId;
+            this.command = () -> combiner.combine(aquariumId, List.of(mutation)).getFirst();
+            this.combiner = combiner;
+            this.mutation = mutation;
+        }
+
+        private void run() {
+            result = command.get();
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+
+        private void runAlone() {
+            try {
+                optimisticRetry.run("aquarium", () -> write(aquariumId, () -> new TransactionTemplate(transactionManager).execute(status -> {
+                    run();
+                    return null;
+                })));
+                complete();
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Stops a mailbox until an operation on many aquariums ends.
+     */
+    private static class Gate {
+
+        private final CompletableFuture<Void> reached = new CompletableFuture<>();
+        private final CountDownLatch released;
+
+        private Gate(CountDownLatch released) {
+            this.released = released;
+        }
+
+        private void pass() {
+            reached.complete(null);
+
+            // Parking a virtual thread holds no carrier thread
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    released.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
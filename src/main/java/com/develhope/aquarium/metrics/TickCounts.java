@@ -0,0 +1,56 @@
+package com.develhope.aquarium.metrics;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Numbers of aquariums and fishes processed by a tick and of fishes died in it.
+ * Partitions of a tick run concurrently, so counts are added from many threads.
+ * Counts added in a transaction only count once it commits, so a chunk rolled back and run again is counted once.
+ */
+public class TickCounts {
+
+    private final LongAdder aquariums = new LongAdder();
+    private final LongAdder fishes = new LongAdder();
+    private final LongAdder deaths = new LongAdder();
+
+    /**
+     * Adds the counts of a part of the tick.
+     * @param aquariums processed aquariums.
+     * @param fishes processed fishes, including the dead ones.
+     * @param deaths dead fishes.
+     */
+    public void add(long aquariums, long fishes, long deaths) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+                @Override
+                public void afterCommit() {
+                    addNow(aquariums, fishes, deaths);
+                }
+            });
+        } else {
+            addNow(aquariums, fishes, deaths);
+        }
+    }
+
+    private void addNow(long aquariums, long fishes, long deaths) {
+        this.aquariums.add(aquariums);
+        this.fishes.add(fishes);
+        this.deaths.add(deaths);
+    }
+
+    public long getAquariums() {
+        return aquariums.sum();
+    }
+
+    public long getFishes() {
+        return fishes.sum();
+    }
+
+    public long getDeaths() {
+        return deaths.sum();
+    }
+}
@@ -0,0 +1,135 @@
+package com.develhope.aquarium.metrics;
+
+import com.develhope.aquarium.configurations.TickProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Records the meters of the stats and aging ticks, tagged with the tick name and mode:
+ * "aquarium.tick.duration" timer, "aquarium.tick.overruns" counting ticks longer than their period,
+ * "aquarium.tick.aquariums", "aquarium.tick.fishes", "aquarium.tick.deaths" summaries of the counts of every tick,
+ * the scheduling meters: "aquarium.tick.lag" gauge, "aquarium.tick.coalesced" and "aquarium.tick.failures" counters,
+ * and the "aquarium.tick.segment.failures" counter of the chunked ticks.
+ */
+@Component
+public class TickMetrics {
+
+    public static final String STATS = "stats";
+    public static final String AGING = "aging";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    /**
+     * Runs and times the given tick, which adds what it processes to the given counts.
+     * Failed ticks are timed too, with the exception tag.
+     * @param tick name of the tick.
+     * @param period period at which the tick runs, longer ticks are counted as overruns.
+     * @param tickTask
+     */
+    public void record(String tick, Duration period, Consumer<TickCounts> tickTask) {
+        TickCounts counts = new TickCounts();
+        String exception = "none";
+        long start = System.nanoTime();
+        try {
+            tickTask.accept(counts);
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            long duration = System.nanoTime() - start;
+            Tags tags = Tags.of("tick", tick, "mode", tickProperties.getMode().name());
+
+            Timer.builder("aquarium.tick.duration")
+                    .description("Duration of the ticks")
+                    .tags(tags)
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(duration));
+
+            Counter overruns = Counter.builder("aquarium.tick.overruns")
+                    .description("Ticks which took longer than their period")
+                    .tags(tags)
+                    .register(meterRegistry);
+            if (duration > period.toNanos()) {
+                overruns.increment();
+            }
+
+            summary("aquarium.tick.aquariums", "aquariums", "Aquariums processed by every tick", tags).record(counts.getAquariums());
+            summary("aquarium.tick.fishes", "fishes", "Fishes processed by every tick", tags).record(counts.getFishes());
+            summary("aquarium.tick.deaths", "fishes", "Fishes died in every tick", tags).record(counts.getDeaths());
+        }
+    }
+
+    /**
+     * Registers the gauge of how late the given tick runs.
+     * @param tick name of the tick.
+     * @param lagSeconds supplier of the lag, in seconds.
+     */
+    public void registerLag(String tick, Supplier<Number> lagSeconds) {
+        Gauge.builder("aquarium.tick.lag", lagSeconds)
+                .description("Time elapsed since the oldest tick not applied yet was due")
+                .baseUnit("seconds")
+                .tag("tick", tick)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts the ticks applied together with an earlier one, instead of running back to back.
+     * @param tick name of the tick.
+     * @param ticks
+     */
+    public void recordCoalesced(String tick, long ticks) {
+        Counter.builder("aquarium.tick.coalesced")
+                .description("Late ticks applied together with an earlier one")
+                .tag("tick", tick)
+                .register(meterRegistry)
+                .increment(ticks);
+    }
+
+    /**
+     * Counts a failed run of the given tick.
+     * @param tick name of the tick.
+     */
+    public void recordFailure(String tick) {
+        Counter.builder("aquarium.tick.failures")
+                .description("Runs of the tick which threw an exception")
+                .tag("tick", tick)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts a failed attempt of a segment of a chunked tick, which is tried again by the next run.
+     * @param tick name of the tick.
+     */
+    public void recordSegmentFailure(String tick) {
+        Counter.builder("aquarium.tick.segment.failures")
+                .description("Attempts of a segment of a chunked tick which threw an exception")
+                .tag("tick", tick)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private DistributionSummary summary(String name, String unit, String description, Tags tags) {
+        return DistributionSummary.builder(name)
+                .baseUnit(unit)
+                .description(description)
+                .tags(tags)
+                .register(meterRegistry);
+    }
+}
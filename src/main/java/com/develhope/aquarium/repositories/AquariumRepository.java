@@ -1,9 +1,259 @@
 package com.develhope.aquarium.repositories;
 
+import com.develhope.aquarium.dtos.AquariumChange;
+import com.develhope.aquarium.dtos.AquariumSummary;
 import com.develhope.aquarium.entities.Aquarium;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface AquariumRepository extends JpaRepository<Aquarium, Long> {
+
+    /**
+     * Finds the ids of all aquariums.
+     * @return the list of ids in ascending order.
+     */
+    @Query("SELECT a.id FROM Aquarium a ORDER BY a.id")
+    List<Long> findAllIds();
+
+    /**
+     * Finds all aquariums, fetching their fishes in the same query.
+     * @return the list of found aquariums in ascending order of id.
+     */
+    @Query("SELECT DISTINCT a FROM Aquarium a LEFT JOIN FETCH a.fishes ORDER BY a.id")
+    List<Aquarium> findAllWithFishes();
+
+    /**
+     * Finds the aquarium with the given id, fetching its fishes in the same query.
+     * @param id
+     * @return an optional containing the found aquarium.
+     */
+    @EntityGraph(attributePaths = "fishes")
+    Optional<Aquarium> findWithFishesById(Long id);
+
+    /**
+     * Summarizes all aquariums, counting their fishes in one aggregate query.
+     * @return the list of summaries in ascending order of id.
+     */
+    @Query("""
+            SELECT new com.develhope.aquarium.dtos.AquariumSummary(a.id, a.capacity, a.clearness, a.temperature, COUNT(f))
+            FROM Aquarium a LEFT JOIN a.fishes f
+            GROUP BY a.id, a.capacity, a.clearness, a.temperature
+            ORDER BY a.id""")
+    List<AquariumSummary> findAllSummaries();
+
+    /**
+     * Finds which of the given ids belong to an existing aquarium.
+     * @param ids
+     * @return the list of existing ids.
+     */
+    @Query("SELECT a.id FROM Aquarium a WHERE a.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds the optimistic lock version of the aquarium with the given id.
+     * @param id
+     * @return an optional containing the version, empty if the aquarium doesn't exist.
+     */
+    @Query("SELECT a.version FROM Aquarium a WHERE a.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Finds the ids of the aquariums following the given id, for keyset pagination.
+     * @param after
+     * @param limit
+     * @return the list of ids in ascending order.
+     */
+    @Query("SELECT a.id FROM Aquarium a WHERE a.id > :after ORDER BY a.id")
+    List<Long> findIdsAfter(@Param("after") Long after, Limit limit);
+
+    /**
+     * Finds the ids of the aquariums following the given id, up to the other given id (inclusive).
+     * @param after
+     * @param toId
+     * @param limit
+     * @return the list of ids in ascending order.
+     */
+    @Query("SELECT a.id FROM Aquarium a WHERE a.id > :after AND a.id <= :toId ORDER BY a.id")
+    List<Long> findIdsBetween(@Param("after") Long after, @Param("toId") Long toId, Limit limit);
+
+    /**
+     * Finds the aquariums with the given ids, fetching their fishes in the same query.
+     * @param ids
+     * @return the list of found aquariums in ascending order of id.
+     */
+    @Query("SELECT DISTINCT a FROM Aquarium a LEFT JOIN FETCH a.fishes WHERE a.id IN :ids ORDER BY a.id")
+    List<Aquarium> findAllWithFishesById(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Streams all aquariums with their fishes from a database cursor.
+     * Must be consumed inside a transaction, detaching aquariums once used keeps memory flat.
+     * @return the stream of aquariums in ascending order of id.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT a FROM Aquarium a LEFT JOIN FETCH a.fishes ORDER BY a.id")
+    Stream<Aquarium> streamAllWithFishes();
+
+    /**
+     * Finds the aquariums whose id is between the given ids (inclusive).
+     * @param fromId
+     * @param toId
+     * @return the list of found aquariums.
+     */
+    List<Aquarium> findByIdBetween(Long fromId, Long toId);
+
+    /**
+     * Reduces the clearness of the aquariums whose id is between the given ids (inclusive)
+     * by the given dirt quantity, never going below 0.
+     * Same rule as {@link Aquarium#dirty(Integer)}.
+     * @param dirtQuantity
+     * @param fromId
+     * @param toId
+     * @param changeVersion
+     * @return the number of updated aquariums.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Aquarium a SET a.clearness = CASE WHEN a.clearness > :dirtQuantity THEN a.clearness - :dirtQuantity ELSE 0 END,
+                a.changeVersion = :changeVersion, a.version = a.version + 1
+            WHERE a.id BETWEEN :fromId AND :toId""")
+    int dirtyBetween(@Param("dirtQuantity") Integer dirtQuantity, @Param("fromId") Long fromId, @Param("toId") Long toId,
+                     @Param("changeVersion") Long changeVersion);
+
+    /**
+     * Reserves a place for a new fish in the aquarium with the given id, if it isn't full.
+     * The check and the increment are a single statement, so concurrent reservations can't overfill the aquarium.
+     * @param id
+     * @return 1 if the place was reserved, 0 if the aquarium is full or doesn't exist.
+     */
+    @Modifying
+    @Query("UPDATE Aquarium a SET a.fishCount = a.fishCount + 1 WHERE a.id = :id AND a.fishCount < a.capacity")
+    int reserveFishPlace(@Param("id") Long id);
+
+    /**
+     * Increases the fish count of the aquarium with the given id, without checking its capacity.
+     * @param id
+     * @param fishes number of fishes which entered the aquarium.
+     * @return the number of updated aquariums.
+     */
+    @Modifying
+    @Query("UPDATE Aquarium a SET a.fishCount = a.fishCount + :fishes WHERE a.id = :id")
+    int increaseFishCount(@Param("id") Long id, @Param("fishes") Long fishes);
+
+    /**
+     * Reads the fish count of the aquarium with the given id from the database.
+     * @param id
+     * @return an optional containing the fish count.
+     */
+    @Query("SELECT a.fishCount FROM Aquarium a WHERE a.id = :id")
+    Optional<Long> findFishCountById(@Param("id") Long id);
+
+    /**
+     * Decreases the fish count of the aquarium with the given id.
+     * @param id
+     * @param fishes number of fishes which left the aquarium.
+     * @return the number of updated aquariums.
+     */
+    @Modifying
+    @Query("UPDATE Aquarium a SET a.fishCount = a.fishCount - :fishes WHERE a.id = :id")
+    int decreaseFishCount(@Param("id") Long id, @Param("fishes") Long fishes);
+
+    /**
+     * Decreases the fish count of the aquariums where the fishes with the given ids live.
+     * Must run before the fishes are deleted.
+     * @param fishIds
+     * @return the number of updated aquariums.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Aquarium a SET a.fishCount = a.fishCount - (SELECT COUNT(f) FROM Fish f WHERE f.aquarium.id = a.id AND f.id IN :fishIds)
+            WHERE a.id IN (SELECT f.aquarium.id FROM Fish f WHERE f.id IN :fishIds)""")
+    int decreaseFishCountByFishIds(@Param("fishIds") Collection<Long> fishIds);
+
+    /**
+     * Decreases the fish count of the aquariums whose id is between the given ids (inclusive)
+     * by the number of their dead fishes. Must run before dead fishes are deleted.
+     * @param fromId
+     * @param toId
+     * @return the number of updated aquariums.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Aquarium a SET a.fishCount = a.fishCount - (SELECT COUNT(f) FROM Fish f WHERE f.aquarium.id = a.id AND f.health <= 0)
+            WHERE a.id BETWEEN :fromId AND :toId""")
+    int decreaseFishCountByDeadFishes(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Finds the aquarium with the given id, locking its row until the end of the transaction.
+     * @param id
+     * @return an optional containing the found aquarium.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Aquarium a WHERE a.id = :id")
+    Optional<Aquarium> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Finds all aquariums, locking their rows until the end of the transaction.
+     * @return the list of found aquariums.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Aquarium a ORDER BY a.id")
+    List<Aquarium> findAllForUpdate();
+
+    /**
+     * Finds the aquariums with the given ids, locking their rows until the end of the transaction.
+     * @param ids
+     * @return the list of found aquariums in ascending order of id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Aquarium a WHERE a.id IN :ids ORDER BY a.id")
+    List<Aquarium> findAllForUpdateById(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Sets the stats tick of all aquariums.
+     * @param statsTick
+     * @return the number of updated aquariums.
+     */
+    @Modifying
+    @Query("UPDATE Aquarium a SET a.statsTick = :statsTick")
+    int resetStatsTick(@Param("statsTick") Long statsTick);
+
+    /**
+     * Finds the aquariums changed in the given range of versions, using the index on the change version.
+     * @param since exclusive.
+     * @param until inclusive.
+     * @return the list of changes in ascending order of version.
+     */
+    @Query("""
+            SELECT new com.develhope.aquarium.dtos.AquariumChange(a.id, a.capacity, a.clearness, a.temperature, a.changeVersion)
+            FROM Aquarium a WHERE a.changeVersion > :since AND a.changeVersion <= :until
+            ORDER BY a.changeVersion, a.id""")
+    List<AquariumChange> findChangesBetween(@Param("since") Long since, @Param("until") Long until);
+
+    /**
+     * @return the highest change version of all aquariums, 0 if there are none.
+     */
+    @Query("SELECT COALESCE(MAX(a.changeVersion), 0) FROM Aquarium a")
+    Long findMaxChangeVersion();
+
+    /**
+     * @return the highest id of all aquariums, 0 if there are none.
+     */
+    @Query("SELECT COALESCE(MAX(a.id), 0) FROM Aquarium a")
+    Long findMaxId();
 }
@@ -0,0 +1,31 @@
+package com.develhope.aquarium.repositories;
+
+import com.develhope.aquarium.entities.ClusterNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    /**
+     * Counts the nodes whose registration expires after the given instant.
+     * @param now
+     * @return the number of live nodes.
+     */
+    @Query("SELECT COUNT(n) FROM ClusterNode n WHERE n.expiresAt > :now")
+    long countLive(@Param("now") Instant now);
+
+    /**
+     * Deletes the nodes whose registration expired before the given instant.
+     * @param now
+     * @return the number of deleted nodes.
+     */
+    @Modifying
+    @Query("DELETE FROM ClusterNode n WHERE n.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -1,9 +1,222 @@
 package com.develhope.aquarium.repositories;
 
+import com.develhope.aquarium.dtos.FishChange;
 import com.develhope.aquarium.entities.Fish;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface FishRepository extends JpaRepository<Fish, Long> {
+
+    /**
+     * Finds all fishes living in the aquarium with the given id.
+     * @param aquariumId
+     * @return the list of found fishes.
+     */
+    List<Fish> findByAquariumId(Long aquariumId);
+
+    /**
+     * Finds all fishes, fetching their aquarium in the same query.
+     * @return the list of found fishes.
+     */
+    @Query("SELECT f FROM Fish f LEFT JOIN FETCH f.aquarium")
+    List<Fish> findAllWithAquarium();
+
+    /**
+     * Finds the fishes following the given id, fetching their aquarium in the same query, for keyset pagination.
+     * @param after
+     * @param limit
+     * @return the list of found fishes in ascending order of id.
+     */
+    @Query("SELECT f FROM Fish f LEFT JOIN FETCH f.aquarium WHERE f.id > :after ORDER BY f.id")
+    List<Fish> findAllWithAquariumAfter(@Param("after") Long after, Limit limit);
+
+    /**
+     * Streams all fishes with their aquarium from a database cursor.
+     * Must be consumed inside a transaction, detaching fishes once used keeps memory flat.
+     * @return the stream of fishes in ascending order of id.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT f FROM Fish f LEFT JOIN FETCH f.aquarium ORDER BY f.id")
+    Stream<Fish> streamAllWithAquarium();
+
+    /**
+     * Finds the fishes with the given ids, fetching their aquarium in the same query.
+     * @param ids
+     * @return the list of found fishes.
+     */
+    @Query("SELECT f FROM Fish f LEFT JOIN FETCH f.aquarium WHERE f.id IN :ids")
+    List<Fish> findAllWithAquariumById(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds the id of the aquarium the fish with the given id lives in.
+     * @param id
+     * @return an optional containing the aquarium id, empty if the fish doesn't exist or doesn't live in an aquarium.
+     */
+    @Query("SELECT f.aquarium.id FROM Fish f WHERE f.id = :id AND f.aquarium IS NOT NULL")
+    Optional<Long> findAquariumIdById(@Param("id") Long id);
+
+    /**
+     * Finds the optimistic lock version of the fish with the given id.
+     * @param id
+     * @return an optional containing the version, empty if the fish doesn't exist.
+     */
+    @Query("SELECT f.version FROM Fish f WHERE f.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Counts the fishes living in the aquarium with the given id by hunger level.
+     * @param aquariumId
+     * @return the list of hunger levels with the number of fishes at that level, as pairs.
+     */
+    @Query("SELECT f.hunger, COUNT(f) FROM Fish f WHERE f.aquarium.id = :aquariumId GROUP BY f.hunger")
+    List<Object[]> countByHunger(@Param("aquariumId") Long aquariumId);
+
+    /**
+     * Decreases the hunger of the fishes living in the aquarium with the given id
+     * by the given hunger satisfied for fish, never going below 0.
+     * Same rule as {@link Fish#feed(Integer)}.
+     * Loaded entities are cleared, as they would be stale.
+     * @param aquariumId
+     * @param hungerSatisfied
+     * @param changeVersion
+     * @return the number of fed fishes.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE Fish f SET f.hunger = CASE WHEN f.hunger > :hungerSatisfied THEN f.hunger - :hungerSatisfied ELSE 0 END,
+                f.changeVersion = :changeVersion, f.version = f.version + 1
+            WHERE f.aquarium.id = :aquariumId""")
+    int feedFishes(@Param("aquariumId") Long aquariumId, @Param("hungerSatisfied") Integer hungerSatisfied,
+                   @Param("changeVersion") Long changeVersion);
+
+    /**
+     * Increases hunger by 1 and updates health of the fishes living in the aquariums
+     * whose id is between the given ids (inclusive).
+     * Same rules as {@link Fish#increaseHunger()} followed by {@link Fish#updateHealth()}.
+     * Note:
+     * health is assigned before hunger and only reads the old hunger value,
+     * so the result doesn't depend on whether the database evaluates assignments in order (MySQL) or not.
+     * @param lowHunger
+     * @param highHunger
+     * @param fromId
+     * @param toId
+     * @param changeVersion
+     * @return the number of updated fishes.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Fish f SET
+                f.changeVersion = :changeVersion,
+                f.version = f.version + 1,
+                f.health = CASE
+                    WHEN least(100, f.hunger + 1) <= :lowHunger THEN least(100, f.health + 1)
+                    WHEN least(100, f.hunger + 1) > :highHunger THEN greatest(0, f.health - 1)
+                    ELSE f.health
+                END,
+                f.hunger = least(100, f.hunger + 1)
+            WHERE f.aquarium.id BETWEEN :fromId AND :toId""")
+    int increaseHungerAndUpdateHealth(@Param("lowHunger") Integer lowHunger, @Param("highHunger") Integer highHunger,
+                                      @Param("fromId") Long fromId, @Param("toId") Long toId,
+                                      @Param("changeVersion") Long changeVersion);
+
+    /**
+     * Decreases by 1 the health of the fishes living in the aquariums
+     * whose id is between the given ids (inclusive) and whose clearness is at most the given value.
+     * Same rule as {@link Fish#decreaseHealth()}.
+     * @param lowClearness
+     * @param fromId
+     * @param toId
+     * @param changeVersion
+     * @return the number of updated fishes.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Fish f SET f.health = greatest(0, f.health - 1), f.changeVersion = :changeVersion, f.version = f.version + 1
+            WHERE f.aquarium.id IN (
+                SELECT a.id FROM Aquarium a WHERE a.clearness <= :lowClearness AND a.id BETWEEN :fromId AND :toId)""")
+    int decreaseHealthInDirtyAquariums(@Param("lowClearness") Integer lowClearness,
+                                       @Param("fromId") Long fromId, @Param("toId") Long toId,
+                                       @Param("changeVersion") Long changeVersion);
+
+    /**
+     * Deletes the dead fishes living in the aquariums whose id is between the given ids (inclusive).
+     * @param fromId
+     * @param toId
+     * @return the number of deleted fishes.
+     */
+    @Modifying
+    @Query("DELETE FROM Fish f WHERE f.aquarium.id BETWEEN :fromId AND :toId AND f.health <= 0")
+    int deleteDeadFishes(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Increases by the given number of ticks the age of the fishes living in the aquariums whose id is between the given ids (inclusive).
+     * Same rule as {@link Fish#increaseAge(long)}.
+     * @param ticks
+     * @param fromId
+     * @param toId
+     * @param changeVersion
+     * @return the number of updated fishes.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Fish f SET f.age = f.age + :ticks, f.changeVersion = :changeVersion, f.version = f.version + 1
+            WHERE f.aquarium.id BETWEEN :fromId AND :toId""")
+    int increaseAgeBetween(@Param("ticks") Long ticks, @Param("fromId") Long fromId, @Param("toId") Long toId,
+                           @Param("changeVersion") Long changeVersion);
+
+    /**
+     * Sets the stats tick of all fishes.
+     * @param statsTick
+     * @return the number of updated fishes.
+     */
+    @Modifying
+    @Query("UPDATE Fish f SET f.statsTick = :statsTick")
+    int resetStatsTick(@Param("statsTick") Long statsTick);
+
+    /**
+     * Finds the fishes changed in the given range of versions, using the index on the change version.
+     * @param since exclusive.
+     * @param until inclusive.
+     * @return the list of changes in ascending order of version.
+     */
+    @Query("""
+            SELECT new com.develhope.aquarium.dtos.FishChange(f.id, a.id, f.name, f.species, f.hunger, f.health, f.age, f.changeVersion)
+            FROM Fish f LEFT JOIN f.aquarium a WHERE f.changeVersion > :since AND f.changeVersion <= :until
+            ORDER BY f.changeVersion, f.id""")
+    List<FishChange> findChangesBetween(@Param("since") Long since, @Param("until") Long until);
+
+    /**
+     * @return the highest change version of all fishes, 0 if there are none.
+     */
+    @Query("SELECT COALESCE(MAX(f.changeVersion), 0) FROM Fish f")
+    Long findMaxChangeVersion();
+
+    /**
+     * Moves the fish id sequence past the given id, so that fishes inserted with explicit ids are never reused.
+     * Hibernate keeps the sequence in the fish_seq table on databases without sequences.
+     * @param nextValue next value of the sequence, the upper end of the first pool handed out.
+     * @return the number of updated rows.
+     */
+    @Modifying
+    @Query(value = "UPDATE fish_seq SET next_val = GREATEST(next_val, :nextValue)", nativeQuery = true)
+    int advanceIdSequence(@Param("nextValue") Long nextValue);
+
+    /**
+     * @return the highest id of all fishes, 0 if there are none.
+     */
+    @Query("SELECT COALESCE(MAX(f.id), 0) FROM Fish f")
+    Long findMaxId();
 }
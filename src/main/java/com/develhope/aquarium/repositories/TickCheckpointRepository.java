@@ -0,0 +1,32 @@
+package com.develhope.aquarium.repositories;
+
+import com.develhope.aquarium.entities.TickCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TickCheckpointRepository extends JpaRepository<TickCheckpoint, Long> {
+
+    /**
+     * Finds the checkpoints of the given tick which aren't completed yet.
+     * @param tick
+     * @return the list of checkpoints in ascending order of id, so older runs come first.
+     */
+    List<TickCheckpoint> findByTickOrderById(String tick);
+
+    /**
+     * Moves the checkpoint with the given id past the given aquarium id.
+     * Runs in the transaction of the chunk ending with that aquarium.
+     * @param id
+     * @param lastProcessedId
+     * @return the number of updated checkpoints.
+     */
+    @Modifying
+    @Query("UPDATE TickCheckpoint c SET c.lastProcessedId = :lastProcessedId WHERE c.id = :id")
+    int advance(@Param("id") Long id, @Param("lastProcessedId") Long lastProcessedId);
+}
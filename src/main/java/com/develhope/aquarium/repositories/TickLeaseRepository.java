@@ -0,0 +1,89 @@
+package com.develhope.aquarium.repositories;
+
+import com.develhope.aquarium.entities.TickLease;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TickLeaseRepository extends JpaRepository<TickLease, Long> {
+
+    /**
+     * Finds all leases.
+     * @return the list of leases in ascending order of partition.
+     */
+    @Query("SELECT l FROM TickLease l ORDER BY l.partitionNumber")
+    List<TickLease> findAllOrdered();
+
+    /**
+     * Finds the highest partition having a lease.
+     * @return the partition number, -1 if there are no leases.
+     */
+    @Query("SELECT COALESCE(MAX(l.partitionNumber), -1) FROM TickLease l")
+    Long findMaxPartitionNumber();
+
+    /**
+     * Finds the lease of the given partition if the given node still holds it,
+     * locking its row until the end of the transaction so that it can't be released or claimed meanwhile.
+     * @param partitionNumber
+     * @param owner
+     * @param now
+     * @return an optional containing the held lease.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM TickLease l WHERE l.partitionNumber = :partitionNumber AND l.owner = :owner AND l.expiresAt > :now")
+    Optional<TickLease> findHeldForUpdate(@Param("partitionNumber") Long partitionNumber, @Param("owner") String owner,
+                                          @Param("now") Instant now);
+
+    /**
+     * Extends all leases held by the given node.
+     * @param owner
+     * @param expiresAt
+     * @return the number of renewed leases.
+     */
+    @Modifying
+    @Query("UPDATE TickLease l SET l.expiresAt = :expiresAt WHERE l.owner = :owner")
+    int renew(@Param("owner") String owner, @Param("expiresAt") Instant expiresAt);
+
+    /**
+     * Gives the lease of the given partition to the given node, if nobody holds it or its owner didn't renew it.
+     * @param partitionNumber
+     * @param owner
+     * @param now
+     * @param expiresAt
+     * @return 1 if the lease was claimed, 0 if another node holds it.
+     */
+    @Modifying
+    @Query("""
+            UPDATE TickLease l SET l.owner = :owner, l.expiresAt = :expiresAt
+            WHERE l.partitionNumber = :partitionNumber AND (l.owner IS NULL OR l.expiresAt <= :now)""")
+    int claim(@Param("partitionNumber") Long partitionNumber, @Param("owner") String owner,
+              @Param("now") Instant now, @Param("expiresAt") Instant expiresAt);
+
+    /**
+     * Releases the lease of the given partition, if the given node holds it.
+     * @param partitionNumber
+     * @param owner
+     * @return 1 if the lease was released, 0 otherwise.
+     */
+    @Modifying
+    @Query("UPDATE TickLease l SET l.owner = NULL, l.expiresAt = NULL WHERE l.partitionNumber = :partitionNumber AND l.owner = :owner")
+    int release(@Param("partitionNumber") Long partitionNumber, @Param("owner") String owner);
+
+    /**
+     * Releases all leases held by the given node.
+     * @param owner
+     * @return the number of released leases.
+     */
+    @Modifying
+    @Query("UPDATE TickLease l SET l.owner = NULL, l.expiresAt = NULL WHERE l.owner = :owner")
+    int releaseAll(@Param("owner") String owner);
+}
@@ -0,0 +1,72 @@
+package com.develhope.aquarium.repositories;
+
+import com.develhope.aquarium.dtos.DeletionChange;
+import com.develhope.aquarium.entities.Tombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TombstoneRepository extends JpaRepository<Tombstone, Long> {
+
+    /**
+     * Finds the deletions in the given range of versions, using the index on the change version.
+     * @param since exclusive.
+     * @param until inclusive.
+     * @return the list of deletions in ascending order of version.
+     */
+    @Query("""
+            SELECT new com.develhope.aquarium.dtos.DeletionChange(t.entityType, t.entityId, t.changeVersion)
+            FROM Tombstone t WHERE t.changeVersion > :since AND t.changeVersion <= :until
+            ORDER BY t.changeVersion, t.id""")
+    List<DeletionChange> findChangesBetween(@Param("since") Long since, @Param("until") Long until);
+
+    /**
+     * @return the highest change version of all tombstones, 0 if there are none.
+     */
+    @Query("SELECT COALESCE(MAX(t.changeVersion), 0) FROM Tombstone t")
+    Long findMaxChangeVersion();
+
+    /**
+     * Deletes the tombstones up to the given version (inclusive).
+     * @param changeVersion
+     * @return the number of deleted tombstones.
+     */
+    @Modifying
+    @Query("DELETE FROM Tombstone t WHERE t.changeVersion <= :changeVersion")
+    int deleteUpTo(@Param("changeVersion") Long changeVersion);
+
+    /**
+     * Records the deletion of the dead fishes living in the aquariums whose id is between the given ids (inclusive).
+     * Run before deleting them with a set-based statement.
+     * @param fromId
+     * @param toId
+     * @param changeVersion
+     * @return the number of recorded deletions.
+     */
+    @Modifying
+    @Query("""
+            INSERT INTO Tombstone (entityType, entityId, changeVersion)
+            SELECT com.develhope.aquarium.enumerations.ChangeEntityType.FISH, f.id, :changeVersion
+            FROM Fish f WHERE f.aquarium.id BETWEEN :fromId AND :toId AND f.health <= 0""")
+    int insertDeadFishTombstones(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("changeVersion") Long changeVersion);
+
+    /**
+     * Records the deletion of the fishes with the given ids.
+     * Run before deleting them with a set-based statement.
+     * @param fishIds
+     * @param changeVersion
+     * @return the number of recorded deletions.
+     */
+    @Modifying
+    @Query("""
+            INSERT INTO Tombstone (entityType, entityId, changeVersion)
+            SELECT com.develhope.aquarium.enumerations.ChangeEntityType.FISH, f.id, :changeVersion
+            FROM Fish f WHERE f.id IN :fishIds""")
+    int insertFishTombstones(@Param("fishIds") Collection<Long> fishIds, @Param("changeVersion") Long changeVersion);
+}
@@ -0,0 +1,104 @@
+package com.develhope.aquarium.retries;
+
+import com.develhope.aquarium.configurations.RetryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs database writes which fail when an entity they update was changed meanwhile, see the version of
+ * {@link com.develhope.aquarium.entities.Aquarium} and {@link com.develhope.aquarium.entities.Fish},
+ * trying them again after a random backoff growing at every conflict.
+ * Writes read the entities again at every attempt, so a retried write is applied on top of the one it conflicted with
+ * and no change is lost.
+ * Records the counters "aquarium.write.attempts", "aquarium.write.conflicts" and "aquarium.write.failures",
+ * tagged with the operation: the conflict rate is the ratio of conflicts to attempts.
+ */
+@Component
+public class OptimisticRetry {
+
+    @Autowired
+    private RetryProperties retryProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Runs the given write, trying it again on an optimistic lock conflict up to "max-attempts" times.
+     * Every attempt has to run in its own transaction, as the one of a conflict is rolled back.
+     * @param operation name of the write, for the metrics.
+     * @param write
+     * @return the result of the write.
+     */
+    public <T> T run(String operation, Supplier<T> write) {
+        Counter attempts = counter("aquarium.write.attempts", "Writes tried, retries included", operation);
+        Counter conflicts = counter("aquarium.write.conflicts", "Writes failed on an optimistic lock conflict", operation);
+
+        int attempt = 1;
+        while (true) {
+            attempts.increment();
+            try {
+                return write.get();
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                conflicts.increment();
+                if (attempt >= retryProperties.getMaxAttempts()) {
+                    counter("aquarium.write.failures", "Writes given up after conflicting at every attempt", operation).increment();
+                    throw e;
+                }
+                backoff(attempt);
+                attempt++;
+            }
+        }
+    }
+
+    /**
+     * @param e
+     * @return whether the given exception, or any of its causes, is an optimistic lock conflict.
+     */
+    public static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits a random time up to the backoff of the given attempt ("full jitter").
+     * @param attempt
+     */
+    private void backoff(int attempt) {
+        long initial = retryProperties.getInitialBackoff().toNanos();
+        long max = retryProperties.getMaxBackoff().toNanos();
+        long backoff = Math.min(max, initial << Math.min(attempt - 1, 20));
+        if (backoff <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(backoff + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Counter counter(String name, String description, String operation) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -1,36 +1,141 @@
 package com.develhope.aquarium.services;
 
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.changes.ChangeVersions;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.dtos.AquariumDto;
+import com.develhope.aquarium.dtos.AquariumSummary;
+import com.develhope.aquarium.dtos.FeedRequest;
+import com.develhope.aquarium.dtos.FishCreationResult;
+import com.develhope.aquarium.dtos.FishRequest;
+import com.develhope.aquarium.dtos.KeysetPage;
 import com.develhope.aquarium.entities.Aquarium;
 import com.develhope.aquarium.entities.Fish;
 import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.enumerations.TickMode;
 import com.develhope.aquarium.exceptions.AquariumCapacityExceededException;
 import com.develhope.aquarium.exceptions.AquariumNotFoundException;
+import com.develhope.aquarium.jfr.AquariumOperationEvent;
+import com.develhope.aquarium.jfr.AquariumProcessingEvent;
+import com.develhope.aquarium.jfr.TickPhaseEvent;
+import com.develhope.aquarium.mailboxes.AquariumMailboxes;
+import com.develhope.aquarium.mailboxes.AquariumMailboxes.Combiner;
+import com.develhope.aquarium.metrics.TickCounts;
+import com.develhope.aquarium.metrics.TickMetrics;
 import com.develhope.aquarium.repositories.AquariumRepository;
 import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.repositories.TombstoneRepository;
+import com.develhope.aquarium.retries.OptimisticRetry;
+import com.develhope.aquarium.simulation.FishEventScheduler;
+import com.develhope.aquarium.simulation.PartitionedTickExecutor;
+import com.develhope.aquarium.simulation.PartitionedTickExecutor.PartitionTask;
+import com.develhope.aquarium.simulation.SimulationClock;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import com.develhope.aquarium.simulation.StatsMaterializer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class AquariumService {
 
+    // Same as the JDBC batch size
+    private static final int BULK_BATCH_SIZE = 100;
+
     @Autowired
     private AquariumRepository aquariumRepository;
 
     @Autowired
     private FishRepository fishRepository;
 
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private PartitionedTickExecutor partitionedTickExecutor;
+
+    @Autowired
+    private StatsMaterializer statsMaterializer;
+
+    @Autowired
+    private SimulationClock simulationClock;
+
+    @Autowired
+    private FishEventScheduler fishEventScheduler;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private AquariumMailboxes aquariumMailboxes;
+
+    @Autowired
+    private TickMetrics tickMetrics;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Same instance for all feedings and cleanings, so that the mailboxes combine them
+    private final Combiner<AquariumMutation, Aquarium> mutationCombiner = this::applyMutations;
+
     /**
-     * Saves the given aquarium in the database.
+     * Saves the given aquarium in the database, through its mailbox if it already exists.
      * @param aquarium
      * @return the saved aquarium.
      */
     public Aquarium save(Aquarium aquarium) {
-        return aquariumRepository.save(aquarium);
+
+        // An id without a stored aquarium creates a new one, with a generated id
+        boolean isNew = aquarium.getId() == null || !aquariumRepository.existsById(aquarium.getId());
+        if (isNew) {
+            aquarium.setId(null);
+        }
+        Aquarium savedAquarium = join(aquariumMailboxes.submit(aquarium.getId(), () -> {
+
+            // The saved aquarium replaces the stored one, whatever version it was read at
+            if (!isNew) {
+                aquarium.setVersion(aquariumRepository.findVersionById(aquarium.getId()).orElse(null));
+            }
+            return withFishes(aquariumRepository.save(aquarium));
+        }));
+
+        // A new aquarium has to be loaded into the engine, or to get the current tick
+        if (isNew) {
+            switch (tickProperties.getMode()) {
+                case ENGINE -> simulationEngine.reloadAquarium(savedAquarium.getId());
+                case LAZY -> statsMaterializer.materialize(savedAquarium.getId());
+            }
+        }
+        entityCache.invalidateAquarium(savedAquarium.getId());
+
+        return savedAquarium;
     }
 
     /**
@@ -38,16 +143,100 @@ public class AquariumService {
      * @return the list of found aquariums.
      */
     public List<Aquarium> findAll() {
-        return aquariumRepository.findAll();
+        return switch (tickProperties.getMode()) {
+            case ENGINE -> simulationEngine.findAllAquariums();
+            case LAZY -> statsMaterializer.materializeAll();
+            default -> aquariumRepository.findAllWithFishes();
+        };
+    }
+
+    /**
+     * Summarizes all aquariums with the number of their fishes.
+     * @return the list of summaries in ascending order of id.
+     */
+    public List<AquariumSummary> findAllSummaries() {
+        return switch (tickProperties.getMode()) {
+            case ENGINE -> simulationEngine.findAllSummaries();
+            case LAZY -> {
+                statsMaterializer.materializeAll();
+                yield aquariumRepository.findAllSummaries();
+            }
+            default -> aquariumRepository.findAllSummaries();
+        };
+    }
+
+    /**
+     * Finds a page of aquariums with their fishes using keyset pagination.
+     * @param after id of the last aquarium of the previous page, 0 for the first page.
+     * @param limit max number of aquariums in the page.
+     * @return the page of found aquariums in ascending order of id, short only when there are no more aquariums.
+     */
+    public KeysetPage<Aquarium> findPage(Long after, Integer limit) {
+        return switch (tickProperties.getMode()) {
+            // Aquariums deleted since the engine was read are skipped, so more pages are scanned to fill this one
+            case ENGINE -> KeysetPage.fill(after, limit, this::findEnginePage);
+            case LAZY -> statsMaterializer.materializeAfter(after, Limit.of(limit));
+            default -> {
+                List<Long> ids = aquariumRepository.findIdsAfter(after, Limit.of(limit));
+                yield KeysetPage.of(aquariumRepository.findAllWithFishesById(ids), ids, Limit.of(limit));
+            }
+        };
+    }
+
+    private KeysetPage<Aquarium> findEnginePage(Long after, Limit limit) {
+        List<Long> ids = aquariumRepository.findIdsAfter(after, limit);
+        List<Aquarium> aquariums = ids.stream()
+                .map(simulationEngine::findAquariumById)
+                .flatMap(Optional::stream)
+                .toList();
+        return KeysetPage.of(aquariums, ids, limit);
     }
 
     /**
-     * Finds the aquarium with the given id.
+     * Streams all aquariums with their fishes from a database cursor, passing them one at a time to the given consumer.
+     * Aquariums are detached before being passed, so memory doesn't grow with the number of aquariums.
+     * @param consumer
+     */
+    public void streamAll(Consumer<Aquarium> consumer) {
+
+        // Engine changes are written behind, so they are flushed first
+        if (tickProperties.getMode() == TickMode.ENGINE) {
+            simulationEngine.flush();
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Aquarium> aquariums = aquariumRepository.streamAllWithFishes()) {
+                aquariums.forEach(aquarium -> {
+                    entityManager.detach(aquarium);
+
+                    // In LAZY mode stored stats are base values
+                    if (tickProperties.getMode() == TickMode.LAZY) {
+                        statsMaterializer.project(aquarium);
+                    }
+
+                    consumer.accept(aquarium);
+                });
+            }
+        });
+    }
+
+    /**
+     * Finds the view of the aquarium with the given id, served from the cache when possible.
      * @param id
      * @return an optional containing the found aquarium.
      */
-    public Optional<Aquarium> findById(Long id) {
-        return aquariumRepository.findById(id);
+    public Optional<AquariumDto> findById(Long id) {
+        return entityCache.findAquarium(id, this::findByIdUncached);
+    }
+
+    private Optional<Aquarium> findByIdUncached(Long id) {
+        return switch (tickProperties.getMode()) {
+            case ENGINE -> simulationEngine.findAquariumById(id);
+            case LAZY -> statsMaterializer.materialize(id);
+            default -> aquariumRepository.findWithFishesById(id);
+        };
     }
 
     /**
@@ -57,6 +246,25 @@ public class AquariumService {
      * @return an optional containing the updated aquarium
      */
     public Optional<Aquarium> update(Long id, Aquarium updatedAquarium) {
+        return join(updateAsync(id, updatedAquarium));
+    }
+
+    /**
+     * Queues the update of the aquarium with the given id in its mailbox, see {@link #update(Long, Aquarium)}.
+     * @param id
+     * @param updatedAquarium
+     * @return a future completed with an optional containing the updated aquarium.
+     */
+    public CompletableFuture<Optional<Aquarium>> updateAsync(Long id, Aquarium updatedAquarium) {
+        return aquariumMailboxes.submit(id, () -> updateInDatabase(id, updatedAquarium).map(this::withFishes))
+                .whenComplete((aquarium, e) -> {
+                    if (e == null) {
+                        entityCache.invalidateAquarium(id);
+                    }
+                });
+    }
+
+    private Optional<Aquarium> updateInDatabase(Long id, Aquarium updatedAquarium) {
 
         Optional<Aquarium> aquarium = aquariumRepository.findById(id);
 
@@ -77,7 +285,11 @@ public class AquariumService {
      * @param id
      */
     public void delete(Long id) {
-        aquariumRepository.deleteById(id);
+        join(aquariumMailboxes.submit(id, () -> {
+            aquariumRepository.deleteById(id);
+            return null;
+        }));
+        entityCache.invalidateAquariumWithFishes(id);
     }
 
     /**
@@ -90,30 +302,176 @@ public class AquariumService {
      * @throws AquariumCapacityExceededException
      */
     public Fish addFish(Long aquariumId, String fishName, FishSpecies fishSpecies) throws AquariumNotFoundException, AquariumCapacityExceededException {
+        return join(addFishAsync(aquariumId, fishName, fishSpecies));
+    }
 
-        // Find aquarium by id
-        Optional<Aquarium> aquarium = aquariumRepository.findById(aquariumId);
+    /**
+     * Queues the creation of a fish in the mailbox of the aquarium with the given id, see {@link #addFish(Long, String, FishSpecies)}.
+     * @param aquariumId
+     * @param fishName
+     * @param fishSpecies
+     * @return a future completed with the saved fish.
+     */
+    public CompletableFuture<Fish> addFishAsync(Long aquariumId, String fishName, FishSpecies fishSpecies) {
+        AquariumOperationEvent event = AquariumOperationEvent.begin(AquariumOperationEvent.ADD_FISH, aquariumId);
+        return aquariumMailboxes.submit(aquariumId, () -> addFishInDatabase(aquariumId, fishName, fishSpecies))
+                .whenComplete((fish, e) -> {
+                    if (e == null) {
+                        entityCache.invalidateAquarium(aquariumId);
+
+                        // The reserved place and the new fish
+                        event.setCounts(1, 2);
+                    } else {
+                        event.setException(e);
+                    }
+                    event.commit();
+                });
+    }
 
-        // Check if aquarium exists
-        if (aquarium.isEmpty()) {
+    private Fish addFishInDatabase(Long aquariumId, String fishName, FishSpecies fishSpecies) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+
+            // Reserve a place in the aquarium, the check is atomic so concurrent adds can't overfill it
+            if (aquariumRepository.reserveFishPlace(aquariumId) == 0) {
+
+                // Check if aquarium exists
+                if (!aquariumRepository.existsById(aquariumId)) {
+                    throw new AquariumNotFoundException("Aquarium with id " + aquariumId + " not found");
+                }
+
+                throw new AquariumCapacityExceededException("Aquarium is full");
+            }
+
+            // Create fish and put in aquarium
+            Fish fish = new Fish(fishName, fishSpecies);
+            fish.setAquarium(aquariumRepository.getReferenceById(aquariumId));
+
+            return fishRepository.save(fish);
+        });
+    }
+
+    /**
+     * Saves and puts the given new fishes into the aquarium with the given id, see {@link #addFishes(Long, Iterator)}.
+     * @param aquariumId
+     * @param fishRequests
+     * @return the result of every requested fish, in the same order.
+     * @throws AquariumNotFoundException
+     */
+    public List<FishCreationResult> addFishes(Long aquariumId, List<FishRequest> fishRequests) throws AquariumNotFoundException {
+        return addFishes(aquariumId, fishRequests.iterator());
+    }
+
+    /**
+     * Saves and puts the given new fishes into the aquarium with the given id.
+     * Requests are taken from the iterator one JDBC batch at a time, each one inserted in its own transaction,
+     * so that requests read from a stream are never all held in memory.
+     * Capacity is checked once per batch, and fishes are accepted in order until the aquarium is full.
+     * Missing or incomplete requests are rejected.
+     * @param aquariumId
+     * @param fishRequests
+     * @return the result of every requested fish, in the same order.
+     * @throws AquariumNotFoundException if the aquarium doesn't exist, before any fish is added.
+     */
+    public List<FishCreationResult> addFishes(Long aquariumId, Iterator<FishRequest> fishRequests) throws AquariumNotFoundException {
+        if (!fishRequests.hasNext() && !aquariumRepository.existsById(aquariumId)) {
             throw new AquariumNotFoundException("Aquarium with id " + aquariumId + " not found");
         }
 
-        // Check aquarium capacity
-        if (aquarium.get().getFishes().size() >= aquarium.get().getCapacity()) {
-            throw new AquariumCapacityExceededException("Aquarium is full");
+        List<FishCreationResult> results = new ArrayList<>();
+        try {
+            while (fishRequests.hasNext()) {
+                List<FishRequest> batch = new ArrayList<>(BULK_BATCH_SIZE);
+                while (fishRequests.hasNext() && batch.size() < BULK_BATCH_SIZE) {
+                    batch.add(fishRequests.next());
+                }
+                int firstIndex = results.size();
+                results.addAll(join(aquariumMailboxes.submit(aquariumId, () -> addFishesInDatabase(aquariumId, batch, firstIndex))));
+            }
+        } finally {
+            entityCache.invalidateAquarium(aquariumId);
         }
+        return results;
+    }
+
+    private List<FishCreationResult> addFishesInDatabase(Long aquariumId, List<FishRequest> fishRequests, int firstIndex) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+
+            // Find aquarium by id, locking it until all fishes are inserted
+            Optional<Aquarium> aquarium = aquariumRepository.findByIdForUpdate(aquariumId);
+
+            // Check if aquarium exists
+            if (aquarium.isEmpty()) {
+                throw new AquariumNotFoundException("Aquarium with id " + aquariumId + " not found");
+            }
+
+            // Check aquarium capacity once, fish count is read again as it's only changed by update statements
+            long freePlaces = aquarium.get().getCapacity() - aquariumRepository.findFishCountById(aquariumId).orElse(0L);
+
+            List<FishCreationResult> results = new ArrayList<>(fishRequests.size());
+            List<Fish> batch = new ArrayList<>(BULK_BATCH_SIZE);
+            List<Integer> batchIndexes = new ArrayList<>(BULK_BATCH_SIZE);
+            long createdFishes = 0;
+
+            for (int i = 0; i < fishRequests.size(); i++) {
+                FishRequest fishRequest = fishRequests.get(i);
+                int index = firstIndex + i;
+
+                if (fishRequest == null || !fishRequest.isValid()) {
+                    results.add(FishCreationResult.rejected(index, "Fish name and species are required"));
+                    continue;
+                }
+                if (createdFishes >= freePlaces) {
+                    results.add(FishCreationResult.rejected(index, "Aquarium is full"));
+                    continue;
+                }
+
+                // Create fish and put in aquarium
+                Fish fish = new Fish(fishRequest.name(), fishRequest.species());
+                fish.setAquarium(aquariumRepository.getReferenceById(aquariumId));
+                batch.add(fish);
+                batchIndexes.add(i);
+                results.add(null);
+                createdFishes++;
 
-        // Create fish and put in aquarium
-        Fish fish = new Fish(fishName, fishSpecies);
-        fish.setAquarium(aquarium.get());
+                if (batch.size() == BULK_BATCH_SIZE) {
+                    insertBatch(batch, batchIndexes, results, firstIndex);
+                }
+            }
+            insertBatch(batch, batchIndexes, results, firstIndex);
 
-        return fishRepository.save(fish);
+            if (createdFishes > 0) {
+                aquariumRepository.increaseFishCount(aquariumId, createdFishes);
+            }
 
+            return results;
+        });
     }
 
+    /**
+     * Inserts the given fishes with one JDBC batch and records their results,
+     * then detaches them so that memory doesn't grow with the number of fishes.
+     * Only these fishes are detached, the entities of a mailbox batch sharing the transaction stay managed.
+     * @param batch
+     * @param batchIndexes positions of the fishes in the results.
+     * @param results
+     * @param firstIndex index in the request of the first result.
+     */
+    private void insertBatch(List<Fish> batch, List<Integer> batchIndexes, List<FishCreationResult> results, int firstIndex) {
+        if (batch.isEmpty()) {
+            return;
+        }
 
+        fishRepository.saveAll(batch);
+        entityManager.flush();
+        batch.forEach(entityManager::detach);
 
+        for (int i = 0; i < batch.size(); i++) {
+            int position = batchIndexes.get(i);
+            results.set(position, FishCreationResult.created(firstIndex + position, batch.get(i).getId()));
+        }
+        batch.clear();
+        batchIndexes.clear();
+    }
 
     /**
      * Gives the given food amount to all fishes of the aquarium with the given id.
@@ -128,113 +486,373 @@ public class AquariumService {
      * @throws AquariumNotFoundException
      */
     public Aquarium feedFishes(Long aquariumId, Integer foodQuantity) throws AquariumNotFoundException {
+        return join(feedFishesAsync(aquariumId, foodQuantity));
+    }
 
-        // Find aquarium by id
-        Optional<Aquarium> aquarium = aquariumRepository.findById(aquariumId);
+    /**
+     * Queues the feeding of the fishes in the mailbox of the aquarium with the given id, see {@link #feedFishes(Long, Integer)}.
+     * Feedings and cleanings queued one after the other are written together, see {@link #applyMutations(Long, List)}.
+     * @param aquariumId
+     * @param foodQuantity
+     * @return a future completed with the updated aquarium.
+     */
+    public CompletableFuture<Aquarium> feedFishesAsync(Long aquariumId, Integer foodQuantity) {
+        AquariumOperationEvent event = AquariumOperationEvent.begin(AquariumOperationEvent.FEED_FISHES, aquariumId);
+        return aquariumMailboxes.submit(aquariumId, mutationCombiner, AquariumMutation.feeding(foodQuantity))
+                .whenComplete((aquarium, e) -> {
+                    if (e == null) {
+                        entityCache.invalidateAquariumWithFishes(aquariumId);
+
+                        // All fishes and the aquarium are updated
+                        event.setCounts(aquarium.getFishCount(), aquarium.getFishCount() + 1);
+                    } else {
+                        event.setException(e);
+                    }
+                    event.commit();
+                });
+    }
 
-        // Check if aquarium exists
-        if (aquarium.isEmpty()) {
-            throw new AquariumNotFoundException("Aquarium with id " + aquariumId + " not found");
+    /**
+     * Feeds the fishes of many aquariums in one transaction, with the same rules of {@link #feedFishes(Long, Integer)}.
+     * The mailboxes of all aquariums are held until the transaction ends.
+     * The transaction is run again if it conflicts with a write made meanwhile, see {@link OptimisticRetry}.
+     * Aquariums are fed in ascending order of id, so that concurrent requests lock them in the same order.
+     * @param feedRequests
+     * @return the summaries of the fed aquariums, in the same order of the requests.
+     * @throws AquariumNotFoundException if any aquarium doesn't exist, in which case no aquarium is fed.
+     */
+    public List<AquariumSummary> feedFishes(List<FeedRequest> feedRequests) throws AquariumNotFoundException {
+
+        // Check all aquariums exist before feeding any of them
+        Set<Long> aquariumIds = new TreeSet<>();
+        feedRequests.forEach(feedRequest -> aquariumIds.add(feedRequest.aquariumId()));
+        Set<Long> foundIds = new HashSet<>(aquariumRepository.findExistingIds(aquariumIds));
+        for (Long aquariumId : aquariumIds) {
+            if (!foundIds.contains(aquariumId)) {
+                throw new AquariumNotFoundException("Aquarium with id " + aquariumId + " not found");
+            }
         }
 
-        // Get fishes
-        List<Fish> fishes = new ArrayList<>(aquarium.get().getFishes());
+        Integer[] order = new Integer[feedRequests.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(i -> feedRequests.get(i).aquariumId()));
+
+        List<AquariumSummary> summaries = aquariumMailboxes.runExclusive(aquariumIds, () -> optimisticRetry.run("aquarium", () ->
+                writeAll(aquariumIds, () -> new TransactionTemplate(transactionManager).execute(status -> {
+                    AquariumSummary[] fed = new AquariumSummary[feedRequests.size()];
+                    for (int i : order) {
+                        FeedRequest feedRequest = feedRequests.get(i);
+                        Supplier<AquariumSummary> feed = () -> feedFishesInDatabase(feedRequest.aquariumId(), feedRequest.foodQuantity());
+                        fed[i] = tickProperties.getMode() == TickMode.LAZY
+                                ? statsMaterializer.writeAquarium(feedRequest.aquariumId(), feed)
+                                : feed.get();
+                    }
+                    return Arrays.asList(fed);
+                }))));
+        aquariumIds.forEach(entityCache::invalidateAquariumWithFishes);
+        return summaries;
+    }
 
-        // Food quantity is related to the capacity of the aquarium.
-        // If reached capacity, food quantity would be equivalent to hunger satisfied for fish,
-        // or else it has to be proportioned to the number of fishes.
+    private AquariumSummary feedFishesInDatabase(Long aquariumId, Integer foodQuantity) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
 
-        // The formula to convert food quantity in hunger level is:
-        // hunger = food * capacity / number of fishes
+            // Find aquarium by id
+            Optional<Aquarium> aquarium = aquariumRepository.findById(aquariumId);
 
-        int hungerSatisfiedForFish = (int) (foodQuantity * aquarium.get().getCapacity() / fishes.size());
+            // Check if aquarium exists
+            if (aquarium.isEmpty()) {
+                throw new AquariumNotFoundException("Aquarium with id " + aquariumId + " not found");
+            }
 
-        for (Fish fish : fishes) {
-            if (fish.getHunger() < hungerSatisfiedForFish) {
+            // Count fishes by hunger level, as fishes with the same hunger waste the same food
+            List<Object[]> hungerCounts = fishRepository.countByHunger(aquariumId);
+            long fishes = 0;
+            for (Object[] hungerCount : hungerCounts) {
+                fishes += (Long) hungerCount[1];
+            }
+
+            if (fishes == 0) {
+                return summary(aquarium.get(), 0);
+            }
+
+            // Food quantity is related to the capacity of the aquarium.
+            // If reached capacity, food quantity would be equivalent to hunger satisfied for fish,
+            // or else it has to be proportioned to the number of fishes.
+
+            // The formula to convert food quantity in hunger level is:
+            // hunger = food * capacity / number of fishes
+
+            Long capacity = aquarium.get().getCapacity();
+            int hungerSatisfiedForFish = (int) (foodQuantity * capacity / fishes);
 
-                // Dirtiness of the aquarium is the sum of all wasted food.
-                // It's equivalent to the sum of over-satisfied hunger of all the fishes
-                // (which is proportioned to the number of fishes), divided by the capacity of the aquarium.
+            // Dirtiness of the aquarium is the sum of all wasted food.
+            // It's equivalent to the sum of over-satisfied hunger of all the fishes
+            // (which is proportioned to the number of fishes), divided by the capacity of the aquarium.
 
-                // From the same formula used to calculate hunger satisfied for fish:
-                // food = hunger * number of fishes / capacity
+            // From the same formula used to calculate hunger satisfied for fish:
+            // food = hunger * number of fishes / capacity
 
-                // The formula is valid if all fishes has the same level of hunger,
-                // otherwise it has to be adapted as follows:
-                // food = sum of all hunger / capacity
+            // The formula is valid if all fishes has the same level of hunger,
+            // otherwise it has to be adapted as follows:
+            // food = sum of all hunger / capacity
 
-                Integer wastedFood = (int) ((hungerSatisfiedForFish - fish.getHunger())/aquarium.get().getCapacity());
-                aquarium.get().dirty(wastedFood);
+            long wastedFood = 0;
+            for (Object[] hungerCount : hungerCounts) {
+                Integer hunger = (Integer) hungerCount[0];
+                if (hunger < hungerSatisfiedForFish) {
+                    wastedFood += (Long) hungerCount[1] * ((hungerSatisfiedForFish - hunger) / capacity);
+                }
             }
 
-            // Feed fish and update it
-            fish.feed(hungerSatisfiedForFish);
-            fishRepository.save(fish);
-        }
+            // Feed all fishes with one statement
+            fishRepository.feedFishes(aquariumId, hungerSatisfiedForFish, changeVersions.currentVersion());
 
-        // Update and return aquarium
-        return aquariumRepository.save(aquarium.get());
+            // Update aquarium, found again as feeding cleared loaded entities
+            Aquarium fedAquarium = aquariumRepository.findById(aquariumId).orElseThrow();
+            fedAquarium.dirty((int) Math.min(Integer.MAX_VALUE, wastedFood));
+            return summary(aquariumRepository.save(fedAquarium), fishes);
+        });
+    }
 
+    private AquariumSummary summary(Aquarium aquarium, long fishes) {
+        return new AquariumSummary(aquarium.getId(), aquarium.getCapacity(), aquarium.getClearness(), aquarium.getTemperature(), fishes);
     }
 
     /**
-     * Increase hunger and updates health of all fishes and decrease the clearness of all aquariums.
+     * Runs one stats tick, see {@link #updateStats(long)}.
      */
-    @Transactional
     public void updateStats() {
+        updateStats(1);
+    }
+
+    /**
+     * Increase hunger and updates health of all fishes and decrease the clearness of all aquariums,
+     * as many times as the given number of ticks, in a single pass over the world.
+     * The way rules are applied depends on the configured tick mode.
+     * ENTITY and BULK ticks run in chunks of aquariums, each one committed in its own transaction with a checkpoint,
+     * after resuming the chunks left behind by earlier runs.
+     * LAZY ticks only materialize the aquariums having fishes which died or crossed a hunger threshold,
+     * which already covers all the ticks elapsed.
+     * ENTITY, BULK and LAZY ticks hold the mailboxes of the aquariums they write, so that no command runs on them meanwhile.
+     * In a cluster, which only runs ENTITY and BULK ticks, they only process the partitions leased by this node.
+     * Every aquarium and fish changes, so all cached views are invalidated.
+     * @param ticks number of ticks to apply, more than 1 when late ticks are coalesced.
+     */
+    public void updateStats(long ticks) {
+        tickMetrics.record(TickMetrics.STATS, tickProperties.getStatsPeriod(), counts -> {
+            switch (tickProperties.getMode()) {
+                case ENTITY, BULK -> partitionedTickExecutor.execute(TickMetrics.STATS, simulationClock.currentTick(), ticks,
+                        aquariumRepository.findAllIds(), statsTask(counts));
+                case ENGINE -> {
+
+                    // Changes are written by the engine flush
+                    TickPhaseEvent process = TickPhaseEvent.begin(TickMode.ENGINE, TickPhaseEvent.PROCESS, 0, 0);
+                    simulationEngine.updateStats(ticks, counts);
+                    process.complete(counts.getAquariums() + counts.getFishes());
+                }
+                case LAZY -> {
+
+                    // Stats are computed when aquariums are read or written, or when a fish event is due
+                    SortedSet<Long> dueAquariumIds = fishEventScheduler.pollDueAquariums();
+                    aquariumMailboxes.runExclusive(dueAquariumIds, () -> {
+                        for (Long aquariumId : dueAquariumIds) {
+                            statsMaterializer.materialize(aquariumId, counts);
+                        }
+                        return null;
+                    });
+                }
+            }
+        });
+        entityCache.invalidateAll();
+    }
+
+    /**
+     * Resumes the ENTITY and BULK stats and aging ticks left unfinished by a failure or a restart.
+     * Other modes don't run ticks in chunks, so there is nothing to resume.
+     */
+    public void resumeTicks() {
+        if (tickProperties.getMode() != TickMode.ENTITY && tickProperties.getMode() != TickMode.BULK) {
+            return;
+        }
 
-        // Find all aquarium
-        List<Aquarium> aquariums = aquariumRepository.findAll();
+        tickMetrics.record(TickMetrics.STATS, tickProperties.getStatsPeriod(), counts ->
+                partitionedTickExecutor.resume(TickMetrics.STATS, statsTask(counts)));
+        tickMetrics.record(TickMetrics.AGING, tickProperties.getAgingPeriod(), counts ->
+                partitionedTickExecutor.resume(TickMetrics.AGING, agingTask(counts)));
+        entityCache.invalidateAll();
+    }
+
+    private PartitionTask statsTask(TickCounts counts) {
+        return tickProperties.getMode() == TickMode.BULK
+                ? (fromId, toId, ticks) -> updateStatsInBulk(fromId, toId, ticks, counts)
+                : (fromId, toId, ticks) -> updateStatsPerEntity(fromId, toId, ticks, counts);
+    }
+
+    /**
+     * Applies the stats rules loading and saving every aquarium and fish of a partition.
+     * Entities are loaded and written once, whatever the number of ticks.
+     * @param fromId first aquarium id of the partition.
+     * @param toId last aquarium id of the partition.
+     * @param ticks
+     * @param counts counts of the tick.
+     */
+    private void updateStatsPerEntity(Long fromId, Long toId, long ticks, TickCounts counts) {
+
+        // Find aquariums of the partition
+        TickPhaseEvent load = TickPhaseEvent.begin(TickMode.ENTITY, TickPhaseEvent.LOAD, fromId, toId);
+        List<Aquarium> aquariums = aquariumRepository.findByIdBetween(fromId, toId);
+        load.complete(aquariums.size());
+        long processedFishes = 0;
+        long partitionDeadFishes = 0;
 
         for (Aquarium aquarium : aquariums) {
+            AquariumProcessingEvent processing = AquariumProcessingEvent.begin(aquarium.getId());
+            int aquariumFishes = aquarium.getFishes().size();
+            long deadFishes = 0;
 
-            // Decrease aquarium clearness
-            aquarium.dirty(1);
+            for (long tick = 0; tick < ticks; tick++) {
 
-            // Clone fish list
-            List<Fish> fishes = new ArrayList<>(aquarium.getFishes());
+                // Decrease aquarium clearness
+                aquarium.dirty(1);
 
-            for (Fish fish : fishes) {
+                // Clone fish list
+                List<Fish> fishes = new ArrayList<>(aquarium.getFishes());
 
-                // Increase fish hunger
-                fish.increaseHunger();
+                for (Fish fish : fishes) {
 
-                // Update fish health
-                fish.updateHealth();
+                    // Increase fish hunger
+                    fish.increaseHunger();
 
-                // If aquarium is dirty, decrease fish health
-                if (aquarium.getClearness() <= aquarium.LOW_CLEARNESS) {
-                    fish.decreaseHealth();
-                }
+                    // Update fish health
+                    fish.updateHealth();
 
-                if (fish.getHealth() <= 0) {
+                    // If aquarium is dirty, decrease fish health
+                    if (aquarium.getClearness() <= Aquarium.LOW_CLEARNESS) {
+                        fish.decreaseHealth();
+                    }
 
-                    // If fish died delete it ...
-                    aquarium.removeFish(fish);
-                    fish.setAquarium(null);
-                    fishRepository.delete(fish);
+                    if (fish.getHealth() <= 0) {
 
-                } else {
+                        // If fish died delete it ...
+                        aquarium.removeFish(fish);
+                        fish.setAquarium(null);
+                        fishRepository.delete(fish);
+                        deadFishes++;
 
-                    // ... or else save it
-                    fishRepository.save(fish);
+                    } else {
 
+                        // ... or else save it
+                        fishRepository.save(fish);
+
+                    }
                 }
             }
 
             // Save aquarium updates
             aquariumRepository.save(aquarium);
+            if (deadFishes > 0) {
+                aquariumRepository.decreaseFishCount(aquarium.getId(), deadFishes);
+            }
+            processedFishes += aquariumFishes;
+            partitionDeadFishes += deadFishes;
+            processing.complete(aquariumFishes, deadFishes);
+        }
+
+        // Write updates and deletes now rather than on commit, so that they are timed apart
+        TickPhaseEvent flush = TickPhaseEvent.begin(TickMode.ENTITY, TickPhaseEvent.FLUSH, fromId, toId);
+        entityManager.flush();
+        flush.complete(aquariums.size() + processedFishes);
+
+        counts.add(aquariums.size(), processedFishes, partitionDeadFishes);
+    }
+
+    /**
+     * Applies the stats rules to a partition with set-based statements, without loading any entity.
+     * Results are the same as {@link #updateStatsPerEntity(Long, Long, long, TickCounts)}:
+     * aquariums are dirtied first, so fishes see the new clearness,
+     * and dead fishes are deleted only after their health has been updated.
+     * Statements run once per tick, in the same transaction.
+     * @param fromId first aquarium id of the partition.
+     * @param toId last aquarium id of the partition.
+     * @param ticks
+     * @param counts counts of the tick.
+     */
+    private void updateStatsInBulk(Long fromId, Long toId, long ticks, TickCounts counts) {
+        long changeVersion = changeVersions.currentVersion();
+
+        for (long tick = 0; tick < ticks; tick++) {
+            TickPhaseEvent process = TickPhaseEvent.begin(TickMode.BULK, TickPhaseEvent.PROCESS, fromId, toId);
+
+            // Decrease clearness of the aquariums
+            int aquariums = aquariumRepository.dirtyBetween(1, fromId, toId, changeVersion);
+
+            // Increase hunger and update health of their fishes
+            int fishes = fishRepository.increaseHungerAndUpdateHealth(Fish.LOW_HUNGER, Fish.HIGH_HUNGER, fromId, toId, changeVersion);
+
+            // Decrease health of fishes living in dirty aquariums
+            fishRepository.decreaseHealthInDirtyAquariums(Aquarium.LOW_CLEARNESS, fromId, toId, changeVersion);
+            process.complete(aquariums + fishes);
+
+            // Delete dead fishes, leaving their tombstones, before the next tick could heal them
+            TickPhaseEvent delete = TickPhaseEvent.begin(TickMode.BULK, TickPhaseEvent.DELETE, fromId, toId);
+            aquariumRepository.decreaseFishCountByDeadFishes(fromId, toId);
+            tombstoneRepository.insertDeadFishTombstones(fromId, toId, changeVersion);
+            int deadFishes = fishRepository.deleteDeadFishes(fromId, toId);
+            delete.complete(deadFishes);
+
+            // Fishes are counted once, in the first tick
+            counts.add(tick == 0 ? aquariums : 0, tick == 0 ? fishes : 0, deadFishes);
         }
     }
 
     /**
-     * Increases all fishes age.
+     * Runs one aging tick, see {@link #updateFishesAge(long)}.
      */
-    @Transactional
     public void updateFishesAge() {
+        updateFishesAge(1);
+    }
+
+    /**
+     * Increases all fishes age by the given number of ticks, in a single pass over the world.
+     * The way the rule is applied depends on the configured tick mode.
+     * ENTITY and BULK ticks run in chunks of aquariums, each one committed in its own transaction with a checkpoint,
+     * after resuming the chunks left behind by earlier runs.
+     * In a cluster, ticks are split among the nodes as in {@link #updateStats(long)}.
+     * @param ticks number of ticks to apply, more than 1 when late ticks are coalesced.
+     */
+    public void updateFishesAge(long ticks) {
+        tickMetrics.record(TickMetrics.AGING, tickProperties.getAgingPeriod(), counts -> {
+            switch (tickProperties.getMode()) {
+                case ENTITY, BULK -> partitionedTickExecutor.execute(TickMetrics.AGING,
+                        simulationClock.ticksElapsed(tickProperties.getAgingPeriod()), ticks,
+                        aquariumRepository.findAllIds(), agingTask(counts));
+                case ENGINE -> simulationEngine.updateFishesAge(ticks, counts);
+                case LAZY -> {
+                    // Age is computed when aquariums are read or written
+                }
+            }
+        });
+        entityCache.invalidateAll();
+    }
+
+    private PartitionTask agingTask(TickCounts counts) {
+        return tickProperties.getMode() == TickMode.BULK
+                ? (fromId, toId, ticks) -> counts.add(0, fishRepository.increaseAgeBetween(ticks, fromId, toId, changeVersions.currentVersion()), 0)
+                : (fromId, toId, ticks) -> updateFishesAgePerEntity(fromId, toId, ticks, counts);
+    }
 
-        // Find all aquarium
-        List<Aquarium> aquariums = aquariumRepository.findAll();
+    /**
+     * Increases the age of all fishes of a partition loading and saving every fish.
+     * @param fromId first aquarium id of the partition.
+     * @param toId last aquarium id of the partition.
+     * @param ticks
+     * @param counts counts of the tick.
+     */
+    private void updateFishesAgePerEntity(Long fromId, Long toId, long ticks, TickCounts counts) {
+
+        // Find aquariums of the partition
+        List<Aquarium> aquariums = aquariumRepository.findByIdBetween(fromId, toId);
+        long processedFishes = 0;
 
         for (Aquarium aquarium : aquariums) {
 
@@ -244,11 +862,13 @@ public class AquariumService {
             for (Fish fish : fishes) {
 
                 // Increase fish age and save
-                fish.increaseAge();
+                fish.increaseAge(ticks);
                 fishRepository.save(fish);
 
             }
+            processedFishes += fishes.size();
         }
+        counts.add(aquariums.size(), processedFishes, 0);
     }
 
 
@@ -259,13 +879,186 @@ public class AquariumService {
      * @throws AquariumNotFoundException
      */
     public Aquarium clean(Long id) throws AquariumNotFoundException {
-        Optional<Aquarium> aquarium = aquariumRepository.findById(id);
+        return join(cleanAsync(id));
+    }
 
-        if (aquarium.isEmpty()) {
-            throw new AquariumNotFoundException("Aquarium with id " + id + " not found");
+    /**
+     * Queues the cleaning in the mailbox of the aquarium with the given id, see {@link #clean(Long)}.
+     * Feedings and cleanings queued one after the other are written together, see {@link #applyMutations(Long, List)}.
+     * @param id
+     * @return a future completed with the updated aquarium.
+     */
+    public CompletableFuture<Aquarium> cleanAsync(Long id) {
+        AquariumOperationEvent event = AquariumOperationEvent.begin(AquariumOperationEvent.CLEAN, id);
+        return aquariumMailboxes.submit(id, mutationCombiner, AquariumMutation.cleaning())
+                .whenComplete((aquarium, e) -> {
+                    if (e == null) {
+                        entityCache.invalidateAquarium(id);
+                        event.setCounts(aquarium.getFishCount(), 1);
+                    } else {
+                        event.setException(e);
+                    }
+                    event.commit();
+                });
+    }
+
+    /**
+     * A feeding with the given food quantity, or a cleaning, queued in the mailbox of an aquarium.
+     * @param clean
+     * @param foodQuantity
+     */
+    private record AquariumMutation(boolean clean, Integer foodQuantity) {
+
+        private static AquariumMutation feeding(Integer foodQuantity) {
+            return new AquariumMutation(false, foodQuantity);
+        }
+
+        private static AquariumMutation cleaning() {
+            return new AquariumMutation(true, null);
+        }
+    }
+
+    /**
+     * Applies in order the feedings and cleanings queued one after the other on the aquarium with the given id,
+     * with the same rules of {@link #feedFishes(Long, Integer)} and {@link #clean(Long)}, and writes the result once:
+     * one statement for the hunger of all fishes, and one for the aquarium.
+     * As a single feeding, every feeding computes the food it wastes on the fishes counted by hunger level,
+     * and moves the counts to the levels it leaves them at.
+     * Feeding never makes a fish hungrier, so feeding one time after the other is the same as satisfying at once
+     * the sum of the hunger satisfied by every feeding.
+     * Many cleanings are the same as one.
+     * @param aquariumId
+     * @param mutations
+     * @return the view of the aquarium and its fishes after every mutation, in the same order.
+     * @throws AquariumNotFoundException
+     */
+    private List<Aquarium> applyMutations(Long aquariumId, List<AquariumMutation> mutations) {
+        Aquarium aquarium = aquariumRepository.findById(aquariumId)
+                .orElseThrow(() -> new AquariumNotFoundException("Aquarium with id " + aquariumId + " not found"));
+
+        // Count fishes by hunger level, as fishes with the same hunger waste the same food
+        TreeMap<Integer, Long> hungerCounts = new TreeMap<>();
+        long fishes = 0;
+        for (Object[] hungerCount : fishRepository.countByHunger(aquariumId)) {
+            hungerCounts.put((Integer) hungerCount[0], (Long) hungerCount[1]);
+            fishes += (Long) hungerCount[1];
+        }
+
+        // Only the callers before the last one need a view of the fishes as they were in between,
+        // the last one gets the fishes as written
+        List<Fish> fishesBefore = mutations.size() > 1 && fishes > 0
+                ? fishRepository.findByAquariumId(aquariumId).stream().map(AquariumService::copyOf).toList()
+                : List.of();
+
+        Long capacity = aquarium.getCapacity();
+        long hungerSatisfied = 0;
+        List<Aquarium> views = new ArrayList<>(mutations.size());
+        for (int m = 0; m < mutations.size(); m++) {
+            AquariumMutation mutation = mutations.get(m);
+            if (mutation.clean()) {
+                aquarium.clean();
+            } else if (fishes > 0) {
+
+                // Same formulas of a single feeding
+                int hungerSatisfiedForFish = (int) (mutation.foodQuantity() * capacity / fishes);
+                long wastedFood = 0;
+                TreeMap<Integer, Long> fedCounts = new TreeMap<>();
+                for (Map.Entry<Integer, Long> hungerCount : hungerCounts.entrySet()) {
+                    Integer hunger = hungerCount.getKey();
+                    if (hunger < hungerSatisfiedForFish) {
+                        wastedFood += hungerCount.getValue() * ((hungerSatisfiedForFish - hunger) / capacity);
+                    }
+                    fedCounts.merge(hunger > hungerSatisfiedForFish ? hunger - hungerSatisfiedForFish : 0, hungerCount.getValue(), Long::sum);
+                }
+                hungerCounts = fedCounts;
+                hungerSatisfied += hungerSatisfiedForFish;
+                aquarium.dirty((int) Math.min(Integer.MAX_VALUE, wastedFood));
+            }
+            if (m < mutations.size() - 1) {
+                views.add(view(aquarium, fishesBefore, hungerSatisfied));
+            }
+        }
+
+        // Write the aquarium, then feed all fishes with one statement
+        aquariumRepository.save(aquarium);
+        if (fishes > 0 && mutations.stream().anyMatch(mutation -> !mutation.clean())) {
+            fishRepository.feedFishes(aquariumId, (int) Math.min(Integer.MAX_VALUE, hungerSatisfied), changeVersions.currentVersion());
+        }
+
+        // Found again, as feeding cleared loaded entities
+        views.add(withFishes(aquariumRepository.findById(aquariumId).orElseThrow()));
+        return views;
+    }
+
+    private static Fish copyOf(Fish fish) {
+        Fish copy = new Fish(fish.getName(), fish.getSpecies());
+        copy.setId(fish.getId());
+        copy.setHunger(fish.getHunger());
+        copy.setHealth(fish.getHealth());
+        copy.setAge(fish.getAge());
+        return copy;
+    }
+
+    /**
+     * Builds a detached view of the given aquarium and fishes, after satisfying the given hunger of every fish.
+     * @param aquarium
+     * @param fishes fishes as they were before the feedings.
+     * @param hungerSatisfied
+     * @return the view of the aquarium.
+     */
+    private static Aquarium view(Aquarium aquarium, List<Fish> fishes, long hungerSatisfied) {
+        List<Fish> fishViews = new ArrayList<>(fishes.size());
+        Aquarium view = new Aquarium(aquarium.getId(), aquarium.getCapacity(), aquarium.getClearness(), aquarium.getTemperature(), fishViews);
+        view.setFishCount(aquarium.getFishCount());
+        for (Fish fish : fishes) {
+            Fish fishView = copyOf(fish);
+            fishView.setHunger((int) Math.max(0, fish.getHunger() - hungerSatisfied));
+            fishView.setAquarium(view);
+            fishViews.add(fishView);
         }
+        return view;
+    }
+
+    /**
+     * Runs the given transaction writing the aquariums with the given ids.
+     * In ENGINE mode the engine is flushed before the transaction opens and reloaded after it commits,
+     * so that a rollback leaves the engine matching the database.
+     * @param aquariumIds
+     * @param transaction
+     * @return the result of the transaction.
+     */
+    private <T> T writeAll(Collection<Long> aquariumIds, Supplier<T> transaction) {
+        return tickProperties.getMode() == TickMode.ENGINE
+                ? simulationEngine.writeAquariums(aquariumIds, transaction)
+                : transaction.get();
+    }
 
-        aquarium.get().clean();
-        return aquariumRepository.save(aquarium.get());
+    /**
+     * Waits for the given write, throwing its exception as it was thrown.
+     * @param future
+     * @return the result of the write.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the fishes of the given aquarium, as it's returned outside of the transaction of its write.
+     * @param aquarium
+     * @return the same aquarium.
+     */
+    private Aquarium withFishes(Aquarium aquarium) {
+        Hibernate.initialize(aquarium.getFishes());
+        return aquarium;
     }
 }
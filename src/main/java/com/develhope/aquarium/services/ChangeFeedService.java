@@ -0,0 +1,100 @@
+package com.develhope.aquarium.services;
+
+import com.develhope.aquarium.changes.ChangeVersions;
+import com.develhope.aquarium.configurations.ChangeFeedProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.dtos.ChangeFeed;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.exceptions.ChangesPrunedException;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.repositories.TombstoneRepository;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class ChangeFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private ChangeFeedProperties changeFeedProperties;
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Finds everything created, updated or deleted after the given version.
+     * Changes are read up to the watermark, so a version is never skipped because its transaction committed late.
+     * In ENGINE mode changes are flushed first, in LAZY mode rows change when aquariums are materialized.
+     * @param since version returned as until by the previous request, 0 for everything.
+     * @return the changes.
+     * @throws ChangesPrunedException if the deletions after the given version may have been pruned.
+     */
+    public ChangeFeed findChangesSince(Long since) throws ChangesPrunedException {
+
+        // Engine changes are written behind, so they are flushed first
+        if (tickProperties.getMode() == TickMode.ENGINE) {
+            simulationEngine.flush();
+        }
+
+        long until = Math.max(since, changeVersions.watermark());
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        ChangeFeed changes = transactionTemplate.execute(status -> new ChangeFeed(since, until,
+                aquariumRepository.findChangesBetween(since, until),
+                fishRepository.findChangesBetween(since, until),
+                tombstoneRepository.findChangesBetween(since, until)));
+
+        // Pruned deletions would be missed, so the reader has to start again from 0
+        // Checked after reading, as the oldest retained version only grows and covers the prunes run meanwhile
+        long oldestRetainedVersion = oldestRetainedVersion();
+        if (since > 0 && since < oldestRetainedVersion) {
+            throw new ChangesPrunedException("Changes since version " + since + " were pruned, the oldest retained version is "
+                    + oldestRetainedVersion);
+        }
+        return changes;
+    }
+
+    /**
+     * Deletes the tombstones up to the oldest retained version, which readers can't ask changes before.
+     * @return the number of deleted tombstones.
+     */
+    public int pruneTombstones() {
+        long oldestRetainedVersion = oldestRetainedVersion();
+        int pruned = new TransactionTemplate(transactionManager).execute(status -> tombstoneRepository.deleteUpTo(oldestRetainedVersion));
+        logger.debug("Pruned {} tombstones up to version {}", pruned, oldestRetainedVersion);
+        return pruned;
+    }
+
+    /**
+     * @return the oldest version the feed can be read since, as the deletions after it are retained.
+     */
+    public long oldestRetainedVersion() {
+        return Math.max(0, changeVersions.watermark() - changeFeedProperties.getRetainedVersions());
+    }
+}
@@ -1,12 +1,33 @@
 package com.develhope.aquarium.services;
 
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.dtos.FishDto;
+import com.develhope.aquarium.dtos.KeysetPage;
 import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.exceptions.AquariumCapacityExceededException;
+import com.develhope.aquarium.exceptions.AquariumNotFoundException;
+import com.develhope.aquarium.repositories.AquariumRepository;
 import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.retries.OptimisticRetry;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import com.develhope.aquarium.simulation.StatsMaterializer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class FishService {
@@ -14,19 +35,189 @@ public class FishService {
     @Autowired
     private FishRepository fishRepository;
 
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private StatsMaterializer statsMaterializer;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public Fish save(Fish fish) {
-        return fishRepository.save(fish);
+
+        // An id without a stored fish creates a new one, with a generated id
+        boolean isNew = fish.getId() == null || !fishRepository.existsById(fish.getId());
+        if (isNew) {
+            fish.setId(null);
+        }
+        AtomicReference<Long> oldAquariumId = new AtomicReference<>();
+        Fish savedFish = write(fish.getId(), () -> new TransactionTemplate(transactionManager).execute(status -> {
+
+            // A fish moving between aquariums gives its place back and takes one in the new aquarium
+            oldAquariumId.set(isNew ? null : fishRepository.findAquariumIdById(fish.getId()).orElse(null));
+            Long newAquariumId = fish.getAquarium() == null ? null : fish.getAquarium().getId();
+            if (!Objects.equals(oldAquariumId.get(), newAquariumId)) {
+                moveFishPlace(oldAquariumId.get(), newAquariumId);
+            }
+
+            // The saved fish replaces the stored one, whatever version it was read at
+            if (!isNew) {
+                fish.setVersion(fishRepository.findVersionById(fish.getId()).orElse(null));
+            }
+            return fishRepository.save(fish);
+        }));
+
+        // A new fish has to be loaded into the engine
+        if (tickProperties.getMode() == TickMode.ENGINE && isNew) {
+            simulationEngine.reloadFish(savedFish.getId());
+        }
+        invalidateSavedFish(savedFish, oldAquariumId.get());
+
+        return savedFish;
+    }
+
+    /**
+     * Moves the place of a fish from an aquarium to another one, in the fish counts.
+     * @param fromAquariumId aquarium the fish leaves, null if it had none.
+     * @param toAquariumId aquarium the fish enters, null if it leaves without entering another one.
+     * @throws AquariumNotFoundException if the new aquarium doesn't exist.
+     * @throws AquariumCapacityExceededException if the new aquarium is full.
+     */
+    private void moveFishPlace(Long fromAquariumId, Long toAquariumId) {
+        if (toAquariumId != null && aquariumRepository.reserveFishPlace(toAquariumId) == 0) {
+            if (!aquariumRepository.existsById(toAquariumId)) {
+                throw new AquariumNotFoundException("Aquarium with id " + toAquariumId + " not found");
+            }
+            throw new AquariumCapacityExceededException("Aquarium is full");
+        }
+        if (fromAquariumId != null) {
+            aquariumRepository.decreaseFishCount(fromAquariumId, 1L);
+        }
     }
 
-    public Optional<Fish> findById(Long id) {
-        return fishRepository.findById(id);
+    /**
+     * Finds the view of the fish with the given id, served from the cache when possible.
+     * @param id
+     * @return an optional containing the found fish.
+     */
+    public Optional<FishDto> findById(Long id) {
+        return entityCache.findFish(id, this::findByIdUncached);
+    }
+
+    private Optional<Fish> findByIdUncached(Long id) {
+        return switch (tickProperties.getMode()) {
+            case ENGINE -> simulationEngine.findFishById(id);
+            case LAZY -> statsMaterializer.materializeFish(id);
+            default -> fishRepository.findById(id);
+        };
     }
 
     public List<Fish> findAll() {
-        return fishRepository.findAll();
+        return switch (tickProperties.getMode()) {
+            case ENGINE -> simulationEngine.findAllFishes();
+            case LAZY -> {
+                statsMaterializer.materializeAll();
+                yield fishRepository.findAllWithAquarium();
+            }
+            default -> fishRepository.findAllWithAquarium();
+        };
+    }
+
+    /**
+     * Finds a page of fishes using keyset pagination.
+     * @param after id of the last fish of the previous page, 0 for the first page.
+     * @param limit max number of fishes in the page.
+     * @return the page of found fishes in ascending order of id, short only when there are no more fishes.
+     */
+    public KeysetPage<Fish> findPage(Long after, Integer limit) {
+        return switch (tickProperties.getMode()) {
+            // Dead fishes are skipped, so more pages are scanned to fill this one
+            case ENGINE -> KeysetPage.fill(after, limit, this::findEnginePage);
+            case LAZY -> KeysetPage.fill(after, limit, statsMaterializer::materializeFishesAfter);
+            default -> {
+                List<Fish> fishes = fishRepository.findAllWithAquariumAfter(after, Limit.of(limit));
+                yield KeysetPage.of(fishes, fishes.stream().map(Fish::getId).toList(), Limit.of(limit));
+            }
+        };
+    }
+
+    private KeysetPage<Fish> findEnginePage(Long after, Limit limit) {
+        List<Fish> fishes = fishRepository.findAllWithAquariumAfter(after, limit);
+
+        // Fishes living in an aquarium are read from the engine, where dead fishes are already gone
+        List<Fish> livingFishes = fishes.stream()
+                .map(fish -> fish.getAquarium() == null ? Optional.of(fish) : simulationEngine.findFishById(fish.getId()))
+                .flatMap(Optional::stream)
+                .toList();
+        return KeysetPage.of(livingFishes, fishes.stream().map(Fish::getId).toList(), limit);
+    }
+
+    /**
+     * Streams all fishes from a database cursor, passing them one at a time to the given consumer.
+     * Fishes are detached before being passed, so memory doesn't grow with the number of fishes.
+     * @param consumer
+     */
+    public void streamAll(Consumer<Fish> consumer) {
+
+        // Engine changes are written behind, so they are flushed first
+        if (tickProperties.getMode() == TickMode.ENGINE) {
+            simulationEngine.flush();
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Fish> fishes = fishRepository.streamAllWithAquarium()) {
+                fishes.forEach(fish -> {
+                    entityManager.detach(fish);
+
+                    // In LAZY mode stored stats are base values, dead fishes are skipped
+                    if (tickProperties.getMode() != TickMode.LAZY || statsMaterializer.project(fish)) {
+                        consumer.accept(fish);
+                    }
+                });
+            }
+        });
     }
 
     public Optional<Fish> update(Long id, Fish updatedFish) {
+        Long oldAquariumId = fishRepository.findAquariumIdById(id).orElse(null);
+        Optional<Fish> fish = write(id, () -> updateInDatabase(id, updatedFish));
+        fish.ifPresent(savedFish -> invalidateSavedFish(savedFish, oldAquariumId));
+        return fish;
+    }
+
+    /**
+     * Invalidates the cached views of the given saved fish and of the aquarium it lives in,
+     * and of the aquarium it lived in before, if it moved.
+     * @param savedFish
+     * @param oldAquariumId
+     */
+    private void invalidateSavedFish(Fish savedFish, Long oldAquariumId) {
+        Long aquariumId = savedFish.getAquarium() == null ? null : savedFish.getAquarium().getId();
+        entityCache.invalidateFish(savedFish.getId(), aquariumId);
+        if (oldAquariumId != null && !oldAquariumId.equals(aquariumId)) {
+            entityCache.invalidateAquarium(oldAquariumId);
+        }
+    }
+
+    private Optional<Fish> updateInDatabase(Long id, Fish updatedFish) {
         Optional<Fish> fish = fishRepository.findById(id);
 
         if (fish.isPresent()) {
@@ -44,6 +235,29 @@ public class FishService {
     }
 
     public void deleteById(Long id) {
-        fishRepository.deleteById(id);
+        Long aquariumId = fishRepository.findAquariumIdById(id).orElse(null);
+        write(id, () -> new TransactionTemplate(transactionManager).execute(status -> {
+            aquariumRepository.decreaseFishCountByFishIds(List.of(id));
+            fishRepository.deleteById(id);
+            return null;
+        }));
+        entityCache.invalidateFish(id, aquariumId);
+    }
+
+    /**
+     * Runs the given database write on the fish with the given id,
+     * trying it again if it conflicts with a write made meanwhile, see {@link OptimisticRetry}.
+     * In ENGINE mode the write goes through the simulation engine, so that it stays in sync with the database.
+     * In LAZY mode the aquarium of the fish is materialized around the write.
+     * @param fishId
+     * @param write
+     * @return the result of the write.
+     */
+    private <T> T write(Long fishId, Supplier<T> write) {
+        return optimisticRetry.run("fish", () -> switch (tickProperties.getMode()) {
+            case ENGINE -> simulationEngine.writeFish(fishId, write);
+            case LAZY -> statsMaterializer.writeFish(fishId, write);
+            default -> write.get();
+        });
     }
 }
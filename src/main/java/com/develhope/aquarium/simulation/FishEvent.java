@@ -0,0 +1,13 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.enumerations.FishEventType;
+
+/**
+ * Next event of a fish, scheduled by {@link FishEventScheduler}.
+ * @param fishId
+ * @param aquariumId aquarium the fish lives in.
+ * @param type
+ * @param tick tick in which the event happens.
+ */
+public record FishEvent(Long fishId, Long aquariumId, FishEventType type, long tick) {
+}
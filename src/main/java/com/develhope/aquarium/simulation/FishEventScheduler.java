@@ -0,0 +1,116 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishEventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Schedules on a {@link HierarchicalTimingWheel} the next event of every fish (LAZY tick mode only):
+ * its death, or its hunger crossing the low or high hunger threshold.
+ * Events are computed in closed form when the aquarium of the fish is materialized,
+ * so every materialization (including feedFishes and clean) reschedules its fishes.
+ * A tick then only materializes the aquariums having fishes with due events,
+ * instead of looking at every fish.
+ */
+@Component
+public class FishEventScheduler {
+
+    @Autowired
+    private SimulationClock simulationClock;
+
+    private HierarchicalTimingWheel<FishEvent> wheel;
+
+    // Tick of the latest event scheduled for each fish, older events in the wheel are stale
+    private final Map<Long, Long> scheduledTicks = new HashMap<>();
+
+    /**
+     * Computes the next event of a fish from its stats at the given tick.
+     * @param fish
+     * @param clearness clearness of the fish aquarium.
+     * @param tick tick the stats refer to.
+     * @return the next event.
+     */
+    public static FishEvent nextEvent(Fish fish, int clearness, long tick) {
+        FishEventType type = FishEventType.DEATH;
+        long ticks = StatsCalculator.ticksUntilDeath(fish.getHunger(), fish.getHealth(), clearness);
+        if (ticks == StatsCalculator.NEVER) {
+            ticks = Long.MAX_VALUE - tick;
+        }
+
+        long lowHungerTicks = StatsCalculator.ticksUntilHungerAbove(fish.getHunger(), Fish.LOW_HUNGER);
+        if (lowHungerTicks != StatsCalculator.NEVER && lowHungerTicks < ticks) {
+            type = FishEventType.LOW_HUNGER_CROSSED;
+            ticks = lowHungerTicks;
+        }
+
+        long highHungerTicks = StatsCalculator.ticksUntilHungerAbove(fish.getHunger(), Fish.HIGH_HUNGER);
+        if (highHungerTicks != StatsCalculator.NEVER && highHungerTicks < ticks) {
+            type = FishEventType.HIGH_HUNGER_CROSSED;
+            ticks = highHungerTicks;
+        }
+
+        return new FishEvent(fish.getId(), fish.getAquarium().getId(), type, tick + ticks);
+    }
+
+    /**
+     * Schedules the given events, replacing the previous events of the same fishes,
+     * and forgets the events of the given dead fishes.
+     * Inside a transaction, changes apply only if it commits.
+     * @param events
+     * @param deadFishIds
+     */
+    public void schedule(List<FishEvent> events, Collection<Long> deadFishIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(events, deadFishIds);
+                }
+            });
+        } else {
+            apply(events, deadFishIds);
+        }
+    }
+
+    /**
+     * Moves the wheel to the current tick.
+     * @return the ids of the aquariums having fishes with due events, in ascending order.
+     */
+    public synchronized SortedSet<Long> pollDueAquariums() {
+        SortedSet<Long> aquariumIds = new TreeSet<>();
+        wheel().advanceTo(simulationClock.currentTick(), event -> {
+            if (Objects.equals(scheduledTicks.get(event.fishId()), event.tick())) {
+                scheduledTicks.remove(event.fishId());
+                aquariumIds.add(event.aquariumId());
+            }
+        });
+        return aquariumIds;
+    }
+
+    /**
+     * @return the number of fishes with a scheduled event.
+     */
+    public synchronized int size() {
+        return scheduledTicks.size();
+    }
+
+    private synchronized void apply(List<FishEvent> events, Collection<Long> deadFishIds) {
+        deadFishIds.forEach(scheduledTicks::remove);
+        for (FishEvent event : events) {
+            scheduledTicks.put(event.fishId(), event.tick());
+            wheel().schedule(event, event.tick());
+        }
+    }
+
+    private HierarchicalTimingWheel<FishEvent> wheel() {
+        if (wheel == null) {
+            wheel = new HierarchicalTimingWheel<>(simulationClock.currentTick());
+        }
+        return wheel;
+    }
+}
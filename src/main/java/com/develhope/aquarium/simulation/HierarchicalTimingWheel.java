@@ -0,0 +1,128 @@
+package com.develhope.aquarium.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel keyed by tick.
+ * Level 0 has one slot per tick, every next level has slots 64 times wider,
+ * so items due far in the future sit in a coarse slot and cascade down as time gets closer.
+ * Scheduling is O(1) and advancing by one tick only touches the items due in that tick
+ * (plus the occasional cascade), whatever the number of scheduled items.
+ * Not thread safe.
+ * @param <T> type of the scheduled items.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final List<List<Entry<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+
+    // Items due after the range covered by the wheel
+    private List<Entry<T>> overflow = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param currentTick tick the wheel starts from, items are due from the next one.
+     */
+    public HierarchicalTimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(null);
+        }
+    }
+
+    /**
+     * Schedules the given item. Items due in the past or in the current tick are due in the next tick.
+     * @param item
+     * @param dueTick
+     */
+    public void schedule(T item, long dueTick) {
+        place(new Entry<>(item, Math.max(dueTick, currentTick + 1)));
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward up to the given tick, passing every due item to the given consumer in tick order.
+     * @param tick
+     * @param consumer
+     */
+    public void advanceTo(long tick, Consumer<T> consumer) {
+        while (currentTick < tick) {
+            currentTick++;
+
+            // Items within range again
+            if ((currentTick & levelMask(LEVELS - 1)) == 0 && !overflow.isEmpty()) {
+                List<Entry<T>> entries = overflow;
+                overflow = new ArrayList<>();
+                entries.forEach(this::place);
+            }
+
+            // Cascade coarse slots starting from this tick down to finer levels
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & levelMask(level)) == 0) {
+                    List<Entry<T>> entries = take(level, slotIndex(currentTick, level));
+                    if (entries != null) {
+                        entries.forEach(this::place);
+                    }
+                }
+            }
+
+            // Fire items due in this tick
+            List<Entry<T>> due = take(0, slotIndex(currentTick, 0));
+            if (due != null) {
+                size -= due.size();
+                for (Entry<T> entry : due) {
+                    consumer.accept(entry.item());
+                }
+            }
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.tick() - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1))) {
+                int index = level * SLOTS + slotIndex(entry.tick(), level);
+                if (slots.get(index) == null) {
+                    slots.set(index, new ArrayList<>());
+                }
+                slots.get(index).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private List<Entry<T>> take(int level, int slot) {
+        int index = level * SLOTS + slot;
+        List<Entry<T>> entries = slots.get(index);
+        slots.set(index, null);
+        return entries;
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    private static long levelMask(int level) {
+        return (1L << (SLOT_BITS * level)) - 1;
+    }
+
+    private record Entry<T>(T item, long tick) {
+    }
+}
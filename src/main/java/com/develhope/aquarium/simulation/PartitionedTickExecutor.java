@@ -0,0 +1,299 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.cluster.PartitionLeases;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.entities.TickCheckpoint;
+import com.develhope.aquarium.exceptions.TickCheckpointedException;
+import com.develhope.aquarium.mailboxes.AquariumMailboxes;
+import com.develhope.aquarium.metrics.TickMetrics;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.TickCheckpointRepository;
+import com.develhope.aquarium.retries.OptimisticRetry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs a tick in chunks of at most "partition-size" aquariums, each one committed in its own transaction.
+ * Aquariums are split in contiguous segments, and every segment has a {@link TickCheckpoint}
+ * recording the tick number and the last aquarium processed, which advances in the transaction of every chunk.
+ * A segment stopped by a failure or a restart is resumed right after its last committed chunk,
+ * so no aquarium gets the same tick twice or misses it, and later runs add their ticks to it instead of overtaking it.
+ * Aquariums are independent in the simulation, so segments run concurrently on virtual threads.
+ * At most "parallelism" segments run at the same time, which should not exceed the size of the connection pool.
+ * Only the aquariums of the partitions leased by this node are ticked, see {@link PartitionLeases},
+ * and segments never cross partitions, so a segment whose lease moves is left to its new owner.
+ * Every chunk holds the mailboxes of its aquariums, see {@link AquariumMailboxes}, so that no other write runs on them meanwhile,
+ * and is run again when it conflicts with a write made outside of them, see {@link OptimisticRetry}.
+ */
+@Component
+public class PartitionedTickExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedTickExecutor.class);
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private TickCheckpointRepository tickCheckpointRepository;
+
+    @Autowired
+    private PartitionLeases partitionLeases;
+
+    @Autowired
+    private AquariumMailboxes aquariumMailboxes;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private TickMetrics tickMetrics;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Task applying a tick to a chunk of aquariums.
+     */
+    @FunctionalInterface
+    public interface PartitionTask {
+
+        /**
+         * @param fromId first aquarium id of the chunk.
+         * @param toId last aquarium id of the chunk.
+         * @param ticks number of ticks to apply.
+         */
+        void run(Long fromId, Long toId, long ticks);
+    }
+
+    /**
+     * Runs the tick on the given aquariums, skipping the partitions leased by other nodes.
+     * Aquariums still waiting for an earlier run of the tick, left behind by a failure, get the ticks of this run
+     * added to its checkpoint, and all of them are applied together when the segment is resumed.
+     * So every aquarium has at most one checkpoint, which keeps the ticks in order and the checkpoints bounded.
+     * Segments fail independently: the others are still committed and the failures are thrown at the end,
+     * in a {@link TickCheckpointedException} as failed segments keep their checkpoint and are tried again by the next run.
+     * @param tick name of the tick.
+     * @param tickNumber number of the tick, as counted by the clock.
+     * @param ticks number of ticks to apply.
+     * @param aquariumIds ids of all aquariums, in ascending order.
+     * @param partitionTask
+     */
+    public void execute(String tick, long tickNumber, long ticks, List<Long> aquariumIds, PartitionTask partitionTask) {
+        List<TickCheckpoint> pending = ownedCheckpoints(tick);
+        List<Long> ownedIds = aquariumIds.stream()
+                .filter(partitionLeases::ownsAquarium)
+                .filter(aquariumId -> pending.stream().noneMatch(checkpoint -> checkpoint.isPending(aquariumId)))
+                .toList();
+
+        // All checkpoints are saved before running, so that a failure leaves the whole run to resume
+        List<TickCheckpoint> checkpoints = new ArrayList<>(pending);
+        checkpoints.forEach(checkpoint -> checkpoint.merge(tickNumber, ticks));
+        checkpoints.addAll(segments(tick, tickNumber, ticks, ownedIds, pending));
+        List<TickCheckpoint> saved = new TransactionTemplate(transactionManager).execute(status ->
+                tickCheckpointRepository.saveAll(checkpoints));
+
+        run(saved, partitionTask);
+    }
+
+    /**
+     * Resumes the segments of the given tick left behind by earlier runs,
+     * including the ones of other nodes whose partitions are now leased by this node.
+     * Segments fail independently, and the first failure is thrown at the end.
+     * @param tick name of the tick.
+     * @param partitionTask
+     */
+    public void resume(String tick, PartitionTask partitionTask) {
+        List<TickCheckpoint> pending = ownedCheckpoints(tick);
+        for (TickCheckpoint checkpoint : pending) {
+            logger.info("Resuming {} tick {} after aquarium {}", checkpoint.getTick(), checkpoint.getTickNumber(), checkpoint.getLastProcessedId());
+        }
+        run(pending, partitionTask);
+    }
+
+    private List<TickCheckpoint> ownedCheckpoints(String tick) {
+        return tickCheckpointRepository.findByTickOrderById(tick).stream()
+                .filter(checkpoint -> partitionLeases.ownsAquarium(checkpoint.getFromAquariumId()))
+                .toList();
+    }
+
+    private void run(List<TickCheckpoint> checkpoints, PartitionTask partitionTask) {
+        List<RuntimeException> failures = new ArrayList<>();
+
+        // Nothing to run concurrently
+        if (tickProperties.getParallelism() <= 1 || checkpoints.size() <= 1) {
+            for (TickCheckpoint checkpoint : checkpoints) {
+                try {
+                    runSegment(checkpoint, partitionTask);
+                } catch (RuntimeException e) {
+                    failures.add(failed(checkpoint, e));
+                }
+            }
+            throwFirst(failures);
+            return;
+        }
+
+        Semaphore permits = new Semaphore(tickProperties.getParallelism());
+        List<Future<?>> futures = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (TickCheckpoint checkpoint : checkpoints) {
+                futures.add(executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        runSegment(checkpoint, partitionTask);
+                    } catch (RuntimeException e) {
+                        throw failed(checkpoint, e);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        // Executor is closed, so all segments are done
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failures.add(e.getCause() instanceof RuntimeException runtimeException
+                        ? runtimeException
+                        : new IllegalStateException(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Tick interrupted", e);
+            }
+        }
+        throwFirst(failures);
+    }
+
+    private RuntimeException failed(TickCheckpoint checkpoint, RuntimeException e) {
+        tickMetrics.recordSegmentFailure(checkpoint.getTick());
+        logger.warn("Segment of {} tick {} failed after aquarium {}, it will be tried again by the next run",
+                checkpoint.getTick(), checkpoint.getTickNumber(), checkpoint.getLastProcessedId(), e);
+        return e;
+    }
+
+    private static void throwFirst(List<RuntimeException> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+        TickCheckpointedException failure = new TickCheckpointedException(
+                failures.size() + " tick segments failed and are kept in their checkpoints", failures.getFirst());
+        for (RuntimeException other : failures.subList(1, failures.size())) {
+            failure.addSuppressed(other);
+        }
+        throw failure;
+    }
+
+    /**
+     * Runs the given task on the aquariums of a segment following its checkpoint, one chunk at a time,
+     * then deletes the checkpoint.
+     * Stops keeping the checkpoint if the lease of the partition of the segment is lost.
+     * @param checkpoint
+     * @param partitionTask
+     */
+    private void runSegment(TickCheckpoint checkpoint, PartitionTask partitionTask) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Long lastProcessedId = checkpoint.getLastProcessedId();
+        long partition = partitionLeases.partitionOf(checkpoint.getFromAquariumId());
+
+        while (true) {
+            List<Long> chunk = aquariumRepository.findIdsBetween(lastProcessedId, checkpoint.getToAquariumId(),
+                    Limit.of(tickProperties.getPartitionSize()));
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            Long fromId = chunk.getFirst();
+            Long toId = chunk.getLast();
+            // A chunk conflicting with a fish update is rolled back with its checkpoint, so it's safe to run it again
+            boolean held = aquariumMailboxes.runExclusive(chunk, () -> optimisticRetry.run(checkpoint.getTick(), () ->
+                    transactionTemplate.execute(status -> {
+
+                        // The lease stays locked until the chunk commits, so it can't move to another node meanwhile
+                        if (!partitionLeases.holds(partition)) {
+                            return false;
+                        }
+                        partitionTask.run(fromId, toId, checkpoint.getTicks());
+                        tickCheckpointRepository.advance(checkpoint.getId(), toId);
+
+                        // Write the chunk and forget its entities, so that memory doesn't grow with the number of chunks
+                        entityManager.flush();
+                        entityManager.clear();
+                        return true;
+                    })));
+            if (!held) {
+                logger.info("Lease of partition {} lost, leaving {} tick {} after aquarium {} to its new owner",
+                        partition, checkpoint.getTick(), checkpoint.getTickNumber(), lastProcessedId);
+                return;
+            }
+            lastProcessedId = toId;
+        }
+
+        tickCheckpointRepository.deleteById(checkpoint.getId());
+    }
+
+    /**
+     * Splits the given aquarium ids in "parallelism" segments, of at least "partition-size" aquariums,
+     * cutting them where a lease partition ends and around the aquariums still waiting for the given checkpoints.
+     * @param tick
+     * @param tickNumber
+     * @param ticks
+     * @param aquariumIds ids of the aquariums to tick, in ascending order.
+     * @param pending checkpoints of earlier runs, whose aquariums must not be covered by the new segments.
+     * @return the checkpoints of the segments, with nothing processed yet.
+     */
+    private List<TickCheckpoint> segments(String tick, long tickNumber, long ticks, List<Long> aquariumIds, List<TickCheckpoint> pending) {
+        int segmentSize = Math.max(tickProperties.getPartitionSize(),
+                Math.ceilDiv(aquariumIds.size(), Math.max(1, tickProperties.getParallelism())));
+
+        List<TickCheckpoint> checkpoints = new ArrayList<>();
+        int from = 0;
+        for (int to = 0; to < aquariumIds.size(); to++) {
+            boolean last = to == aquariumIds.size() - 1 || to - from + 1 == segmentSize
+                    || partitionLeases.partitionOf(aquariumIds.get(to)) != partitionLeases.partitionOf(aquariumIds.get(to + 1))
+                    || skipsPending(aquariumIds.get(to), aquariumIds.get(to + 1), pending);
+            if (last) {
+                checkpoints.add(new TickCheckpoint(tick, tickNumber, ticks, aquariumIds.get(from), aquariumIds.get(to)));
+                from = to + 1;
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * @param id
+     * @param nextId
+     * @param pending
+     * @return whether aquariums waiting for any of the given checkpoints lie between the given ids.
+     */
+    private static boolean skipsPending(Long id, Long nextId, List<TickCheckpoint> pending) {
+        for (TickCheckpoint checkpoint : pending) {
+            if (checkpoint.getLastProcessedId() < nextId && checkpoint.getToAquariumId() > id) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,81 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.configurations.TickProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts the simulation ticks elapsed since the application started.
+ * Tick n is due n stats periods after the start, aging happens every aging period.
+ * Ticks are always counted from the start, so late or coalesced runs don't shift the following ones.
+ */
+@Component
+public class SimulationClock {
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    // Source of the time in nanoseconds, replaced by tests driving the clock themselves
+    private final LongSupplier nanoTime;
+    private final long startNanos;
+
+    // Constructors
+
+    public SimulationClock() {
+        this(System::nanoTime);
+    }
+
+    public SimulationClock(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.startNanos = nanoTime.getAsLong();
+    }
+
+    // Methods
+
+    /**
+     * @return the number of stats ticks elapsed since the application started.
+     */
+    public long currentTick() {
+        return ticksElapsed(tickProperties.getStatsPeriod());
+    }
+
+    /**
+     * @param period
+     * @return the number of whole periods elapsed since the application started.
+     */
+    public long ticksElapsed(Duration period) {
+        return (nanoTime.getAsLong() - startNanos) / period.toNanos();
+    }
+
+    /**
+     * @param period
+     * @param tick
+     * @return the time left until the given tick of the given period is due, negative if it's late.
+     */
+    public Duration timeUntilTick(Duration period, long tick) {
+        return Duration.ofNanos(startNanos + tick * period.toNanos() - nanoTime.getAsLong());
+    }
+
+    /**
+     * Counts the aging ticks happened after the given stats tick, up to the other given stats tick.
+     * @param fromTick
+     * @param toTick
+     * @return the number of aging ticks.
+     */
+    public long agingTicksBetween(long fromTick, long toTick) {
+        long statsPeriod = tickProperties.getStatsPeriod().toMillis();
+        long agingPeriod = tickProperties.getAgingPeriod().toMillis();
+        return Math.floorDiv(toTick * statsPeriod, agingPeriod) - Math.floorDiv(fromTick * statsPeriod, agingPeriod);
+    }
+
+    public Duration getStatsPeriod() {
+        return tickProperties.getStatsPeriod();
+    }
+
+    public Duration getAgingPeriod() {
+        return tickProperties.getAgingPeriod();
+    }
+}
@@ -0,0 +1,842 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.changes.ChangeVersions;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.dtos.AquariumSummary;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.jfr.TickPhaseEvent;
+import com.develhope.aquarium.metrics.TickCounts;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.repositories.TombstoneRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory simulation state used by the ENGINE tick mode.
+ * Stats are kept in primitive arrays indexed by a dense slot (struct of arrays),
+ * and fishes are linked in a list per aquarium.
+ * Ticks only touch the arrays, changed rows are written to the database in periodic batches (write-behind).
+ * Explicit writes go through the database first and then reload the touched aquarium (write-through).
+ */
+@Component
+public class SimulationEngine {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_SLOT = -1;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Ticks and writes take the write lock, reads take the read lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Held while changes are written to the database, so that writes never interleave with a flush
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Aquarium storage
+    private int aquariumCount;
+    private long[] aquariumIds = new long[INITIAL_CAPACITY];
+    private int[] clearness = new int[INITIAL_CAPACITY];
+    private Long[] capacities = new Long[INITIAL_CAPACITY];
+    private Integer[] temperatures = new Integer[INITIAL_CAPACITY];
+    private int[] firstFish = new int[INITIAL_CAPACITY];
+    private boolean[] aquariumChanged = new boolean[INITIAL_CAPACITY];
+    private final Map<Long, Integer> aquariumSlots = new HashMap<>();
+
+    // Fish storage
+    private int fishCount;
+    private long[] fishIds = new long[INITIAL_CAPACITY];
+    private int[] hunger = new int[INITIAL_CAPACITY];
+    private int[] health = new int[INITIAL_CAPACITY];
+    private long[] age = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private FishSpecies[] species = new FishSpecies[INITIAL_CAPACITY];
+    private int[] fishAquarium = new int[INITIAL_CAPACITY];
+    private int[] nextFish = new int[INITIAL_CAPACITY];
+    private int[] previousFish = new int[INITIAL_CAPACITY];
+    private boolean[] fishChanged = new boolean[INITIAL_CAPACITY];
+    private final Map<Long, Integer> fishSlots = new HashMap<>();
+
+    // Fishes died since the last flush
+    private long[] deadFishIds = new long[INITIAL_CAPACITY];
+    private int deadFishCount;
+
+
+    // Loading
+
+    /**
+     * Replaces the whole engine state with the content of the database.
+     */
+    public void load() {
+        flushLock.lock();
+        lock.writeLock().lock();
+        try {
+            clear();
+            transactionTemplate().executeWithoutResult(status -> {
+                for (Aquarium aquarium : aquariumRepository.findAll()) {
+                    addAquarium(aquarium);
+                }
+                for (Fish fish : fishRepository.findAllWithAquarium()) {
+                    addFish(fish);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads from the database the aquarium with the given id and all its fishes,
+     * or removes them from the engine if the aquarium doesn't exist anymore.
+     * Pending changes of the aquarium must have been flushed before.
+     * @param aquariumId
+     */
+    public void reloadAquarium(Long aquariumId) {
+        flushLock.lock();
+        lock.writeLock().lock();
+        try {
+            Integer slot = aquariumSlots.get(aquariumId);
+            if (slot != null) {
+                removeAquariumSlot(slot);
+            }
+            transactionTemplate().executeWithoutResult(status ->
+                    aquariumRepository.findById(aquariumId).ifPresent(aquarium -> {
+                        addAquarium(aquarium);
+                        for (Fish fish : fishRepository.findByAquariumId(aquariumId)) {
+                            addFish(fish);
+                        }
+                    }));
+        } finally {
+            lock.writeLock().unlock();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads from the database the fish with the given id,
+     * or removes it from the engine if it doesn't exist anymore.
+     * @param fishId
+     */
+    public void reloadFish(Long fishId) {
+        flushLock.lock();
+        lock.writeLock().lock();
+        try {
+            removeFish(fishId);
+            Optional<Fish> fish = transactionTemplate().execute(status -> fishRepository.findById(fishId));
+            if (fish.isPresent()) {
+                Aquarium aquarium = fish.get().getAquarium();
+                if (aquarium != null && !aquariumSlots.containsKey(aquarium.getId())) {
+                    reloadAquarium(aquarium.getId());
+                } else {
+                    addFish(fish.get());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+            flushLock.unlock();
+        }
+    }
+
+
+    // Ticks
+
+    /**
+     * Same rules as the entity based stats tick, applied to the arrays without any allocation
+     * (except for bookkeeping of dead fishes).
+     * @param ticks number of ticks to apply.
+     * @param counts counts of the tick.
+     */
+    public void updateStats(long ticks, TickCounts counts) {
+        int lowHunger = Fish.LOW_HUNGER;
+        int highHunger = Fish.HIGH_HUNGER;
+        int lowClearness = Aquarium.LOW_CLEARNESS;
+
+        lock.writeLock().lock();
+        try {
+            int processedFishes = 0;
+            int deadFishes = 0;
+
+            // Repeat the rules once per tick, all in the same lock
+            for (long tick = 0; tick < ticks; tick++) {
+
+                // Decrease clearness of all aquariums
+                for (int a = 0; a < aquariumCount; a++) {
+                    int dirtied = Math.max(0, clearness[a] - 1);
+                    if (dirtied != clearness[a]) {
+                        clearness[a] = dirtied;
+                        aquariumChanged[a] = true;
+                    }
+                }
+
+                int f = 0;
+                while (f < fishCount) {
+                    int a = fishAquarium[f];
+
+                    // Fishes outside aquariums don't change
+                    if (a == NO_SLOT) {
+                        f++;
+                        continue;
+                    }
+
+                    // Increase hunger and update health, fishes are counted once, in the first tick
+                    if (tick == 0) {
+                        processedFishes++;
+                    }
+                    int newHunger = Math.min(100, hunger[f] + 1);
+                    int newHealth = health[f];
+                    if (newHunger <= lowHunger) {
+                        newHealth = Math.min(100, newHealth + 1);
+                    }
+                    if (newHunger > highHunger) {
+                        newHealth = Math.max(0, newHealth - 1);
+                    }
+
+                    // If aquarium is dirty, decrease health
+                    if (clearness[a] <= lowClearness) {
+                        newHealth = Math.max(0, newHealth - 1);
+                    }
+
+                    if (newHealth <= 0) {
+
+                        // If fish died remove it, the last slot is moved here and processed next
+                        addDeadFish(fishIds[f]);
+                        removeFishSlot(f);
+                        deadFishes++;
+                        continue;
+                    }
+
+                    if (newHunger != hunger[f] || newHealth != health[f]) {
+                        hunger[f] = newHunger;
+                        health[f] = newHealth;
+                        fishChanged[f] = true;
+                    }
+                    f++;
+                }
+            }
+            counts.add(aquariumCount, processedFishes, deadFishes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Increases by the given number of ticks the age of all fishes living in an aquarium.
+     * @param ticks number of ticks to apply.
+     * @param counts counts of the tick.
+     */
+    public void updateFishesAge(long ticks, TickCounts counts) {
+        lock.writeLock().lock();
+        try {
+            int processedFishes = 0;
+            for (int f = 0; f < fishCount; f++) {
+                if (fishAquarium[f] != NO_SLOT) {
+                    age[f] += ticks;
+                    fishChanged[f] = true;
+                    processedFishes++;
+                }
+            }
+            counts.add(aquariumCount, processedFishes, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // Writes
+
+    /**
+     * Runs the given database write on the aquarium with the given id, see {@link #writeAquariums(Collection, Supplier)}.
+     * @param aquariumId
+     * @param write
+     * @return the result of the write.
+     */
+    public <T> T writeAquarium(Long aquariumId, Supplier<T> write) {
+        return writeAquariums(aquariumId == null ? List.of() : List.of(aquariumId), write);
+    }
+
+    /**
+     * Runs the given database write on the aquariums with the given ids:
+     * pending changes of the aquariums are committed first, in their own transaction,
+     * then the aquariums are reloaded once the write is committed.
+     * If the write fails nothing is reloaded, as the engine already matches the database.
+     * Ticks and reads wait until the write is done, so the write should open and commit its own transaction.
+     * When called in a transaction, the aquariums are reloaded after it commits instead.
+     * @param aquariumIds
+     * @param write
+     * @return the result of the write.
+     */
+    public <T> T writeAquariums(Collection<Long> aquariumIds, Supplier<T> write) {
+        flushLock.lock();
+        lock.writeLock().lock();
+        try {
+            if (aquariumIds.isEmpty()) {
+                persist(collectChanges(NO_SLOT));
+            }
+            for (Long aquariumId : aquariumIds) {
+                Integer slot = aquariumSlots.get(aquariumId);
+                persist(collectChanges(slot == null ? NO_SLOT : slot));
+            }
+            T result = write.get();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        aquariumIds.forEach(SimulationEngine.this::reloadAquarium);
+                    }
+                });
+            } else {
+                aquariumIds.forEach(this::reloadAquarium);
+            }
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Runs the given database write on the fish with the given id,
+     * flushing and reloading the aquarium it lives in, if any.
+     * @param fishId
+     * @param write
+     * @return the result of the write.
+     */
+    public <T> T writeFish(Long fishId, Supplier<T> write) {
+        flushLock.lock();
+        lock.writeLock().lock();
+        try {
+            Integer slot = fishId == null ? null : fishSlots.get(fishId);
+            if (slot != null && fishAquarium[slot] != NO_SLOT) {
+                return writeAquarium(aquariumIds[fishAquarium[slot]], write);
+            }
+            T result = write.get();
+            if (fishId != null) {
+                reloadFish(fishId);
+            }
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+            flushLock.unlock();
+        }
+    }
+
+
+    // Write-behind
+
+    /**
+     * Writes all changed fishes and aquariums and deletes dead fishes in batches.
+     * Ticks and reads keep running while the batches are written.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Changes changes;
+            lock.writeLock().lock();
+            try {
+                changes = collectChanges(null);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            persist(changes);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (tickProperties.getMode() == TickMode.ENGINE) {
+            flush();
+        }
+    }
+
+    /**
+     * Collects and resets the changed flags.
+     * @param aquariumSlot the only aquarium to collect, NO_SLOT for dead fishes only, or null for everything.
+     */
+    private Changes collectChanges(Integer aquariumSlot) {
+
+        // Collect fishes
+        int[] changedSlots = new int[aquariumSlot == null ? fishCount : 0];
+        int changedFishes = 0;
+        if (aquariumSlot == null) {
+            for (int f = 0; f < fishCount; f++) {
+                if (fishChanged[f]) {
+                    changedSlots[changedFishes++] = f;
+                }
+            }
+        } else if (aquariumSlot != NO_SLOT) {
+            for (int f = firstFish[aquariumSlot]; f != NO_SLOT; f = nextFish[f]) {
+                if (fishChanged[f]) {
+                    if (changedFishes == changedSlots.length) {
+                        changedSlots = Arrays.copyOf(changedSlots, Math.max(16, changedFishes * 2));
+                    }
+                    changedSlots[changedFishes++] = f;
+                }
+            }
+        }
+
+        Changes changes = new Changes(changedFishes);
+        for (int i = 0; i < changedFishes; i++) {
+            int f = changedSlots[i];
+            changes.fishIds[i] = fishIds[f];
+            changes.hunger[i] = hunger[f];
+            changes.health[i] = health[f];
+            changes.age[i] = age[f];
+            fishChanged[f] = false;
+        }
+
+        // Collect aquariums
+        for (int a = 0; a < aquariumCount; a++) {
+            boolean selected = aquariumSlot == null || aquariumSlot == a;
+            if (selected && aquariumChanged[a]) {
+                changes.aquariumClearness.put(aquariumIds[a], clearness[a]);
+                aquariumChanged[a] = false;
+            }
+        }
+
+        // Collect dead fishes
+        changes.deadFishIds = Arrays.copyOf(deadFishIds, deadFishCount);
+        deadFishCount = 0;
+
+        return changes;
+    }
+
+    /**
+     * Writes the given changes in one transaction, one batch of rows at a time.
+     * If the write fails, changes are marked again to be retried by the next flush.
+     */
+    private void persist(Changes changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        int batchSize = tickProperties.getFlushBatchSize();
+        TickPhaseEvent flush = TickPhaseEvent.begin(TickMode.ENGINE, TickPhaseEvent.FLUSH, 0, 0);
+
+        try {
+            transactionTemplate().executeWithoutResult(status -> {
+
+                // Update fishes
+                for (int from = 0; from < changes.fishIds.length; from += batchSize) {
+                    int to = Math.min(from + batchSize, changes.fishIds.length);
+                    Map<Long, Integer> rows = new HashMap<>();
+                    for (int i = from; i < to; i++) {
+                        rows.put(changes.fishIds[i], i);
+                    }
+                    for (Fish fish : fishRepository.findAllWithAquariumById(rows.keySet())) {
+                        int i = rows.get(fish.getId());
+                        fish.setHunger(changes.hunger[i]);
+                        fish.setHealth(changes.health[i]);
+                        fish.setAge(changes.age[i]);
+                    }
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+
+                // Update aquariums
+                List<Long> aquariumIdList = new ArrayList<>(changes.aquariumClearness.keySet());
+                for (int from = 0; from < aquariumIdList.size(); from += batchSize) {
+                    List<Long> batch = aquariumIdList.subList(from, Math.min(from + batchSize, aquariumIdList.size()));
+                    for (Aquarium aquarium : aquariumRepository.findAllById(batch)) {
+                        aquarium.setClearness(changes.aquariumClearness.get(aquarium.getId()));
+                    }
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+
+                // Delete dead fishes
+                TickPhaseEvent delete = TickPhaseEvent.begin(TickMode.ENGINE, TickPhaseEvent.DELETE, 0, 0);
+                for (int from = 0; from < changes.deadFishIds.length; from += batchSize) {
+                    List<Long> batch = new ArrayList<>();
+                    for (int i = from; i < Math.min(from + batchSize, changes.deadFishIds.length); i++) {
+                        batch.add(changes.deadFishIds[i]);
+                    }
+                    aquariumRepository.decreaseFishCountByFishIds(batch);
+                    tombstoneRepository.insertFishTombstones(batch, changeVersions.currentVersion());
+                    fishRepository.deleteAllByIdInBatch(batch);
+                }
+                delete.complete(changes.deadFishIds.length);
+            });
+        } catch (RuntimeException e) {
+            requeue(changes);
+            throw e;
+        }
+        flush.complete(changes.fishIds.length + changes.aquariumClearness.size() + changes.deadFishIds.length);
+    }
+
+    private void requeue(Changes changes) {
+        lock.writeLock().lock();
+        try {
+            for (long fishId : changes.fishIds) {
+                Integer f = fishSlots.get(fishId);
+                if (f != null) {
+                    fishChanged[f] = true;
+                }
+            }
+            for (Long aquariumId : changes.aquariumClearness.keySet()) {
+                Integer a = aquariumSlots.get(aquariumId);
+                if (a != null) {
+                    aquariumChanged[a] = true;
+                }
+            }
+            for (long fishId : changes.deadFishIds) {
+                addDeadFish(fishId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // Reads
+
+    /**
+     * Builds detached views of all aquariums and their fishes.
+     * @return the list of aquariums.
+     */
+    public List<Aquarium> findAllAquariums() {
+        lock.readLock().lock();
+        try {
+            List<Aquarium> aquariums = new ArrayList<>(aquariumCount);
+            for (int a = 0; a < aquariumCount; a++) {
+                aquariums.add(aquariumView(a));
+            }
+            aquariums.sort(Comparator.comparing(Aquarium::getId));
+            return aquariums;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Summarizes all aquariums with the number of their fishes.
+     * @return the list of summaries in ascending order of id.
+     */
+    public List<AquariumSummary> findAllSummaries() {
+        lock.readLock().lock();
+        try {
+            List<AquariumSummary> summaries = new ArrayList<>(aquariumCount);
+            for (int a = 0; a < aquariumCount; a++) {
+                long fishes = 0;
+                for (int f = firstFish[a]; f != NO_SLOT; f = nextFish[f]) {
+                    fishes++;
+                }
+                summaries.add(new AquariumSummary(aquariumIds[a], capacities[a], clearness[a], temperatures[a], fishes));
+            }
+            summaries.sort(Comparator.comparing(AquariumSummary::id));
+            return summaries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a detached view of the aquarium with the given id.
+     * @param id
+     * @return an optional containing the found aquarium.
+     */
+    public Optional<Aquarium> findAquariumById(Long id) {
+        lock.readLock().lock();
+        try {
+            Integer a = aquariumSlots.get(id);
+            return a == null ? Optional.empty() : Optional.of(aquariumView(a));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds detached views of all fishes.
+     * @return the list of fishes.
+     */
+    public List<Fish> findAllFishes() {
+        lock.readLock().lock();
+        try {
+            List<Fish> fishes = new ArrayList<>(fishCount);
+            for (int f = 0; f < fishCount; f++) {
+                fishes.add(fishView(f));
+            }
+            fishes.sort(Comparator.comparing(Fish::getId));
+            return fishes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a detached view of the fish with the given id.
+     * @param id
+     * @return an optional containing the found fish.
+     */
+    public Optional<Fish> findFishById(Long id) {
+        lock.readLock().lock();
+        try {
+            Integer f = fishSlots.get(id);
+            return f == null ? Optional.empty() : Optional.of(fishView(f));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Aquarium aquariumView(int a) {
+        List<Fish> fishes = new ArrayList<>();
+        Aquarium aquarium = new Aquarium(aquariumIds[a], capacities[a], clearness[a], temperatures[a], fishes);
+        for (int f = firstFish[a]; f != NO_SLOT; f = nextFish[f]) {
+            Fish fish = fishView(f);
+            fish.setAquarium(aquarium);
+            fishes.add(fish);
+        }
+        fishes.sort(Comparator.comparing(Fish::getId));
+        return aquarium;
+    }
+
+    private Fish fishView(int f) {
+        Fish fish = new Fish(names[f], species[f]);
+        fish.setId(fishIds[f]);
+        fish.setHunger(hunger[f]);
+        fish.setHealth(health[f]);
+        fish.setAge(age[f]);
+        return fish;
+    }
+
+
+    // Slot management
+
+    private void clear() {
+        for (int a = aquariumCount - 1; a >= 0; a--) {
+            removeAquariumSlot(a);
+        }
+        for (int f = fishCount - 1; f >= 0; f--) {
+            removeFishSlot(f);
+        }
+        deadFishCount = 0;
+    }
+
+    private void addAquarium(Aquarium aquarium) {
+        if (aquariumCount == aquariumIds.length) {
+            growAquariums();
+        }
+        int a = aquariumCount++;
+        aquariumIds[a] = aquarium.getId();
+        clearness[a] = Objects.requireNonNullElse(aquarium.getClearness(), 0);
+        capacities[a] = aquarium.getCapacity();
+        temperatures[a] = aquarium.getTemperature();
+        firstFish[a] = NO_SLOT;
+        aquariumChanged[a] = false;
+        aquariumSlots.put(aquarium.getId(), a);
+    }
+
+    private void addFish(Fish fish) {
+        if (fishCount == fishIds.length) {
+            growFishes();
+        }
+        int f = fishCount++;
+        fishIds[f] = fish.getId();
+        hunger[f] = Objects.requireNonNullElse(fish.getHunger(), 0);
+        health[f] = Objects.requireNonNullElse(fish.getHealth(), 0);
+        age[f] = Objects.requireNonNullElse(fish.getAge(), 0L);
+        names[f] = fish.getName();
+        species[f] = fish.getSpecies();
+        fishChanged[f] = false;
+        Integer a = fish.getAquarium() == null ? null : aquariumSlots.get(fish.getAquarium().getId());
+        linkFish(f, a == null ? NO_SLOT : a);
+        fishSlots.put(fish.getId(), f);
+    }
+
+    private void removeFish(Long fishId) {
+        Integer f = fishSlots.get(fishId);
+        if (f != null) {
+            removeFishSlot(f);
+        }
+    }
+
+    private void addDeadFish(long fishId) {
+        if (deadFishCount == deadFishIds.length) {
+            deadFishIds = Arrays.copyOf(deadFishIds, deadFishIds.length * 2);
+        }
+        deadFishIds[deadFishCount++] = fishId;
+    }
+
+    /**
+     * Removes the fish in the given slot, moving the last fish into it to keep slots dense.
+     */
+    private void removeFishSlot(int f) {
+        unlinkFish(f);
+        fishSlots.remove(fishIds[f]);
+        int last = --fishCount;
+        if (f != last) {
+            moveFish(last, f);
+        }
+        names[last] = null;
+        species[last] = null;
+    }
+
+    private void moveFish(int from, int to) {
+        fishIds[to] = fishIds[from];
+        hunger[to] = hunger[from];
+        health[to] = health[from];
+        age[to] = age[from];
+        names[to] = names[from];
+        species[to] = species[from];
+        fishAquarium[to] = fishAquarium[from];
+        nextFish[to] = nextFish[from];
+        previousFish[to] = previousFish[from];
+        fishChanged[to] = fishChanged[from];
+
+        if (previousFish[to] != NO_SLOT) {
+            nextFish[previousFish[to]] = to;
+        } else if (fishAquarium[to] != NO_SLOT) {
+            firstFish[fishAquarium[to]] = to;
+        }
+        if (nextFish[to] != NO_SLOT) {
+            previousFish[nextFish[to]] = to;
+        }
+        fishSlots.put(fishIds[to], to);
+    }
+
+    private void linkFish(int f, int a) {
+        fishAquarium[f] = a;
+        previousFish[f] = NO_SLOT;
+        nextFish[f] = NO_SLOT;
+        if (a != NO_SLOT) {
+            nextFish[f] = firstFish[a];
+            if (firstFish[a] != NO_SLOT) {
+                previousFish[firstFish[a]] = f;
+            }
+            firstFish[a] = f;
+        }
+    }
+
+    private void unlinkFish(int f) {
+        int previous = previousFish[f];
+        int next = nextFish[f];
+        if (previous != NO_SLOT) {
+            nextFish[previous] = next;
+        } else if (fishAquarium[f] != NO_SLOT) {
+            firstFish[fishAquarium[f]] = next;
+        }
+        if (next != NO_SLOT) {
+            previousFish[next] = previous;
+        }
+    }
+
+    /**
+     * Removes the aquarium in the given slot with all its fishes, moving the last aquarium into it.
+     */
+    private void removeAquariumSlot(int a) {
+        while (firstFish[a] != NO_SLOT) {
+            removeFishSlot(firstFish[a]);
+        }
+        aquariumSlots.remove(aquariumIds[a]);
+        int last = --aquariumCount;
+        if (a != last) {
+            aquariumIds[a] = aquariumIds[last];
+            clearness[a] = clearness[last];
+            capacities[a] = capacities[last];
+            temperatures[a] = temperatures[last];
+            firstFish[a] = firstFish[last];
+            aquariumChanged[a] = aquariumChanged[last];
+            for (int f = firstFish[a]; f != NO_SLOT; f = nextFish[f]) {
+                fishAquarium[f] = a;
+            }
+            aquariumSlots.put(aquariumIds[a], a);
+        }
+        capacities[last] = null;
+        temperatures[last] = null;
+    }
+
+    private void growAquariums() {
+        int size = aquariumIds.length * 2;
+        aquariumIds = Arrays.copyOf(aquariumIds, size);
+        clearness = Arrays.copyOf(clearness, size);
+        capacities = Arrays.copyOf(capacities, size);
+        temperatures = Arrays.copyOf(temperatures, size);
+        firstFish = Arrays.copyOf(firstFish, size);
+        aquariumChanged = Arrays.copyOf(aquariumChanged, size);
+    }
+
+    private void growFishes() {
+        int size = fishIds.length * 2;
+        fishIds = Arrays.copyOf(fishIds, size);
+        hunger = Arrays.copyOf(hunger, size);
+        health = Arrays.copyOf(health, size);
+        age = Arrays.copyOf(age, size);
+        names = Arrays.copyOf(names, size);
+        species = Arrays.copyOf(species, size);
+        fishAquarium = Arrays.copyOf(fishAquarium, size);
+        nextFish = Arrays.copyOf(nextFish, size);
+        previousFish = Arrays.copyOf(previousFish, size);
+        fishChanged = Arrays.copyOf(fishChanged, size);
+    }
+
+    /**
+     * Engine reads and writes always commit on their own, even when called from a transaction,
+     * so that flushed changes are never rolled back with it.
+     */
+    private TransactionTemplate transactionTemplate() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    /**
+     * Rows to be written by a flush.
+     */
+    private static class Changes {
+
+        private final long[] fishIds;
+        private final int[] hunger;
+        private final int[] health;
+        private final long[] age;
+        private final Map<Long, Integer> aquariumClearness = new HashMap<>();
+        private long[] deadFishIds = new long[0];
+
+        private Changes(int fishCount) {
+            fishIds = new long[fishCount];
+            hunger = new int[fishCount];
+            health = new int[fishCount];
+            age = new long[fishCount];
+        }
+
+        private boolean isEmpty() {
+            return fishIds.length == 0 && aquariumClearness.isEmpty() && deadFishIds.length == 0;
+        }
+    }
+}
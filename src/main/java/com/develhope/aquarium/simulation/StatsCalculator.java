@@ -0,0 +1,143 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+
+/**
+ * Closed-form version of the stats tick rules.
+ * Hunger grows by 1 per tick and clearness drops by 1 per tick, so the ticks in which a fish
+ * has low or high hunger and lives in a dirty aquarium are known in advance.
+ * Between those thresholds health changes at a constant rate, so any number of ticks
+ * is computed in a handful of steps instead of one step per tick.
+ * Results are the same as applying {@link Aquarium#dirty(Integer)}, {@link Fish#increaseHunger()},
+ * {@link Fish#updateHealth()} and {@link Fish#decreaseHealth()} once per tick.
+ */
+public final class StatsCalculator {
+
+    public static final long NEVER = -1;
+
+    private StatsCalculator() {
+    }
+
+    /**
+     * @param clearness
+     * @param ticks
+     * @return aquarium clearness after the given number of ticks.
+     */
+    public static int clearnessAfter(int clearness, long ticks) {
+        return ticks == 0 ? clearness : (int) Math.max(0, clearness - ticks);
+    }
+
+    /**
+     * @param hunger
+     * @param ticks
+     * @return fish hunger after the given number of ticks.
+     */
+    public static int hungerAfter(int hunger, long ticks) {
+        return ticks == 0 ? hunger : (int) Math.min(100, hunger + ticks);
+    }
+
+    /**
+     * Computes the stats of a fish after the given number of ticks.
+     * @param hunger fish hunger before the ticks.
+     * @param health fish health before the ticks.
+     * @param clearness clearness of the fish aquarium before the ticks.
+     * @param ticks
+     * @return the stats after the ticks, including the tick in which the fish died, if it did.
+     */
+    public static StatsProjection project(int hunger, int health, int clearness, long ticks) {
+
+        // Ticks are counted from 1:
+        // hunger is low up to tick lastLowTick, high from tick firstHighTick,
+        // and aquarium is dirty from tick firstDirtyTick.
+        long lastLowTick = (long) Fish.LOW_HUNGER - hunger;
+        long firstHighTick = (long) Fish.HIGH_HUNGER + 1 - hunger;
+        long firstDirtyTick = (long) clearness - Aquarium.LOW_CLEARNESS;
+
+        long tick = 1;
+        long currentHealth = health;
+
+        while (tick <= ticks) {
+
+            boolean low = tick <= lastLowTick;
+            boolean high = tick >= firstHighTick;
+            boolean dirty = tick >= firstDirtyTick;
+
+            // Find where the segment of ticks with the same conditions ends (exclusive)
+            long end = ticks + 1;
+            if (low) {
+                end = Math.min(end, lastLowTick + 1);
+            } else if (!high) {
+                end = Math.min(end, firstHighTick);
+            }
+            if (!dirty) {
+                end = Math.min(end, firstDirtyTick);
+            }
+            long length = end - tick;
+
+            if (low && !dirty) {
+
+                // Health grows up to 100, the fish can only die in the first tick
+                if (currentHealth + 1 <= 0) {
+                    return new StatsProjection(hungerAfter(hunger, tick), 0, tick);
+                }
+                currentHealth = Math.min(100, currentHealth + length);
+
+            } else if (low) {
+
+                // Growth and dirt cancel out, except that health can't go over 100 before decreasing
+                currentHealth = Math.max(0, Math.min(99, currentHealth));
+                if (currentHealth <= 0) {
+                    return new StatsProjection(hungerAfter(hunger, tick), 0, tick);
+                }
+
+            } else if (!high && !dirty) {
+
+                // Health doesn't change
+                if (currentHealth <= 0) {
+                    return new StatsProjection(hungerAfter(hunger, tick), 0, tick);
+                }
+
+            } else {
+
+                // Health decreases by 1 for high hunger and by 1 for dirt
+                long rate = (high ? 1 : 0) + (dirty ? 1 : 0);
+                long ticksToDeath = currentHealth <= 0 ? 1 : (currentHealth + rate - 1) / rate;
+                if (ticksToDeath <= length) {
+                    long deathTick = tick + ticksToDeath - 1;
+                    return new StatsProjection(hungerAfter(hunger, deathTick), 0, deathTick);
+                }
+                currentHealth -= rate * length;
+
+            }
+
+            tick = end;
+        }
+
+        return new StatsProjection(hungerAfter(hunger, ticks), (int) currentHealth, NEVER);
+    }
+
+    /**
+     * Computes how many ticks a fish left alone lives.
+     * @param hunger
+     * @param health
+     * @param clearness clearness of the fish aquarium.
+     * @return the tick (counted from 1) in which the fish dies.
+     */
+    public static long ticksUntilDeath(int hunger, int health, int clearness) {
+
+        // Hunger is high at the latest after HIGH_HUNGER + 1 ticks,
+        // then health decreases by at least 1 per tick from at most max(100, health)
+        long horizon = Math.max(0L, (long) Fish.HIGH_HUNGER + 1 - hunger) + Math.max(100L, health) + 1;
+        return project(hunger, health, clearness, horizon).deathTick();
+    }
+
+    /**
+     * @param hunger
+     * @param threshold
+     * @return the tick (counted from 1) in which hunger goes over the given threshold, or NEVER if it already is.
+     */
+    public static long ticksUntilHungerAbove(int hunger, int threshold) {
+        return hunger > threshold ? NEVER : (long) threshold + 1 - hunger;
+    }
+}
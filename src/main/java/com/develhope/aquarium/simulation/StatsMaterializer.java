@@ -0,0 +1,305 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.dtos.KeysetPage;
+import com.develhope.aquarium.jfr.AquariumProcessingEvent;
+import com.develhope.aquarium.metrics.TickCounts;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Brings aquariums and fishes to the current tick for the LAZY tick mode.
+ * Stored stats are base values valid at the stats tick of the entity,
+ * current values are computed in closed form with {@link StatsCalculator} when an aquarium is read or written.
+ * Aquariums are always materialized together with all their fishes, so they share the same stats tick.
+ * Every materialization reschedules the next event of its fishes on the {@link FishEventScheduler}.
+ */
+@Component
+public class StatsMaterializer {
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private SimulationClock simulationClock;
+
+    @Autowired
+    private FishEventScheduler fishEventScheduler;
+
+    /**
+     * Sets the stats tick of all aquariums and fishes to the current tick,
+     * so that stored values become the base values.
+     * Called on startup, as ticks are counted from the start of the application.
+     */
+    @Transactional
+    public void rebase() {
+        long now = simulationClock.currentTick();
+        aquariumRepository.resetStatsTick(now);
+        fishRepository.resetStatsTick(now);
+    }
+
+    /**
+     * Materializes the aquarium with the given id, locking it until the end of the transaction.
+     * @param aquariumId
+     * @return an optional containing the materialized aquarium.
+     */
+    @Transactional
+    public Optional<Aquarium> materialize(Long aquariumId) {
+        Optional<Aquarium> aquarium = aquariumRepository.findByIdForUpdate(aquariumId);
+        aquarium.ifPresent(this::materialize);
+        return aquarium;
+    }
+
+    /**
+     * Materializes the aquarium with the given id as part of a tick, locking it until the end of the transaction.
+     * @param aquariumId
+     * @param counts counts of the tick, the aquarium and its fishes are added to them.
+     */
+    @Transactional
+    public void materialize(Long aquariumId, TickCounts counts) {
+        aquariumRepository.findByIdForUpdate(aquariumId).ifPresent(aquarium -> {
+            AquariumProcessingEvent processing = AquariumProcessingEvent.begin(aquariumId);
+            int fishes = aquarium.getFishes().size();
+            int deadFishes = materialize(aquarium);
+            processing.complete(fishes, deadFishes);
+            counts.add(1, fishes, deadFishes);
+        });
+    }
+
+    /**
+     * Materializes all aquariums, locking them until the end of the transaction.
+     * @return the list of materialized aquariums.
+     */
+    @Transactional
+    public List<Aquarium> materializeAll() {
+        List<Aquarium> aquariums = aquariumRepository.findAllForUpdate();
+
+        // Load all fishes in one query instead of one per aquarium
+        aquariumRepository.findAllWithFishes();
+        aquariums.forEach(this::materialize);
+        return aquariums;
+    }
+
+    /**
+     * Materializes a page of aquariums following the given id, locking them until the end of the transaction.
+     * @param after
+     * @param limit
+     * @return the page of materialized aquariums in ascending order of id.
+     */
+    @Transactional
+    public KeysetPage<Aquarium> materializeAfter(Long after, Limit limit) {
+        List<Long> ids = aquariumRepository.findIdsAfter(after, limit);
+        return KeysetPage.of(materializeAll(ids), ids, limit);
+    }
+
+    /**
+     * Materializes a page of fishes following the given id together with their aquariums.
+     * @param after
+     * @param limit
+     * @return the page of materialized fishes in ascending order of id, without the dead ones,
+     * which still move the cursor forward.
+     */
+    @Transactional
+    public KeysetPage<Fish> materializeFishesAfter(Long after, Limit limit) {
+        List<Fish> fishes = fishRepository.findAllWithAquariumAfter(after, limit);
+
+        // Find the fishes living in an aquarium and materialize their aquariums
+        List<Long> scannedIds = new ArrayList<>(fishes.size());
+        Set<Long> fishIdsInAquarium = new HashSet<>();
+        Set<Long> aquariumIds = new TreeSet<>();
+        for (Fish fish : fishes) {
+            scannedIds.add(fish.getId());
+            if (fish.getAquarium() != null) {
+                fishIdsInAquarium.add(fish.getId());
+                aquariumIds.add(fish.getAquarium().getId());
+            }
+        }
+        materializeAll(aquariumIds);
+
+        // Dead fishes are removed from their aquarium
+        List<Fish> livingFishes = fishes.stream()
+                .filter(fish -> fish.getAquarium() != null || !fishIdsInAquarium.contains(fish.getId()))
+                .toList();
+        return KeysetPage.of(livingFishes, scannedIds, limit);
+    }
+
+    /**
+     * Materializes the fish with the given id together with its aquarium.
+     * @param fishId
+     * @return an optional containing the materialized fish, empty if it doesn't exist or it died.
+     */
+    @Transactional
+    public Optional<Fish> materializeFish(Long fishId) {
+        Optional<Fish> fish = fishRepository.findById(fishId);
+
+        if (fish.isPresent() && fish.get().getAquarium() != null) {
+            materialize(fish.get().getAquarium().getId());
+
+            // Dead fishes are removed from their aquarium
+            if (fish.get().getAquarium() == null) {
+                return Optional.empty();
+            }
+        }
+
+        return fish;
+    }
+
+    /**
+     * Runs the given database write on the aquarium with the given id in one transaction:
+     * the aquarium is materialized before the write, so that it applies to current values,
+     * and after the write, so that new fishes get the current tick.
+     * @param aquariumId
+     * @param write
+     * @return the result of the write.
+     */
+    @Transactional
+    public <T> T writeAquarium(Long aquariumId, Supplier<T> write) {
+        if (aquariumId == null) {
+            return write.get();
+        }
+        materialize(aquariumId);
+        T result = write.get();
+        materialize(aquariumId);
+        return result;
+    }
+
+    /**
+     * Runs the given database write on the fish with the given id,
+     * materializing the aquarium it lives in, if any.
+     * @param fishId
+     * @param write
+     * @return the result of the write.
+     */
+    @Transactional
+    public <T> T writeFish(Long fishId, Supplier<T> write) {
+        Optional<Fish> fish = fishId == null ? Optional.empty() : fishRepository.findById(fishId);
+        if (fish.isEmpty() || fish.get().getAquarium() == null) {
+            return write.get();
+        }
+        return writeAquarium(fish.get().getAquarium().getId(), write);
+    }
+
+    /**
+     * Materializes the aquariums with the given ids, locking them and loading their fishes in one query.
+     * @param ids
+     * @return the list of materialized aquariums in ascending order of id.
+     */
+    private List<Aquarium> materializeAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Aquarium> aquariums = aquariumRepository.findAllForUpdateById(ids);
+
+        // Load all fishes in one query instead of one per aquarium
+        aquariumRepository.findAllWithFishesById(ids);
+        aquariums.forEach(this::materialize);
+        return aquariums;
+    }
+
+    /**
+     * Brings the given managed aquarium and its fishes to the current tick.
+     * Fishes died in the meantime are deleted, the next event of the others is scheduled.
+     * @param aquarium
+     * @return the number of dead fishes.
+     */
+    private int materialize(Aquarium aquarium) {
+        long now = simulationClock.currentTick();
+        List<Long> deadFishIds = new ArrayList<>();
+        List<FishEvent> events = new ArrayList<>();
+
+        // Aquariums without stats tick have just been created
+        long statsTick = aquarium.getStatsTick() == null ? now : aquarium.getStatsTick();
+        long ticks = Math.max(0, now - statsTick);
+
+        for (Fish fish : new ArrayList<>(aquarium.getFishes())) {
+
+            // If fish died delete it
+            if (!applyStats(fish, aquarium.getClearness(), statsTick, now)) {
+                deadFishIds.add(fish.getId());
+                aquarium.removeFish(fish);
+                fish.setAquarium(null);
+                fishRepository.delete(fish);
+            }
+        }
+
+        aquarium.setClearness(StatsCalculator.clearnessAfter(aquarium.getClearness(), ticks));
+        aquarium.setStatsTick(now);
+
+        // Schedule next events from the materialized stats
+        for (Fish fish : aquarium.getFishes()) {
+            if (fish.getId() != null) {
+                events.add(FishEventScheduler.nextEvent(fish, aquarium.getClearness(), now));
+            }
+        }
+        if (!deadFishIds.isEmpty()) {
+            aquariumRepository.decreaseFishCount(aquarium.getId(), (long) deadFishIds.size());
+        }
+        fishEventScheduler.schedule(events, deadFishIds);
+        return deadFishIds.size();
+    }
+
+    /**
+     * Brings the given detached aquarium and its fishes to the current tick without writing them,
+     * fishes died in the meantime are removed from the aquarium.
+     * Used by reads which don't lock, like streaming.
+     * @param aquarium
+     */
+    public void project(Aquarium aquarium) {
+        long now = simulationClock.currentTick();
+        long statsTick = aquarium.getStatsTick() == null ? now : aquarium.getStatsTick();
+
+        aquarium.getFishes().removeIf(fish -> !applyStats(fish, aquarium.getClearness(), statsTick, now));
+        aquarium.setClearness(StatsCalculator.clearnessAfter(aquarium.getClearness(), Math.max(0, now - statsTick)));
+        aquarium.setStatsTick(now);
+    }
+
+    /**
+     * Brings the given detached fish to the current tick without writing it.
+     * Fishes not living in an aquarium are left as they are.
+     * @param fish
+     * @return false if the fish died in the meantime.
+     */
+    public boolean project(Fish fish) {
+        if (fish.getAquarium() == null) {
+            return true;
+        }
+        long now = simulationClock.currentTick();
+        Aquarium aquarium = fish.getAquarium();
+        long statsTick = aquarium.getStatsTick() == null ? now : aquarium.getStatsTick();
+        return applyStats(fish, aquarium.getClearness(), statsTick, now);
+    }
+
+    /**
+     * Sets the stats of the given fish at the given tick.
+     * @param fish
+     * @param clearness clearness of the fish aquarium at the stats tick.
+     * @param statsTick stats tick of the fish aquarium.
+     * @param now
+     * @return false if the fish died in the meantime, in which case its stats are left as they are.
+     */
+    private boolean applyStats(Fish fish, int clearness, long statsTick, long now) {
+        StatsProjection stats = StatsCalculator.project(fish.getHunger(), fish.getHealth(), clearness, Math.max(0, now - statsTick));
+        if (stats.isDead()) {
+            return false;
+        }
+
+        // Fishes without stats tick have been added after the aquarium was last materialized
+        long fishStatsTick = fish.getStatsTick() == null ? statsTick : fish.getStatsTick();
+        fish.setHunger(stats.hunger());
+        fish.setHealth(stats.health());
+        fish.setAge(fish.getAge() + simulationClock.agingTicksBetween(fishStatsTick, now));
+        fish.setStatsTick(now);
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package com.develhope.aquarium.simulation;
+
+/**
+ * Stats of a fish after a number of ticks, as computed by {@link StatsCalculator}.
+ * @param hunger hunger after the ticks.
+ * @param health health after the ticks, meaningless if the fish died.
+ * @param deathTick tick (counted from 1) in which the fish died, or {@link StatsCalculator#NEVER}.
+ */
+public record StatsProjection(int hunger, int health, long deathTick) {
+
+    public boolean isDead() {
+        return deathTick != StatsCalculator.NEVER;
+    }
+}
@@ -0,0 +1,145 @@
+package com.develhope.aquarium.simulation;
+
+import com.develhope.aquarium.exceptions.TickCheckpointedException;
+import com.develhope.aquarium.metrics.TickMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs every tick on its own thread, at deadlines counted from the start of the {@link SimulationClock},
+ * so that the time taken by a run never shifts the following ones.
+ * A run which ends late doesn't cause runs back to back: all the ticks due in the meantime
+ * are passed together to the next run, which applies them in a single pass.
+ * A failed run is counted and logged, and the ticker keeps going.
+ * Its ticks are passed again to the next run, unless the failure says they are kept in checkpoints.
+ */
+@Component
+public class TickScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TickScheduler.class);
+
+    @Autowired
+    private SimulationClock simulationClock;
+
+    @Autowired
+    private TickMetrics tickMetrics;
+
+    private final List<ScheduledExecutorService> executors = new CopyOnWriteArrayList<>();
+
+    // Creates the executor of a tick, replaced by tests driving the runs themselves
+    private Function<String, ScheduledExecutorService> executorFactory = TickScheduler::newExecutor;
+
+    /**
+     * Starts running the given task once per period, the first time one period after the start of the clock.
+     * @param tick name of the tick.
+     * @param period
+     * @param task task receiving the number of ticks to apply.
+     */
+    public void schedule(String tick, Duration period, LongConsumer task) {
+        ScheduledExecutorService executor = executorFactory.apply(tick);
+        executors.add(executor);
+
+        Ticker ticker = new Ticker(tick, period, task, executor);
+        tickMetrics.registerLag(tick, ticker::lagSeconds);
+        ticker.scheduleNext();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.forEach(ScheduledExecutorService::shutdownNow);
+    }
+
+    private static ScheduledExecutorService newExecutor(String tick) {
+
+        // Daemon threads don't keep the JVM alive once the application is closed
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Tick " + tick);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private class Ticker implements Runnable {
+
+        private final String tick;
+        private final Duration period;
+        private final LongConsumer task;
+        private final ScheduledExecutorService executor;
+
+        // Ticks already applied, or kept in checkpoints
+        private volatile long done;
+
+        // Last tick a run was started for, the next run is due at reached + 1
+        private volatile long reached;
+
+        private Ticker(String tick, Duration period, LongConsumer task, ScheduledExecutorService executor) {
+            this.tick = tick;
+            this.period = period;
+            this.task = task;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long due = simulationClock.ticksElapsed(period);
+
+                // Woken up before the deadline
+                if (due <= reached) {
+                    return;
+                }
+                reached = due;
+
+                long ticks = due - done;
+                if (ticks > 1) {
+                    tickMetrics.recordCoalesced(tick, ticks - 1);
+                }
+                try {
+                    task.accept(ticks);
+                    done = due;
+                } catch (TickCheckpointedException e) {
+
+                    // Ticks aren't run again from scratch, as chunks committed before the failure would be applied twice:
+                    // ENTITY and BULK ticks resume the remaining chunks from their checkpoints in the next run
+                    tickMetrics.recordFailure(tick);
+                    logger.warn("{} tick {} failed, its remaining chunks are resumed by the next run", tick, due, e);
+                    done = due;
+                } catch (RuntimeException e) {
+
+                    // Nothing keeps these ticks, so the next run applies them together with its own
+                    tickMetrics.recordFailure(tick);
+                    logger.warn("{} tick {} failed, its {} ticks are passed to the next run", tick, due, ticks, e);
+                }
+            } finally {
+                scheduleNext();
+            }
+        }
+
+        private void scheduleNext() {
+            if (!executor.isShutdown()) {
+                long delay = simulationClock.timeUntilTick(period, reached + 1).toNanos();
+                executor.schedule(this, Math.max(0, delay), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * @return the seconds elapsed since the first tick not applied yet was due, 0 if it isn't due yet.
+         */
+        private double lagSeconds() {
+            long lag = -simulationClock.timeUntilTick(period, done + 1).toNanos();
+            return Math.max(0, lag) / 1e9;
+        }
+    }
+}
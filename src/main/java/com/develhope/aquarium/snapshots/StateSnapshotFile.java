@@ -0,0 +1,333 @@
+package com.develhope.aquarium.snapshots;
+
+import com.develhope.aquarium.enumerations.FishSpecies;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file containing all aquariums and fishes.
+ * Layout: a header with magic number, format version, tick, last change version and counts,
+ * then the aquarium records, then the fish records, then the CRC32 of all records.
+ * Files are written through a direct buffer into a temporary file which replaces the old one only when complete,
+ * and read through a memory mapping, so that restoring doesn't copy the file into the heap.
+ */
+public final class StateSnapshotFile {
+
+    private static final int MAGIC = 0x41515353;
+    private static final short FORMAT_VERSION = 2;
+
+    // Magic, format version, tick, last change version, aquarium count, fish count
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES
+            + Integer.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // Markers of null values
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final byte NULL_BYTE = -1;
+
+    private StateSnapshotFile() {
+    }
+
+    /**
+     * Stored values of an aquarium.
+     * @param id
+     * @param capacity
+     * @param clearness
+     * @param temperature
+     * @param fishCount
+     * @param statsTick
+     */
+    public record AquariumRecord(Long id, Long capacity, Integer clearness, Integer temperature, Long fishCount,
+                                 Long statsTick) {
+    }
+
+    /**
+     * Stored values of a fish.
+     * @param id
+     * @param aquariumId
+     * @param name
+     * @param species
+     * @param hunger
+     * @param health
+     * @param age
+     * @param statsTick
+     */
+    public record FishRecord(Long id, Long aquariumId, String name, FishSpecies species, Integer hunger,
+                             Integer health, Long age, Long statsTick) {
+    }
+
+    /**
+     * Starts writing a snapshot which replaces the file at the given path when committed.
+     * @param path
+     * @param tick simulation tick at which the snapshot is taken.
+     * @return the writer.
+     * @throws IOException
+     */
+    public static Writer create(Path path, long tick) throws IOException {
+        return new Writer(path, tick);
+    }
+
+    /**
+     * Maps the snapshot file at the given path and checks its header and checksum.
+     * @param path
+     * @return the reader.
+     * @throws IOException if the file can't be read, or isn't a complete snapshot.
+     */
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    /**
+     * Writes aquariums first and fishes after, then commits.
+     * Closing a writer without committing deletes the temporary file and leaves the old snapshot in place.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path path;
+        private final Path temporaryPath;
+        private final FileChannel channel;
+        private final long tick;
+        private final CRC32 checksum = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private int aquariumCount;
+        private int fishCount;
+        private boolean committed;
+
+        private Writer(Path path, long tick) throws IOException {
+            this.path = path.toAbsolutePath();
+            this.tick = tick;
+            Files.createDirectories(this.path.getParent());
+            temporaryPath = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+            channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            // Records start after the header, which is written last when counts are known
+            channel.position(HEADER_SIZE);
+        }
+
+        public void writeAquarium(AquariumRecord aquarium) throws IOException {
+            if (fishCount > 0) {
+                throw new IllegalStateException("Aquariums must be written before fishes");
+            }
+            ensureRemaining(Long.BYTES * 4 + Integer.BYTES * 2);
+            buffer.putLong(aquarium.id());
+            putLong(aquarium.capacity());
+            putInt(aquarium.clearness());
+            putInt(aquarium.temperature());
+            putLong(aquarium.fishCount());
+            putLong(aquarium.statsTick());
+            aquariumCount++;
+        }
+
+        public void writeFish(FishRecord fish) throws IOException {
+            byte[] name = fish.name() == null ? null : fish.name().getBytes(StandardCharsets.UTF_8);
+            ensureRemaining(Long.BYTES * 4 + Integer.BYTES * 3 + 1 + (name == null ? 0 : name.length));
+            buffer.putLong(fish.id());
+            putLong(fish.aquariumId());
+
+            // Species are stored by ordinal, so new species must be added last
+            buffer.put(fish.species() == null ? NULL_BYTE : (byte) fish.species().ordinal());
+
+            putInt(fish.hunger());
+            putInt(fish.health());
+            putLong(fish.age());
+            putLong(fish.statsTick());
+            buffer.putInt(name == null ? NULL_INT : name.length);
+            if (name != null) {
+                buffer.put(name);
+            }
+            fishCount++;
+        }
+
+        /**
+         * Writes header and checksum, forces the file to disk and moves it over the old snapshot.
+         * @param changeVersion last change version handed out, restored versions must start after it.
+         * @throws IOException
+         */
+        public void commit(long changeVersion) throws IOException {
+            drain();
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).putLong(checksum.getValue()).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putShort(FORMAT_VERSION)
+                    .putLong(tick)
+                    .putLong(changeVersion)
+                    .putInt(aquariumCount)
+                    .putInt(fishCount)
+                    .flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+
+            channel.force(true);
+            channel.close();
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(temporaryPath);
+            }
+        }
+
+        private void putLong(Long value) {
+            buffer.putLong(value == null ? NULL_LONG : value);
+        }
+
+        private void putInt(Integer value) {
+            buffer.putInt(value == null ? NULL_INT : value);
+        }
+
+        private void ensureRemaining(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                drain();
+            }
+
+            // Only names longer than the buffer need a bigger one
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads all aquariums first and all fishes after, each one exactly once.
+     * Files larger than 2 GB can't be mapped at once and aren't supported.
+     */
+    public static final class Reader {
+
+        private static final FishSpecies[] SPECIES = FishSpecies.values();
+
+        private final MappedByteBuffer buffer;
+        private final long tick;
+        private final long changeVersion;
+        private final int aquariumCount;
+        private final int fishCount;
+        private int aquariumsRead;
+        private int fishesRead;
+
+        private Reader(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid snapshot size " + size + ": " + path);
+                }
+
+                // The mapping stays valid after the channel is closed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getShort() != FORMAT_VERSION) {
+                throw new IOException("Not a snapshot of this format version: " + path);
+            }
+            tick = buffer.getLong();
+            changeVersion = buffer.getLong();
+            aquariumCount = buffer.getInt();
+            fishCount = buffer.getInt();
+
+            // Check the records against the checksum before anything is restored
+            int recordsEnd = buffer.limit() - TRAILER_SIZE;
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(HEADER_SIZE, recordsEnd - HEADER_SIZE));
+            if (checksum.getValue() != buffer.getLong(recordsEnd)) {
+                throw new IOException("Corrupted snapshot: " + path);
+            }
+            buffer.limit(recordsEnd);
+        }
+
+        /**
+         * @return the simulation tick at which the snapshot was taken.
+         */
+        public long getTick() {
+            return tick;
+        }
+
+        /**
+         * @return the last change version handed out when the snapshot was taken.
+         */
+        public long getChangeVersion() {
+            return changeVersion;
+        }
+
+        public int getAquariumCount() {
+            return aquariumCount;
+        }
+
+        public int getFishCount() {
+            return fishCount;
+        }
+
+        public boolean hasNextAquarium() {
+            return aquariumsRead < aquariumCount;
+        }
+
+        public AquariumRecord nextAquarium() {
+            aquariumsRead++;
+            return new AquariumRecord(buffer.getLong(), getLong(), getInt(), getInt(), getLong(), getLong());
+        }
+
+        public boolean hasNextFish() {
+            return !hasNextAquarium() && fishesRead < fishCount;
+        }
+
+        public FishRecord nextFish() {
+            fishesRead++;
+            long id = buffer.getLong();
+            Long aquariumId = getLong();
+            byte species = buffer.get();
+            Integer hunger = getInt();
+            Integer health = getInt();
+            Long age = getLong();
+            Long statsTick = getLong();
+            int nameLength = buffer.getInt();
+            String name = null;
+            if (nameLength != NULL_INT) {
+                byte[] bytes = new byte[nameLength];
+                buffer.get(bytes);
+                name = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new FishRecord(id, aquariumId, name, species == NULL_BYTE ? null : SPECIES[species],
+                    hunger, health, age, statsTick);
+        }
+
+        private Long getLong() {
+            long value = buffer.getLong();
+            return value == NULL_LONG ? null : value;
+        }
+
+        private Integer getInt() {
+            int value = buffer.getInt();
+            return value == NULL_INT ? null : value;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.develhope.aquarium.snapshots;
+
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.changes.ChangeVersions;
+import com.develhope.aquarium.configurations.SnapshotProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.simulation.SimulationClock;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import com.develhope.aquarium.snapshots.StateSnapshotFile.AquariumRecord;
+import com.develhope.aquarium.snapshots.StateSnapshotFile.FishRecord;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the whole simulation state to a {@link StateSnapshotFile} and restores it on startup.
+ * Both directions go straight through JDBC: rows are streamed out of the database with a cursor,
+ * and inserted back with batched statements, so that no entity is loaded or saved one by one.
+ */
+@Component
+public class StateSnapshots {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SELECT_AQUARIUMS = """
+            SELECT id, capacity, clearness, temperature, fish_count, stats_tick
+            FROM aquariums ORDER BY id""";
+
+    private static final String SELECT_FISHES = """
+            SELECT id, aquarium_id, name, species, hunger, health, age, stats_tick
+            FROM fishes ORDER BY id""";
+
+    private static final String INSERT_AQUARIUM = """
+            INSERT INTO aquariums (id, capacity, clearness, temperature, fish_count, stats_tick, change_version, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, 0)""";
+
+    private static final String INSERT_FISH = """
+            INSERT INTO fishes (id, aquarium_id, name, species, hunger, health, age, stats_tick, change_version, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)""";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private SimulationClock simulationClock;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private SnapshotProperties snapshotProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Writes all aquariums and fishes to the snapshot file, replacing the previous snapshot only when complete.
+     * Rows are read in one read-only transaction, so the snapshot is consistent.
+     * In ENGINE mode changes are flushed first.
+     * @throws IOException
+     */
+    public synchronized void write() throws IOException {
+        if (tickProperties.getMode() == TickMode.ENGINE) {
+            simulationEngine.flush();
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        try (StateSnapshotFile.Writer writer = StateSnapshotFile.create(snapshotProperties.getPath(), simulationClock.currentTick())) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    stream(SELECT_AQUARIUMS, resultSet -> {
+                        try {
+                            writer.writeAquarium(toAquariumRecord(resultSet));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    stream(SELECT_FISHES, resultSet -> {
+                        try {
+                            writer.writeFish(toFishRecord(resultSet));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Taken after the rows are read, so it covers every version they carry
+            writer.commit(changeVersions.lastVersion());
+        }
+    }
+
+    @PreDestroy
+    public void writeOnShutdown() throws IOException {
+        if (snapshotProperties.getEnabled()) {
+            write();
+        }
+    }
+
+    /**
+     * Restores the snapshot file into the database in one transaction, if both exist and the database is empty.
+     * All restored rows get the same new change version, after the last one handed out before the snapshot,
+     * so that change feed clients which were already past the stored rows still see them again.
+     * Stats ticks are moved to the current clock, so that LAZY aquariums keep the ticks elapsed before the snapshot.
+     * @return true if the snapshot has been restored.
+     * @throws IOException if the snapshot file can't be read or is corrupted.
+     */
+    public boolean restore() throws IOException {
+        if (!Files.exists(snapshotProperties.getPath())
+                || aquariumRepository.count() > 0 || fishRepository.count() > 0) {
+            return false;
+        }
+
+        StateSnapshotFile.Reader reader = StateSnapshotFile.open(snapshotProperties.getPath());
+        long tickShift = simulationClock.currentTick() - reader.getTick();
+        int batchSize = snapshotProperties.getBatchSize();
+
+        changeVersions.advanceTo(reader.getChangeVersion());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            long version = changeVersions.currentVersion();
+
+            // Aquariums first, as fishes reference them
+            List<AquariumRecord> aquariums = new ArrayList<>(batchSize);
+            while (reader.hasNextAquarium()) {
+                aquariums.add(reader.nextAquarium());
+                if (aquariums.size() == batchSize || !reader.hasNextAquarium()) {
+                    jdbcTemplate.batchUpdate(INSERT_AQUARIUM, aquariums, aquariums.size(), (statement, aquarium) -> {
+                        statement.setLong(1, aquarium.id());
+                        statement.setObject(2, aquarium.capacity());
+                        statement.setObject(3, aquarium.clearness());
+                        statement.setObject(4, aquarium.temperature());
+                        statement.setObject(5, aquarium.fishCount());
+                        statement.setObject(6, shift(aquarium.statsTick(), tickShift));
+                        statement.setLong(7, version);
+                    });
+                    aquariums.clear();
+                }
+            }
+
+            long maxFishId = 0;
+            List<FishRecord> fishes = new ArrayList<>(batchSize);
+            while (reader.hasNextFish()) {
+                FishRecord fish = reader.nextFish();
+                maxFishId = Math.max(maxFishId, fish.id());
+                fishes.add(fish);
+                if (fishes.size() == batchSize || !reader.hasNextFish()) {
+                    jdbcTemplate.batchUpdate(INSERT_FISH, fishes, fishes.size(), (statement, f) -> {
+                        statement.setLong(1, f.id());
+                        statement.setObject(2, f.aquariumId());
+                        statement.setString(3, f.name());
+                        statement.setString(4, f.species() == null ? null : f.species().name());
+                        statement.setObject(5, f.hunger());
+                        statement.setObject(6, f.health());
+                        statement.setObject(7, f.age());
+                        statement.setObject(8, shift(f.statsTick(), tickShift));
+                        statement.setLong(9, version);
+                    });
+                    fishes.clear();
+                }
+            }
+
+            // New fishes must get ids after the restored ones
+            fishRepository.advanceIdSequence(maxFishId + Fish.ID_ALLOCATION_SIZE);
+            entityCache.invalidateAll();
+        });
+        return true;
+    }
+
+    /**
+     * Runs the given query with a cursor, so that rows are never all held in memory.
+     * @param sql
+     * @param handler
+     */
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, handler);
+    }
+
+    private static AquariumRecord toAquariumRecord(ResultSet resultSet) throws SQLException {
+        return new AquariumRecord(
+                resultSet.getLong("id"),
+                resultSet.getObject("capacity", Long.class),
+                resultSet.getObject("clearness", Integer.class),
+                resultSet.getObject("temperature", Integer.class),
+                resultSet.getObject("fish_count", Long.class),
+                resultSet.getObject("stats_tick", Long.class));
+    }
+
+    private static FishRecord toFishRecord(ResultSet resultSet) throws SQLException {
+        String species = resultSet.getString("species");
+        return new FishRecord(
+                resultSet.getLong("id"),
+                resultSet.getObject("aquarium_id", Long.class),
+                resultSet.getString("name"),
+                species == null ? null : FishSpecies.valueOf(species),
+                resultSet.getObject("hunger", Integer.class),
+                resultSet.getObject("health", Integer.class),
+                resultSet.getObject("age", Long.class),
+                resultSet.getObject("stats_tick", Long.class));
+    }
+
+    private static Long shift(Long statsTick, long tickShift) {
+        return statsTick == null ? null : statsTick + tickShift;
+    }
+}
@@ -0,0 +1,186 @@
+package com.develhope.aquarium.streams;
+
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.caches.EntityChangeListener;
+import com.develhope.aquarium.caches.JsonSnapshots;
+import com.develhope.aquarium.caches.SnapshotListener;
+import com.develhope.aquarium.dtos.AquariumDelta;
+import com.develhope.aquarium.dtos.AquariumDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes aquarium deltas to Server-Sent Events subscribers.
+ * Deltas are computed comparing the aquarium views of every {@link JsonSnapshots} rebuild with the previous ones:
+ * snapshots are rebuilt at the end of every tick, and right after writes while there are subscribers.
+ * Every subscriber first receives the whole state of its aquariums, then only their changes.
+ */
+@Component
+public class AquariumDeltaPublisher implements SnapshotListener, EntityChangeListener {
+
+    @Autowired
+    private JsonSnapshots jsonSnapshots;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    private final List<DeltaSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Last published views, only changed by snapshot rebuilds
+    private Map<Long, AquariumDto> aquariums = Map.of();
+
+    // Rebuilds after writes run one at a time, writes arriving meanwhile are handled by the next rebuild
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Delta Rebuild"));
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    // Slow subscribers only block their own thread
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PostConstruct
+    public void init() {
+        jsonSnapshots.addListener(this);
+        entityCache.addListener(this);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Subscribes to the deltas of the aquariums with the given ids.
+     * @param aquariumIds null or empty to subscribe to all aquariums.
+     * @return the emitter of the events.
+     */
+    public SseEmitter subscribe(Set<Long> aquariumIds) {
+
+        // Subscriptions don't time out
+        SseEmitter emitter = new SseEmitter(0L);
+        DeltaSubscriber subscriber = new DeltaSubscriber(emitter, aquariumIds == null || aquariumIds.isEmpty() ? null : Set.copyOf(aquariumIds));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+
+        // Make sure the views are current, then start from the whole state
+        jsonSnapshots.refreshAquariums();
+        synchronized (this) {
+            List<AquariumDelta> state = new ArrayList<>();
+            for (AquariumDto aquarium : aquariums.values()) {
+                if (subscriber.accepts(aquarium.id())) {
+                    state.add(AquariumDelta.between(null, aquarium));
+                }
+            }
+            subscribers.add(subscriber);
+            offer(subscriber, state);
+        }
+
+        return emitter;
+    }
+
+    @Override
+    public synchronized void allAquariumsRebuilt(Map<Long, AquariumDto> rebuiltAquariums) {
+        if (!subscribers.isEmpty()) {
+            List<AquariumDelta> deltas = new ArrayList<>();
+            for (AquariumDto aquarium : rebuiltAquariums.values()) {
+                AquariumDelta delta = AquariumDelta.between(aquariums.get(aquarium.id()), aquarium);
+                if (delta != null) {
+                    deltas.add(delta);
+                }
+            }
+            for (Long id : aquariums.keySet()) {
+                if (!rebuiltAquariums.containsKey(id)) {
+                    deltas.add(AquariumDelta.deleted(id));
+                }
+            }
+            publish(deltas);
+        }
+        aquariums = rebuiltAquariums;
+    }
+
+    @Override
+    public synchronized void aquariumsRebuilt(Map<Long, AquariumDto> rebuiltAquariums, Set<Long> deletedIds) {
+        List<AquariumDelta> deltas = new ArrayList<>();
+        for (AquariumDto aquarium : rebuiltAquariums.values()) {
+            AquariumDelta delta = AquariumDelta.between(aquariums.get(aquarium.id()), aquarium);
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+        for (Long id : deletedIds) {
+            if (aquariums.containsKey(id)) {
+                deltas.add(AquariumDelta.deleted(id));
+            }
+        }
+
+        Map<Long, AquariumDto> updatedAquariums = new TreeMap<>(aquariums);
+        updatedAquariums.putAll(rebuiltAquariums);
+        deletedIds.forEach(updatedAquariums::remove);
+        aquariums = updatedAquariums;
+
+        publish(deltas);
+    }
+
+    @Override
+    public void aquariumChanged(Long aquariumId) {
+        rebuildAfterWrite();
+    }
+
+    @Override
+    public void fishChanged(Long fishId, Long aquariumId) {
+        if (aquariumId != null) {
+            rebuildAfterWrite();
+        }
+    }
+
+    @Override
+    public void allChanged() {
+        // Ticks rebuild all snapshots when they end
+    }
+
+    /**
+     * Rebuilds the changed aquariums in the background, if anyone is listening.
+     */
+    private void rebuildAfterWrite() {
+        if (subscribers.isEmpty() || !rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            rebuildPending.set(false);
+            jsonSnapshots.refreshAquariums();
+        });
+    }
+
+    private void publish(List<AquariumDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        for (DeltaSubscriber subscriber : subscribers) {
+            offer(subscriber, deltas);
+        }
+    }
+
+    private void offer(DeltaSubscriber subscriber, List<AquariumDelta> deltas) {
+        if (subscriber.offer(deltas)) {
+            sendExecutor.execute(() -> {
+                if (!subscriber.send()) {
+                    unsubscribe(subscriber);
+                }
+            });
+        }
+    }
+
+    private void unsubscribe(DeltaSubscriber subscriber) {
+        subscriber.close();
+        subscribers.remove(subscriber);
+    }
+}
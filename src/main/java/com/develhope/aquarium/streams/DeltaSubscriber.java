@@ -0,0 +1,86 @@
+package com.develhope.aquarium.streams;
+
+import com.develhope.aquarium.dtos.AquariumDelta;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Subscriber of the aquarium delta stream.
+ * Deltas wait in a pending map with at most one delta per aquarium, so while a slow subscriber
+ * is still receiving, newer deltas are merged into the pending ones instead of queueing up.
+ */
+class DeltaSubscriber {
+
+    private final SseEmitter emitter;
+
+    // Null to receive all aquariums
+    private final Set<Long> aquariumIds;
+
+    private final Map<Long, AquariumDelta> pending = new LinkedHashMap<>();
+    private boolean sending;
+    private boolean closed;
+
+    DeltaSubscriber(SseEmitter emitter, Set<Long> aquariumIds) {
+        this.emitter = emitter;
+        this.aquariumIds = aquariumIds;
+    }
+
+    boolean accepts(Long aquariumId) {
+        return aquariumIds == null || aquariumIds.contains(aquariumId);
+    }
+
+    /**
+     * Merges the given deltas into the pending ones, keeping only the accepted aquariums.
+     * @param deltas
+     * @return true if the caller has to start {@link #send()}, as no send is running.
+     */
+    synchronized boolean offer(Collection<AquariumDelta> deltas) {
+        if (closed) {
+            return false;
+        }
+        for (AquariumDelta delta : deltas) {
+            if (accepts(delta.id())) {
+                pending.merge(delta.id(), delta, AquariumDelta::mergedWith);
+            }
+        }
+        if (sending || pending.isEmpty()) {
+            return false;
+        }
+        sending = true;
+        return true;
+    }
+
+    /**
+     * Sends the pending deltas, one event at a time, until there are none left.
+     * @return false if the subscriber is gone.
+     */
+    boolean send() {
+        while (true) {
+            List<AquariumDelta> deltas;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    sending = false;
+                    return true;
+                }
+                deltas = List.copyOf(pending.values());
+                pending.clear();
+            }
+
+            try {
+                emitter.send(SseEmitter.event().name("delta").data(deltas, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                close();
+                return false;
+            }
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        sending = false;
+        pending.clear();
+    }
+}
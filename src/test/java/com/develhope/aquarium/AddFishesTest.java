@@ -0,0 +1,68 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.dtos.FishCreationResult;
+import com.develhope.aquarium.dtos.FishRequest;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.exceptions.AquariumNotFoundException;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.services.AquariumService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false"})
+public class AddFishesTest {
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    // Test requests spanning several batches keep their indexes, missing requests are rejected and capacity is checked across batches
+    @Test
+    public void addsFishesInBatches() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(240L);
+        aquarium = aquariumService.save(aquarium);
+        try {
+            List<FishRequest> fishRequests = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                fishRequests.add(i % 50 == 7 ? null : new FishRequest("Nemo " + i, FishSpecies.GOLDFISH));
+            }
+
+            List<FishCreationResult> results = aquariumService.addFishes(aquarium.getId(), fishRequests);
+
+            assertEquals(250, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i, results.get(i).index());
+            }
+            assertEquals("Fish name and species are required", results.get(107).error());
+            assertNull(results.get(107).fishId());
+
+            // 5 missing requests, so the aquarium gets full at the last 5 fishes
+            assertEquals(240, results.stream().filter(result -> result.fishId() != null).count());
+            assertEquals("Aquarium is full", results.get(249).error());
+            assertEquals(240L, aquariumRepository.findFishCountById(aquarium.getId()).orElseThrow());
+        } finally {
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+
+    // Test an empty request to a missing aquarium is rejected as a non-empty one
+    @Test
+    public void rejectsMissingAquarium() {
+        assertThrows(AquariumNotFoundException.class, () -> aquariumService.addFishes(-1L, Collections.emptyList()));
+        assertThrows(AquariumNotFoundException.class,
+                () -> aquariumService.addFishes(-1L, List.of(new FishRequest("Nemo", FishSpecies.GOLDFISH))));
+    }
+}
@@ -0,0 +1,78 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.dtos.AquariumDelta;
+import com.develhope.aquarium.dtos.AquariumDto;
+import com.develhope.aquarium.dtos.FishDelta;
+import com.develhope.aquarium.dtos.FishDto;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AquariumDeltaTest {
+
+    private static final FishDto NEMO = new FishDto(1L, "Nemo", FishSpecies.GOLDFISH, 20, 100, 3L);
+    private static final FishDto DORY = new FishDto(2L, "Dory", FishSpecies.GOLDFISH, 50, 80, 5L);
+
+    // Test a new aquarium has all its fields and fishes in the delta
+    @Test
+    public void betweenNewAquarium() {
+        AquariumDto after = new AquariumDto(7L, 10L, 100, 25, List.of(NEMO));
+
+        AquariumDelta delta = AquariumDelta.between(null, after);
+
+        assertEquals(new AquariumDelta(7L, 10L, 100, 25,
+                List.of(new FishDelta(1L, "Nemo", FishSpecies.GOLDFISH, 20, 100, 3L)), List.of(), null), delta);
+    }
+
+    // Test only changed fields, changed and new fishes and removed fish ids are in the delta
+    @Test
+    public void betweenChangedAquarium() {
+        FishDto nemo = new FishDto(3L, "Nemo", FishSpecies.GOLDFISH, 0, 100, 0L);
+        AquariumDto before = new AquariumDto(7L, 10L, 100, 25, List.of(NEMO, DORY));
+        AquariumDto after = new AquariumDto(7L, 10L, 99, 25, List.of(
+                new FishDto(1L, "Nemo", FishSpecies.GOLDFISH, 21, 100, 3L), nemo));
+
+        AquariumDelta delta = AquariumDelta.between(before, after);
+
+        assertEquals(new AquariumDelta(7L, null, 99, null, List.of(
+                new FishDelta(1L, null, null, 21, null, null),
+                new FishDelta(3L, "Nemo", FishSpecies.GOLDFISH, 0, 100, 0L)), List.of(2L), null), delta);
+    }
+
+    // Test unchanged views have no delta
+    @Test
+    public void betweenUnchangedAquarium() {
+        AquariumDto before = new AquariumDto(7L, 10L, 100, 25, List.of(NEMO, DORY));
+
+        assertNull(AquariumDelta.between(before, new AquariumDto(7L, 10L, 100, 25, List.of(NEMO, DORY))));
+    }
+
+    // Test the newer fields win, fish deltas are merged by id and removed fishes leave the merged fishes
+    @Test
+    public void mergedWith() {
+        AquariumDelta older = new AquariumDelta(7L, null, 99, 24, List.of(
+                new FishDelta(1L, null, null, 21, 99, null),
+                new FishDelta(2L, null, null, 51, null, null)), List.of(4L), null);
+        AquariumDelta newer = new AquariumDelta(7L, null, 98, null, List.of(
+                new FishDelta(1L, null, null, 22, null, null),
+                new FishDelta(3L, "Nemo", FishSpecies.GOLDFISH, 0, 100, 0L)), List.of(2L), null);
+
+        AquariumDelta merged = older.mergedWith(newer);
+
+        assertEquals(new AquariumDelta(7L, null, 98, 24, List.of(
+                new FishDelta(1L, null, null, 22, 99, null),
+                new FishDelta(3L, "Nemo", FishSpecies.GOLDFISH, 0, 100, 0L)), List.of(2L, 4L), null), merged);
+    }
+
+    // Test a deletion replaces the older changes, and changes after a deletion replace it
+    @Test
+    public void mergedWithDeletion() {
+        AquariumDelta changed = new AquariumDelta(7L, null, 99, null, List.of(), List.of(), null);
+
+        assertEquals(AquariumDelta.deleted(7L), changed.mergedWith(AquariumDelta.deleted(7L)));
+        assertEquals(changed, AquariumDelta.deleted(7L).mergedWith(changed));
+    }
+}
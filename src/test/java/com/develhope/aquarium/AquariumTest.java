@@ -1,9 +1,17 @@
 package com.develhope.aquarium;
 
+import com.develhope.aquarium.dtos.AquariumDelta;
+import com.develhope.aquarium.dtos.AquariumDto;
+import com.develhope.aquarium.dtos.AquariumSummary;
+import com.develhope.aquarium.dtos.FeedRequest;
+import com.develhope.aquarium.dtos.FishCreationResult;
+import com.develhope.aquarium.dtos.FishRequest;
+import com.develhope.aquarium.dtos.KeysetPage;
 import com.develhope.aquarium.entities.Aquarium;
 import com.develhope.aquarium.entities.Fish;
 import com.develhope.aquarium.enumerations.FishSpecies;
 import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.streams.AquariumDeltaPublisher;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,9 +21,15 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
@@ -33,6 +47,9 @@ public class AquariumTest {
     @MockitoBean
     private AquariumService aquariumService;
 
+    @MockitoBean
+    private AquariumDeltaPublisher aquariumDeltaPublisher;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -77,10 +94,58 @@ public class AquariumTest {
 
     }
 
+    // Test GET request to find a page of aquariums after a given id
+    @Test
+    public void findPage() throws Exception {
+        when(aquariumService.findPage(0L, 10)).thenReturn(new KeysetPage<>(List.of(aquarium), aquarium.getId()));
+
+        mockMvc.perform(get("/aquariums/find-all")
+                        .param("after", "0")
+                        .param("limit", "10"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-After", aquarium.getId().toString()))
+                .andExpect(jsonPath("$[0].id").value(aquarium.getId()));
+    }
+
+    // Test GET request to stream the deltas of an aquarium as server-sent events
+    @Test
+    public void stream() throws Exception {
+        SseEmitter emitter = new SseEmitter(0L);
+        when(aquariumDeltaPublisher.subscribe(Set.of(aquarium.getId()))).thenReturn(emitter);
+
+        MvcResult result = mockMvc.perform(get("/aquariums/stream")
+                        .param("ids", aquarium.getId().toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        AquariumDelta delta = AquariumDelta.between(null, AquariumDto.from(aquarium));
+        emitter.send(SseEmitter.event().name("delta").data(List.of(delta), MediaType.APPLICATION_JSON));
+        emitter.complete();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("event:delta\ndata:" + objectMapper.writeValueAsString(List.of(delta)) + "\n\n"));
+    }
+
+    // Test GET request to summarize all aquariums
+    @Test
+    public void findAllSummaries() throws Exception {
+        AquariumSummary summary = new AquariumSummary(aquarium.getId(), aquarium.getCapacity(), aquarium.getClearness(), aquarium.getTemperature(), 1L);
+        when(aquariumService.findAllSummaries()).thenReturn(Collections.singletonList(summary));
+
+        mockMvc.perform(get("/aquariums/summary"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(aquarium.getId()))
+                .andExpect(jsonPath("$[0].fishCount").value(1));
+    }
+
     // Test GET request to find an ability by id
     @Test
     public void findById() throws Exception {
-        when(aquariumService.findById(anyLong())).thenReturn(Optional.of(aquarium));
+        when(aquariumService.findById(anyLong())).thenReturn(Optional.of(AquariumDto.from(aquarium)));
 
         mockMvc.perform(get("/aquariums/find-by-id/" + aquarium.getId()))
                 .andDo(print())
@@ -88,6 +153,23 @@ public class AquariumTest {
                 .andExpect(jsonPath("$.id").value(aquarium.getId()));
     }
 
+    // Test GET request to find an aquarium by id which didn't change since the last request
+    @Test
+    public void findByIdNotModified() throws Exception {
+        when(aquariumService.findById(anyLong())).thenReturn(Optional.of(AquariumDto.from(aquarium)));
+
+        String etag = mockMvc.perform(get("/aquariums/find-by-id/" + aquarium.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/aquariums/find-by-id/" + aquarium.getId())
+                        .header("If-None-Match", etag))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
     // Test PUT request to update an aquarium
     @Test
     public void update() throws Exception {
@@ -123,6 +205,62 @@ public class AquariumTest {
                 .andExpect(jsonPath("$.name").value(fish.getName()));
     }
 
+    // Test POST request to create and add many fishes to aquarium
+    @Test
+    public void addFishes() throws Exception {
+        List<FishRequest> fishRequests = List.of(new FishRequest(fish.getName(), fish.getSpecies()), new FishRequest(fish.getName(), null));
+        when(aquariumService.addFishes(anyLong(), anyList()))
+                .thenReturn(List.of(FishCreationResult.created(0, fish.getId()), FishCreationResult.rejected(1, "Fish name and species are required")));
+
+        mockMvc.perform(post("/aquariums/" + aquarium.getId() + "/add-fishes")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(fishRequests)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].fishId").value(fish.getId()))
+                .andExpect(jsonPath("$[1].error").exists());
+    }
+
+    // Test POST request to add fishes read from an NDJSON stream, a null line included
+    @Test
+    public void addFishesFromStream() throws Exception {
+        when(aquariumService.addFishes(anyLong(), any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<FishRequest> fishRequests = invocation.getArgument(1);
+            List<FishCreationResult> results = new ArrayList<>();
+            while (fishRequests.hasNext()) {
+                FishRequest fishRequest = fishRequests.next();
+                results.add(fishRequest == null
+                        ? FishCreationResult.rejected(results.size(), "Fish name and species are required")
+                        : FishCreationResult.created(results.size(), fish.getId()));
+            }
+            return results;
+        });
+
+        String content = objectMapper.writeValueAsString(new FishRequest(fish.getName(), fish.getSpecies())) + "\nnull\n";
+        mockMvc.perform(post("/aquariums/" + aquarium.getId() + "/add-fishes")
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .content(content))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].fishId").value(fish.getId()))
+                .andExpect(jsonPath("$[1].error").exists());
+    }
+
+    // Test PUT request to feed the fishes of many aquariums
+    @Test
+    public void feedManyAquariums() throws Exception {
+        List<FeedRequest> feedRequests = List.of(new FeedRequest(aquarium.getId(), 20));
+        AquariumSummary summary = new AquariumSummary(aquarium.getId(), aquarium.getCapacity(), aquarium.getClearness(), aquarium.getTemperature(), 1L);
+        when(aquariumService.feedFishes(anyList())).thenReturn(List.of(summary));
+
+        mockMvc.perform(put("/aquariums/feed-fishes")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(feedRequests)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(aquarium.getId()));
+    }
+
     // Test PUT request to clean the aquarium
     @Test
     public void clean() throws Exception {
@@ -0,0 +1,120 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.services.AquariumService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.mode=entity",
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false"})
+public class BulkTickTest {
+
+    // Ids far from the ones generated by the other tests
+    private static final long FIRST_AQUARIUM_ID = 990_001;
+    private static final long FIRST_FISH_ID = 99_000_001;
+
+    // Around the clearness and hunger thresholds, and health about to reach 0
+    private static final int[] CLEARNESS = {0, Aquarium.LOW_CLEARNESS, Aquarium.LOW_CLEARNESS + 1, Aquarium.LOW_CLEARNESS + 2, 100};
+    private static final int[] HUNGERS = {0, Fish.LOW_HUNGER - 1, Fish.LOW_HUNGER, Fish.LOW_HUNGER + 1,
+            Fish.HIGH_HUNGER - 1, Fish.HIGH_HUNGER, Fish.HIGH_HUNGER + 1, 99, 100};
+    private static final int[] HEALTHS = {1, 2, 100};
+
+    // Ticks of every run, coalesced ticks included
+    private static final long[] TICKS = {1, 1, 3};
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Test BULK ticks leave every aquarium and fish row as ENTITY ticks do, dead fishes included
+    @Test
+    public void bulkMatchesEntity() {
+        TickMode mode = tickProperties.getMode();
+        try {
+            List<List<Map<String, Object>>> entityRows = tickWorld(TickMode.ENTITY);
+            List<List<Map<String, Object>>> bulkRows = tickWorld(TickMode.BULK);
+
+            for (int i = 0; i < TICKS.length; i++) {
+                assertEquals(entityRows.get(2 * i), bulkRows.get(2 * i), "aquariums after run " + i);
+                assertEquals(entityRows.get(2 * i + 1), bulkRows.get(2 * i + 1), "fishes after run " + i);
+            }
+
+            // Some fishes died, so the deletions were compared too
+            assertTrue(entityRows.getLast().size() < CLEARNESS.length * HUNGERS.length * HEALTHS.length);
+        } finally {
+            tickProperties.setMode(mode);
+            deleteWorld();
+        }
+    }
+
+    /**
+     * Inserts the world, and runs the stats ticks on it in the given mode.
+     * @param mode
+     * @return the aquarium and fish rows after every run, one after the other.
+     */
+    private List<List<Map<String, Object>>> tickWorld(TickMode mode) {
+        deleteWorld();
+        insertWorld();
+        tickProperties.setMode(mode);
+
+        List<List<Map<String, Object>>> rows = new ArrayList<>();
+        for (long ticks : TICKS) {
+            aquariumService.updateStats(ticks);
+            rows.add(jdbcTemplate.queryForList("""
+                    SELECT id, capacity, clearness, temperature, fish_count FROM aquariums
+                    WHERE id >= ? ORDER BY id""", FIRST_AQUARIUM_ID));
+            rows.add(jdbcTemplate.queryForList("""
+                    SELECT id, name, species, hunger, health, age, aquarium_id FROM fishes
+                    WHERE id >= ? ORDER BY id""", FIRST_FISH_ID));
+        }
+        return rows;
+    }
+
+    /**
+     * Inserts an aquarium for every clearness, plus an empty one,
+     * with a fish for every combination of hunger and health.
+     */
+    private void insertWorld() {
+        int fishesPerAquarium = HUNGERS.length * HEALTHS.length;
+        long fishId = FIRST_FISH_ID;
+        for (int a = 0; a < CLEARNESS.length; a++) {
+            long aquariumId = FIRST_AQUARIUM_ID + a;
+            jdbcTemplate.update("INSERT INTO aquariums (id, capacity, clearness, temperature, fish_count) VALUES (?, ?, ?, ?, ?)",
+                    aquariumId, fishesPerAquarium, CLEARNESS[a], 25, fishesPerAquarium);
+            for (int hunger : HUNGERS) {
+                for (int health : HEALTHS) {
+                    jdbcTemplate.update("""
+                            INSERT INTO fishes (id, name, species, hunger, health, age, aquarium_id) VALUES (?, ?, ?, ?, ?, ?, ?)""",
+                            fishId, "Fish " + fishId, FishSpecies.GOLDFISH.name(), hunger, health, 10, aquariumId);
+                    fishId++;
+                }
+            }
+        }
+        jdbcTemplate.update("INSERT INTO aquariums (id, capacity, clearness, temperature, fish_count) VALUES (?, ?, ?, ?, ?)",
+                FIRST_AQUARIUM_ID + CLEARNESS.length, 10, 50, 25, 0);
+    }
+
+    private void deleteWorld() {
+        jdbcTemplate.update("DELETE FROM fishes WHERE id >= ?", FIRST_FISH_ID);
+        jdbcTemplate.update("DELETE FROM aquariums WHERE id >= ?", FIRST_AQUARIUM_ID);
+    }
+}
@@ -0,0 +1,43 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.dtos.CacheStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+public class CacheTest {
+
+    @MockitoBean
+    private EntityCache entityCache;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Test GET request to find the statistics of the caches
+    @Test
+    public void statistics() throws Exception {
+        when(entityCache.statistics()).thenReturn(List.of(
+                new CacheStatistics("aquariums", 3L, 1L, 0L, 1L),
+                new CacheStatistics("fishes", 0L, 2L, 0L, 2L)));
+
+        mockMvc.perform(get("/caches/statistics"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("aquariums"))
+                .andExpect(jsonPath("$[0].hits").value(3))
+                .andExpect(jsonPath("$[1].misses").value(2));
+    }
+}
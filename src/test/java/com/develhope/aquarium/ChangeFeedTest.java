@@ -0,0 +1,121 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.changes.ChangeVersions;
+import com.develhope.aquarium.configurations.ChangeFeedProperties;
+import com.develhope.aquarium.dtos.ChangeFeed;
+import com.develhope.aquarium.dtos.DeletionChange;
+import com.develhope.aquarium.dtos.FishRequest;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.enumerations.ChangeEntityType;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.exceptions.ChangesPrunedException;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.TombstoneRepository;
+import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.services.ChangeFeedService;
+import com.develhope.aquarium.services.FishService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.mode=entity",
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false"})
+public class ChangeFeedTest {
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private ChangeFeedProperties changeFeedProperties;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private FishService fishService;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Test rows written by a running transaction stay above the watermark, and are read once it commits
+    @Test
+    public void readsUpToWatermark() {
+        long before = changeVersions.watermark();
+        AtomicLong version = new AtomicLong();
+        AtomicLong aquariumId = new AtomicLong();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Aquarium aquarium = new Aquarium();
+            aquarium.setCapacity(10L);
+            aquariumId.set(aquariumRepository.save(aquarium).getId());
+            version.set(changeVersions.currentVersion());
+
+            assertTrue(version.get() > before);
+            assertTrue(changeVersions.watermark() < version.get());
+            assertTrue(changeFeedService.findChangesSince(before).aquariums().stream()
+                    .noneMatch(change -> change.id() == aquariumId.get()));
+        });
+        try {
+            assertTrue(changeVersions.watermark() >= version.get());
+            ChangeFeed changes = changeFeedService.findChangesSince(before);
+            assertTrue(changes.until() >= version.get());
+            assertTrue(changes.aquariums().stream()
+                    .anyMatch(change -> change.id() == aquariumId.get() && change.version() == version.get()));
+        } finally {
+            aquariumService.delete(aquariumId.get());
+        }
+    }
+
+    // Test a deleted fish leaves a tombstone in the feed, until it's older than the oldest retained version and pruned
+    @Test
+    public void prunesOldTombstones() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(10L);
+        aquarium = aquariumService.save(aquarium);
+        Long retainedVersions = changeFeedProperties.getRetainedVersions();
+        try {
+            Long fishId = aquariumService.addFishes(aquarium.getId(), List.of(new FishRequest("Nemo", FishSpecies.GOLDFISH)))
+                    .get(0).fishId();
+            long before = changeVersions.watermark();
+
+            fishService.deleteById(fishId);
+
+            ChangeFeed changes = changeFeedService.findChangesSince(before);
+            assertEquals(1, changes.deletions().size());
+            DeletionChange deletion = changes.deletions().get(0);
+            assertEquals(ChangeEntityType.FISH, deletion.type());
+            assertEquals(fishId, deletion.id());
+
+            // Nothing below the watermark is retained any more
+            changeFeedProperties.setRetainedVersions(0L);
+            long until = changeVersions.watermark();
+            assertEquals(until, changeFeedService.oldestRetainedVersion());
+
+            assertTrue(changeFeedService.pruneTombstones() >= 1);
+            assertTrue(tombstoneRepository.findChangesBetween(before, until).isEmpty());
+            assertThrows(ChangesPrunedException.class, () -> changeFeedService.findChangesSince(before));
+            assertTrue(changeFeedService.findChangesSince(until).deletions().isEmpty());
+        } finally {
+            changeFeedProperties.setRetainedVersions(retainedVersions);
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.dtos.AquariumChange;
+import com.develhope.aquarium.dtos.ChangeFeed;
+import com.develhope.aquarium.dtos.DeletionChange;
+import com.develhope.aquarium.enumerations.ChangeEntityType;
+import com.develhope.aquarium.services.ChangeFeedService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+public class ChangeTest {
+
+    @MockitoBean
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Test GET request to find the changes after a version
+    @Test
+    public void findChanges() throws Exception {
+        when(changeFeedService.findChangesSince(5L)).thenReturn(new ChangeFeed(5L, 8L,
+                List.of(new AquariumChange(1L, 10L, 70, 25, 7L)),
+                List.of(),
+                List.of(new DeletionChange(ChangeEntityType.FISH, 3L, 8L))));
+
+        mockMvc.perform(get("/changes").param("since", "5"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.until").value(8))
+                .andExpect(jsonPath("$.aquariums[0].clearness").value(70))
+                .andExpect(jsonPath("$.deletions[0].type").value("FISH"));
+    }
+}
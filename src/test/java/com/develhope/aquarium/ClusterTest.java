@@ -0,0 +1,123 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.cluster.PartitionLeases;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.TickLease;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.ClusterNodeRepository;
+import com.develhope.aquarium.repositories.TickLeaseRepository;
+import com.develhope.aquarium.services.AquariumService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts two nodes of the application on the test database, as two instances behind a load balancer would.
+ */
+public class ClusterTest {
+
+    // Test leases are split between the nodes, each tick runs once per aquarium, and a leaving node's partitions move
+    @Test
+    public void splitsTicksAmongNodes() {
+        ConfigurableApplicationContext nodeA = startNode("node-a");
+        ConfigurableApplicationContext nodeB = null;
+        AquariumRepository aquariumRepository = nodeA.getBean(AquariumRepository.class);
+        TickLeaseRepository tickLeaseRepository = nodeA.getBean(TickLeaseRepository.class);
+        List<Long> ids = new ArrayList<>();
+        try {
+
+            // Forget the nodes of earlier runs
+            tickLeaseRepository.deleteAll();
+            nodeA.getBean(ClusterNodeRepository.class).deleteAll();
+
+            for (int i = 0; i < 8; i++) {
+                Aquarium aquarium = new Aquarium();
+                aquarium.setCapacity(10L);
+                ids.add(aquariumRepository.save(aquarium).getId());
+            }
+
+            // Alone, node A holds every partition
+            PartitionLeases leasesA = nodeA.getBean(PartitionLeases.class);
+            leasesA.heartbeat();
+            Set<Long> partitions = tickLeaseRepository.findAllOrdered().stream()
+                    .map(TickLease::getPartitionNumber).collect(Collectors.toSet());
+            assertEquals(partitions, leasesA.getOwnedPartitions());
+
+            // Node A gives back half of the partitions, which node B claims
+            nodeB = startNode("node-b");
+            PartitionLeases leasesB = nodeB.getBean(PartitionLeases.class);
+            leasesA.heartbeat();
+            leasesB.heartbeat();
+            leasesA.heartbeat();
+
+            assertTrue(Collections.disjoint(leasesA.getOwnedPartitions(), leasesB.getOwnedPartitions()));
+            Set<Long> owned = new HashSet<>(leasesA.getOwnedPartitions());
+            owned.addAll(leasesB.getOwnedPartitions());
+            assertEquals(partitions, owned);
+            assertTrue(Math.abs(leasesA.getOwnedPartitions().size() - leasesB.getOwnedPartitions().size()) <= 1);
+
+            // Both nodes tick, every aquarium is dirtied once
+            nodeA.getBean(AquariumService.class).updateStats(1);
+            nodeB.getBean(AquariumService.class).updateStats(1);
+            for (Aquarium aquarium : aquariumRepository.findAllById(ids)) {
+                assertEquals(99, aquarium.getClearness());
+            }
+
+            // Node B leaves, node A takes its partitions back
+            nodeB.close();
+            leasesA.heartbeat();
+            assertEquals(partitions, leasesA.getOwnedPartitions());
+        } finally {
+            aquariumRepository.deleteAllById(ids);
+            if (nodeB != null) {
+                nodeB.close();
+            }
+            nodeA.close();
+        }
+    }
+
+    // Test nodes refuse to start in the tick modes keeping state in the node
+    @Test
+    public void refusesEngineAndLazyModes() {
+        for (String mode : List.of("engine", "lazy")) {
+            Exception exception = assertThrows(Exception.class, () -> startNode("node-" + mode, "aquarium.tick.mode=" + mode));
+            Throwable cause = exception;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertInstanceOf(IllegalStateException.class, cause);
+            assertTrue(cause.getMessage().contains(mode.toUpperCase()));
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, String... properties) {
+        List<String> arguments = new ArrayList<>(List.of(
+                // Nodes share the schema, none of them drops it on shutdown
+                "spring.jpa.hibernate.ddl-auto=update",
+                "spring.jpa.show-sql=false",
+                "aquarium.tick.scheduled=false",
+                "aquarium.snapshot.enabled=false",
+                "aquarium.cluster.enabled=true",
+                "aquarium.cluster.node-id=" + nodeId,
+                "aquarium.cluster.lease-duration=1m",
+                // The test runs the heartbeats itself
+                "aquarium.cluster.heartbeat-period=1h",
+                "aquarium.cluster.partition-width=2"));
+        arguments.addAll(List.of(properties));
+
+        // Passed as command line arguments, which take precedence over application.yml
+        return new SpringApplicationBuilder(AquariumApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.stream().map(argument -> "--" + argument).toArray(String[]::new));
+    }
+}
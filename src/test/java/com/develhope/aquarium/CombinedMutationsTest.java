@@ -0,0 +1,119 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.dtos.FishRequest;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.services.AquariumService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.mode=entity",
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false",
+        "aquarium.mailbox.combine-window=200ms"})
+public class CombinedMutationsTest {
+
+    // Every fish is fed the same food, so the hungers of 0 waste it and dirty the aquarium
+    private static final int[] HUNGERS = {0, 30, 70, 100};
+
+    // Food quantities of the feedings, null for the cleanings
+    private static final Integer[] MUTATIONS = {20, 50, null, 30, 90, null, 10};
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Test a burst of feedings and cleanings gives every caller and the database the same results as the same calls made one at a time
+    @Test
+    public void burstMatchesSequentialCalls() {
+        Long sequentialId = createAquarium();
+        Long burstId = createAquarium();
+        try {
+            List<Aquarium> sequentialViews = new ArrayList<>();
+            for (Integer foodQuantity : MUTATIONS) {
+                sequentialViews.add(foodQuantity == null
+                        ? aquariumService.clean(sequentialId)
+                        : aquariumService.feedFishes(sequentialId, foodQuantity));
+            }
+
+            // Queued within the combine window, so they're written together
+            List<CompletableFuture<Aquarium>> burst = new ArrayList<>();
+            for (Integer foodQuantity : MUTATIONS) {
+                burst.add(foodQuantity == null
+                        ? aquariumService.cleanAsync(burstId)
+                        : aquariumService.feedFishesAsync(burstId, foodQuantity));
+            }
+            List<Aquarium> burstViews = burst.stream().map(CompletableFuture::join).toList();
+
+            for (int i = 0; i < MUTATIONS.length; i++) {
+                assertEquals(sequentialViews.get(i).getClearness(), burstViews.get(i).getClearness(), "clearness after call " + i);
+                assertEquals(hungers(sequentialViews.get(i).getFishes()), hungers(burstViews.get(i).getFishes()), "hungers after call " + i);
+            }
+            assertEquals(aquariumRepository.findById(sequentialId).orElseThrow().getClearness(),
+                    aquariumRepository.findById(burstId).orElseThrow().getClearness());
+            assertEquals(hungers(fishRepository.findByAquariumId(sequentialId)), hungers(fishRepository.findByAquariumId(burstId)));
+        } finally {
+            aquariumService.delete(sequentialId);
+            aquariumService.delete(burstId);
+        }
+    }
+
+    /**
+     * Creates a dirty aquarium with a fish for each hunger of HUNGERS.
+     * @return the id of the aquarium.
+     */
+    private Long createAquarium() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity((long) HUNGERS.length);
+        aquarium.setClearness(60);
+        Long aquariumId = aquariumService.save(aquarium).getId();
+
+        List<FishRequest> fishRequests = new ArrayList<>();
+        for (int i = 0; i < HUNGERS.length; i++) {
+            fishRequests.add(new FishRequest("Nemo " + i, FishSpecies.GOLDFISH));
+        }
+        aquariumService.addFishes(aquariumId, fishRequests);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Fish> fishes = sorted(fishRepository.findByAquariumId(aquariumId));
+            for (int i = 0; i < fishes.size(); i++) {
+                fishes.get(i).setHunger(HUNGERS[i]);
+            }
+        });
+        return aquariumId;
+    }
+
+    /**
+     * @param fishes
+     * @return the hungers of the given fishes, in ascending order of id.
+     */
+    private static List<Integer> hungers(List<Fish> fishes) {
+        return sorted(fishes).stream().map(Fish::getHunger).toList();
+    }
+
+    private static List<Fish> sorted(List<Fish> fishes) {
+        return fishes.stream().sorted(Comparator.comparing(Fish::getId)).toList();
+    }
+}
@@ -0,0 +1,77 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.dtos.FeedRequest;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.metrics.TickCounts;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.mode=engine",
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false"})
+public class EngineFeedTest {
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    // Test a multi-feed failing on its second aquarium leaves the engine and the database in sync, ticks included
+    @Test
+    public void failingMultiFeedKeepsEngineInSync() {
+        Aquarium fed = new Aquarium();
+        fed.setCapacity(10L);
+        fed = aquariumService.save(fed);
+        Fish fish = aquariumService.addFish(fed.getId(), "Nemo", FishSpecies.GOLDFISH);
+
+        // Feeding an aquarium without capacity fails
+        Aquarium failing = aquariumService.save(new Aquarium());
+        Fish failingFish = new Fish("Dory", FishSpecies.GOLDFISH);
+        failingFish.setAquarium(failing);
+        fishRepository.save(failingFish);
+        simulationEngine.reloadAquarium(failing.getId());
+
+        try {
+            // Pending tick changes, written behind
+            simulationEngine.updateStats(1, new TickCounts());
+
+            List<FeedRequest> feedRequests = List.of(new FeedRequest(fed.getId(), 50), new FeedRequest(failing.getId(), 50));
+            assertThrows(NullPointerException.class, () -> aquariumService.feedFishes(feedRequests));
+
+            // The tick was committed before the feed, which was rolled back
+            assertEquals(99, aquariumRepository.findById(fed.getId()).orElseThrow().getClearness());
+            assertEquals(1, fishRepository.findById(fish.getId()).orElseThrow().getHunger());
+
+            Aquarium engineAquarium = simulationEngine.findAquariumById(fed.getId()).orElseThrow();
+            assertEquals(99, engineAquarium.getClearness());
+            assertEquals(1, engineAquarium.getFishes().getFirst().getHunger());
+
+            // Nothing is left to flush over the database
+            simulationEngine.flush();
+            assertEquals(99, aquariumRepository.findById(fed.getId()).orElseThrow().getClearness());
+            assertEquals(1, fishRepository.findById(fish.getId()).orElseThrow().getHunger());
+        } finally {
+            aquariumService.delete(fed.getId());
+            aquariumService.delete(failing.getId());
+        }
+    }
+}
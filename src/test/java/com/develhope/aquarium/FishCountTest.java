@@ -0,0 +1,122 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.exceptions.AquariumCapacityExceededException;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.services.FishService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.mode=entity",
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false"})
+public class FishCountTest {
+
+    private static final int ADDS = 8;
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private FishService fishService;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    // Test concurrent adds to an aquarium with one free place add exactly one fish, and the fish count stays exact
+    @Test
+    public void concurrentAddsFillLastPlaceOnce() throws Exception {
+        Long aquariumId = createAquarium(2L);
+        try {
+            aquariumService.addFish(aquariumId, "Nemo", FishSpecies.GOLDFISH);
+
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(ADDS);
+            List<Future<Fish>> adds = new ArrayList<>();
+            try {
+                for (int i = 0; i < ADDS; i++) {
+                    String name = "Dory " + i;
+                    adds.add(executor.submit(() -> {
+                        start.await();
+                        return aquariumService.addFish(aquariumId, name, FishSpecies.GOLDFISH);
+                    }));
+                }
+                start.countDown();
+
+                int added = 0;
+                for (Future<Fish> add : adds) {
+                    try {
+                        add.get(30, TimeUnit.SECONDS);
+                        added++;
+                    } catch (ExecutionException e) {
+                        assertInstanceOf(AquariumCapacityExceededException.class, e.getCause());
+                    }
+                }
+                assertEquals(1, added);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals(2, fishRepository.findByAquariumId(aquariumId).size());
+            assertEquals(2L, aquariumRepository.findFishCountById(aquariumId).orElseThrow());
+        } finally {
+            aquariumService.delete(aquariumId);
+        }
+    }
+
+    // Test a fish saved into another aquarium, or out of any, gives its place back to the one it left
+    @Test
+    public void savedFishMovesItsPlace() {
+        Long fromId = createAquarium(2L);
+        Long toId = createAquarium(1L);
+        try {
+            Long fishId = aquariumService.addFish(fromId, "Nemo", FishSpecies.GOLDFISH).getId();
+
+            Fish fish = fishRepository.findById(fishId).orElseThrow();
+            fish.setAquarium(aquariumRepository.findById(toId).orElseThrow());
+            fishService.save(fish);
+
+            assertEquals(0L, aquariumRepository.findFishCountById(fromId).orElseThrow());
+            assertEquals(1L, aquariumRepository.findFishCountById(toId).orElseThrow());
+
+            // The other aquarium is full now
+            Fish otherFish = fishRepository.findById(aquariumService.addFish(fromId, "Dory", FishSpecies.GOLDFISH).getId()).orElseThrow();
+            otherFish.setAquarium(aquariumRepository.findById(toId).orElseThrow());
+            assertThrows(AquariumCapacityExceededException.class, () -> fishService.save(otherFish));
+            assertEquals(1L, aquariumRepository.findFishCountById(fromId).orElseThrow());
+            assertEquals(fromId, fishRepository.findAquariumIdById(otherFish.getId()).orElseThrow());
+
+            // Saved as the REST API does, without an aquarium
+            Fish savedFish = fishRepository.findById(fishId).orElseThrow();
+            savedFish.setAquarium(null);
+            fishService.save(savedFish);
+
+            assertEquals(0L, aquariumRepository.findFishCountById(toId).orElseThrow());
+            fishService.deleteById(fishId);
+        } finally {
+            aquariumService.delete(fromId);
+            aquariumService.delete(toId);
+        }
+    }
+
+    private Long createAquarium(Long capacity) {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(capacity);
+        return aquariumService.save(aquarium).getId();
+    }
+}
@@ -1,5 +1,6 @@
 package com.develhope.aquarium;
 
+import com.develhope.aquarium.dtos.FishDto;
 import com.develhope.aquarium.entities.Fish;
 import com.develhope.aquarium.enumerations.FishSpecies;
 import com.develhope.aquarium.services.AquariumService;
@@ -13,11 +14,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Collections;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -70,10 +74,31 @@ public class FishTest {
 
     }
 
+    // Test GET request to stream all fishes as newline delimited JSON
+    @Test
+    public void streamAll() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Fish> consumer = invocation.getArgument(0);
+            consumer.accept(fish);
+            consumer.accept(fish);
+            return null;
+        }).when(fishService).streamAll(any());
+
+        MvcResult result = mockMvc.perform(get("/fishes/find-all/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(objectMapper.writeValueAsString(fish) + "\n" + objectMapper.writeValueAsString(fish) + "\n"));
+    }
+
     // Test GET request to find a fish by id
     @Test
     public void findById() throws Exception {
-        when(fishService.findById(anyLong())).thenReturn(Optional.of(fish));
+        when(fishService.findById(anyLong())).thenReturn(Optional.of(FishDto.from(fish)));
 
         mockMvc.perform(get("/fishes/find-by-id/" + fish.getId()))
                 .andDo(print())
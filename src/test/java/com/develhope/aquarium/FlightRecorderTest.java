@@ -0,0 +1,67 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.exceptions.AquariumNotFoundException;
+import com.develhope.aquarium.jfr.AquariumOperationEvent;
+import com.develhope.aquarium.jfr.TickPhaseEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FlightRecorderTest {
+
+    // Ids no other test or background task uses, as the recording also gets their events
+    private static final long FROM_AQUARIUM_ID = 987_001;
+    private static final long TO_AQUARIUM_ID = 988_000;
+    private static final long AQUARIUM_ID = 987_005;
+
+    // Test tick phase and operation events are recorded with their fields
+    @Test
+    public void recordsEvents() throws Exception {
+        Path file = Files.createTempFile("aquarium", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TickPhaseEvent.class);
+            recording.enable(AquariumOperationEvent.class);
+            recording.start();
+
+            TickPhaseEvent.begin(TickMode.BULK, TickPhaseEvent.DELETE, FROM_AQUARIUM_ID, TO_AQUARIUM_ID).complete(7);
+
+            AquariumOperationEvent operation = AquariumOperationEvent.begin(AquariumOperationEvent.CLEAN, AQUARIUM_ID);
+            operation.setException(new AquariumNotFoundException("Aquarium with id " + AQUARIUM_ID + " not found"));
+            operation.commit();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        List<RecordedEvent> phases = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.develhope.aquarium.TickPhase"))
+                .filter(event -> event.getLong("fromAquariumId") == FROM_AQUARIUM_ID)
+                .toList();
+        assertEquals(1, phases.size());
+        RecordedEvent phase = phases.get(0);
+        assertEquals("BULK", phase.getString("mode"));
+        assertEquals("DELETE", phase.getString("phase"));
+        assertEquals(TO_AQUARIUM_ID, phase.getLong("toAquariumId"));
+        assertEquals(7, phase.getLong("rowCount"));
+
+        List<RecordedEvent> operations = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.develhope.aquarium.AquariumOperation"))
+                .filter(event -> event.getLong("aquariumId") == AQUARIUM_ID)
+                .toList();
+        assertEquals(1, operations.size());
+        RecordedEvent operation = operations.get(0);
+        assertEquals("clean", operation.getString("operation"));
+        assertEquals("AquariumNotFoundException", operation.getString("exception"));
+    }
+}
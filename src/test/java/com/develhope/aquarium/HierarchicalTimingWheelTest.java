@@ -0,0 +1,50 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.simulation.HierarchicalTimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HierarchicalTimingWheelTest {
+
+    // Test that every item fires exactly in its due tick, across all levels of the wheel
+    @Test
+    public void firesItemsInTheirDueTick() {
+        Random random = new Random(42);
+        long start = 1000;
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(start);
+
+        for (int i = 0; i < 2000; i++) {
+            long dueTick = start + 1 + (long) (Math.pow(random.nextDouble(), 4) * 300_000);
+            wheel.schedule(dueTick, dueTick);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long tick = start + 1; tick <= start + 300_001; tick++) {
+            long currentTick = tick;
+            wheel.advanceTo(tick, dueTick -> {
+                assertEquals(currentTick, dueTick);
+                fired.add(dueTick);
+            });
+        }
+
+        assertEquals(2000, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    // Test that items due in the past fire in the next tick
+    @Test
+    public void firesPastItemsInTheNextTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10);
+        wheel.schedule("late", 5);
+
+        List<String> fired = new ArrayList<>();
+        wheel.advanceTo(11, fired::add);
+
+        assertEquals(List.of("late"), fired);
+    }
+}
@@ -0,0 +1,267 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.configurations.MailboxProperties;
+import com.develhope.aquarium.configurations.RetryProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.mailboxes.AquariumMailboxes;
+import com.develhope.aquarium.retries.OptimisticRetry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.getField;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+public class MailboxTest {
+
+    private AquariumMailboxes aquariumMailboxes;
+    private CountingTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        transactionManager = new CountingTransactionManager();
+        aquariumMailboxes = new AquariumMailboxes();
+        setField(aquariumMailboxes, "mailboxProperties", new MailboxProperties());
+        setField(aquariumMailboxes, "tickProperties", new TickProperties());
+        setField(aquariumMailboxes, "transactionManager", transactionManager);
+
+        OptimisticRetry optimisticRetry = new OptimisticRetry();
+        setField(optimisticRetry, "retryProperties", new RetryProperties());
+        setField(optimisticRetry, "meterRegistry", new SimpleMeterRegistry());
+        setField(aquariumMailboxes, "optimisticRetry", optimisticRetry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        aquariumMailboxes.shutdown();
+    }
+
+    // Test commands queued while the aquarium is busy run in order, in one transaction
+    @Test
+    public void batchesQueuedCommands() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        futures.add(aquariumMailboxes.submit(1L, () -> {
+            started.countDown();
+            await(release);
+            order.add(0);
+            return 0;
+        }));
+        started.await();
+        for (int i = 1; i <= 10; i++) {
+            int command = i;
+            futures.add(aquariumMailboxes.submit(1L, () -> {
+                order.add(command);
+                return command;
+            }));
+        }
+        release.countDown();
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i, futures.get(i).join());
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10), order);
+        assertEquals(2, transactionManager.commits.get());
+    }
+
+    // Test a failing command of a batch fails alone, the others are committed
+    @Test
+    public void failingCommandFailsAlone() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        aquariumMailboxes.submit(1L, () -> {
+            started.countDown();
+            await(release);
+            return null;
+        });
+        started.await();
+        CompletableFuture<String> before = aquariumMailboxes.submit(1L, () -> "before");
+        CompletableFuture<String> failing = aquariumMailboxes.submit(1L, () -> {
+            throw new IllegalStateException("Command failed");
+        });
+        CompletableFuture<String> after = aquariumMailboxes.submit(1L, () -> "after");
+        release.countDown();
+
+        assertEquals("before", before.join());
+        assertEquals("after", after.join());
+        CompletionException e = assertThrows(CompletionException.class, failing::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(transactionManager.rollbacks.get() >= 2);
+    }
+
+    // Test a command of a batch throwing an error fails alone, no caller is left waiting
+    @Test
+    public void commandThrowingErrorFailsAlone() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        aquariumMailboxes.submit(1L, () -> {
+            started.countDown();
+            await(release);
+            return null;
+        });
+        started.await();
+        CompletableFuture<String> failing = aquariumMailboxes.submit(1L, () -> {
+            throw new StackOverflowError("Command failed");
+        });
+        CompletableFuture<String> after = aquariumMailboxes.submit(1L, () -> "after");
+        release.countDown();
+
+        assertEquals("after", after.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, e.getCause());
+    }
+
+    // Test the mailbox of an aquarium is removed once it has no more commands, and a new one takes the next commands
+    @Test
+    public void removesIdleMailboxes() {
+        Map<?, ?> mailboxes = (Map<?, ?>) getField(aquariumMailboxes, "mailboxes");
+        for (int i = 0; i < 3; i++) {
+            int command = i;
+            assertEquals(command, aquariumMailboxes.submit(1L, () -> command).join());
+
+            // The mailbox is removed right after completing the command
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!mailboxes.isEmpty() && System.nanoTime() < deadline) {
+                sleep(1);
+            }
+            assertTrue(mailboxes.isEmpty());
+        }
+    }
+
+    // Test an exclusive task waits for the queued commands and holds the later ones
+    @Test
+    public void exclusiveTaskHoldsMailboxes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        aquariumMailboxes.submit(2L, () -> {
+            started.countDown();
+            await(release);
+            events.add("command");
+            return null;
+        });
+        started.await();
+
+        List<CompletableFuture<String>> later = new ArrayList<>();
+        CompletableFuture<Void> exclusive = CompletableFuture.runAsync(() -> aquariumMailboxes.runExclusive(List.of(1L, 2L), () -> {
+            events.add("exclusive");
+            later.add(aquariumMailboxes.submit(2L, () -> {
+                events.add("later");
+                return "later";
+            }));
+            sleep(50);
+            return null;
+        }));
+
+        sleep(50);
+        assertTrue(events.isEmpty());
+        release.countDown();
+        exclusive.join();
+
+        assertEquals("later", later.getFirst().join());
+        assertEquals(List.of("command", "exclusive", "later"), events);
+    }
+
+    // Test consecutive mutations are combined in one call, each caller getting its own result
+    @Test
+    public void combinesConsecutiveMutations() {
+        List<List<Integer>> calls = new CopyOnWriteArrayList<>();
+        AquariumMailboxes.Combiner<Integer, Integer> combiner = (aquariumId, mutations) -> {
+            calls.add(List.copyOf(mutations));
+            List<Integer> results = new ArrayList<>();
+            int total = 0;
+            for (Integer mutation : mutations) {
+                total += mutation;
+                results.add(total);
+            }
+            return results;
+        };
+
+        // Queued within the combine window
+        CompletableFuture<Integer> first = aquariumMailboxes.submit(1L, combiner, 1);
+        CompletableFuture<Integer> second = aquariumMailboxes.submit(1L, combiner, 2);
+        CompletableFuture<String> other = aquariumMailboxes.submit(1L, () -> "other");
+        CompletableFuture<Integer> third = aquariumMailboxes.submit(1L, combiner, 3);
+        CompletableFuture<Integer> fourth = aquariumMailboxes.submit(1L, combiner, 4);
+
+        assertEquals(1, first.join());
+        assertEquals(3, second.join());
+        assertEquals("other", other.join());
+        assertEquals(3, third.join());
+        assertEquals(7, fourth.join());
+        assertEquals(List.of(List.of(1, 2), List.of(3, 4)), calls);
+        assertEquals(1, transactionManager.commits.get());
+    }
+
+    // Test a combinable mutation submitted alone runs alone once the window elapses
+    @Test
+    public void runsSingleMutationAfterWindow() {
+        AquariumMailboxes.Combiner<Integer, Integer> combiner = (aquariumId, mutations) -> List.copyOf(mutations);
+
+        long start = System.nanoTime();
+        assertEquals(5, aquariumMailboxes.submit(1L, combiner, 5).join());
+
+        assertTrue(System.nanoTime() - start >= new MailboxProperties().getCombineWindow().toNanos());
+        assertEquals(1, transactionManager.commits.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CountingTransactionManager implements PlatformTransactionManager {
+
+        private final AtomicInteger commits = new AtomicInteger();
+        private final AtomicInteger rollbacks = new AtomicInteger();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+    }
+}
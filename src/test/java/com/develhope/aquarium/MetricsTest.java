@@ -0,0 +1,45 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.metrics.TickMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsTest {
+
+    @Autowired
+    private TickMetrics tickMetrics;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    // Test GET request to scrape the tick, Hibernate and connection pool meters
+    @Test
+    public void scrapeMetrics() throws Exception {
+
+        // A tick longer than its period is an overrun
+        tickMetrics.record(TickMetrics.STATS, Duration.ZERO, counts -> counts.add(2, 10, 1));
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("aquarium_tick_duration_seconds_count{exception=\"none\",mode=\"ENTITY\",tick=\"stats\"} 1")))
+                .andExpect(content().string(containsString("aquarium_tick_overruns_total{mode=\"ENTITY\",tick=\"stats\"} 1.0")))
+                .andExpect(content().string(containsString("aquarium_tick_fishes_sum{mode=\"ENTITY\",tick=\"stats\"} 10.0")))
+                .andExpect(content().string(containsString("aquarium_tick_deaths_fishes_sum")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")));
+    }
+}
@@ -0,0 +1,91 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.dtos.FishRequest;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.services.AquariumService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.mode=entity",
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false"})
+public class OptimisticLockingTest {
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    // Test a fish read before a feed can't be written back over it
+    @Test
+    public void rejectsStaleFishAfterFeed() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(10L);
+        aquarium = aquariumService.save(aquarium);
+        try {
+            Long fishId = aquariumService.addFishes(aquarium.getId(), List.of(new FishRequest("Nemo", FishSpecies.GOLDFISH)))
+                    .get(0).fishId();
+            Fish staleFish = fishRepository.findById(fishId).orElseThrow();
+
+            aquariumService.feedFishes(aquarium.getId(), 10);
+
+            staleFish.setName("Dory");
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> fishRepository.save(staleFish));
+            assertEquals("Nemo", fishRepository.findById(fishId).orElseThrow().getName());
+        } finally {
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+
+    // Test an aquarium read before a tick can't be written back over it
+    @Test
+    public void rejectsStaleAquariumAfterTick() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(10L);
+        aquarium = aquariumService.save(aquarium);
+        try {
+            Aquarium staleAquarium = aquariumRepository.findById(aquarium.getId()).orElseThrow();
+
+            aquariumService.updateStats(1);
+
+            staleAquarium.setTemperature(30);
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> aquariumRepository.save(staleAquarium));
+            assertNotEquals(staleAquarium.getClearness(),
+                    aquariumRepository.findById(aquarium.getId()).orElseThrow().getClearness());
+        } finally {
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+
+    // Test saving an aquarium with an id which isn't stored creates a new one
+    @Test
+    public void createsAquariumWithUnknownId() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setId(Long.MAX_VALUE);
+        aquarium.setCapacity(10L);
+
+        Aquarium savedAquarium = aquariumService.save(aquarium);
+        try {
+            assertNotNull(savedAquarium.getId());
+            assertEquals(0L, savedAquarium.getVersion());
+            assertTrue(aquariumRepository.existsById(savedAquarium.getId()));
+        } finally {
+            aquariumService.delete(savedAquarium.getId());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.configurations.RetryProperties;
+import com.develhope.aquarium.retries.OptimisticRetry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+public class OptimisticRetryTest {
+
+    private OptimisticRetry optimisticRetry;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        RetryProperties retryProperties = new RetryProperties();
+        retryProperties.setMaxAttempts(3);
+        retryProperties.setInitialBackoff(Duration.ofMillis(1));
+        retryProperties.setMaxBackoff(Duration.ofMillis(2));
+
+        meterRegistry = new SimpleMeterRegistry();
+        optimisticRetry = new OptimisticRetry();
+        setField(optimisticRetry, "retryProperties", retryProperties);
+        setField(optimisticRetry, "meterRegistry", meterRegistry);
+    }
+
+    // Test a conflicting write is tried again until it succeeds, and conflicts are counted
+    @Test
+    public void retriesConflicts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = optimisticRetry.run("fish", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Fish", 1L);
+            }
+            return "written";
+        });
+
+        assertEquals("written", result);
+        assertEquals(3, attempts.get());
+        assertEquals(3, meterRegistry.get("aquarium.write.attempts").tag("operation", "fish").counter().count());
+        assertEquals(2, meterRegistry.get("aquarium.write.conflicts").tag("operation", "fish").counter().count());
+    }
+
+    // Test the conflict of the last attempt is thrown
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> optimisticRetry.run("aquarium", () -> {
+            attempts.incrementAndGet();
+            throw new RuntimeException("Commit failed", new OptimisticLockException("Row was updated"));
+        }));
+
+        assertTrue(OptimisticRetry.isConflict(e));
+        assertEquals(3, attempts.get());
+        assertEquals(1, meterRegistry.get("aquarium.write.failures").tag("operation", "aquarium").counter().count());
+    }
+
+    // Test other failures are thrown right away
+    @Test
+    public void doesNotRetryOtherFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> optimisticRetry.run("fish", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Write failed");
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, meterRegistry.get("aquarium.write.conflicts").tag("operation", "fish").counter().count());
+    }
+}
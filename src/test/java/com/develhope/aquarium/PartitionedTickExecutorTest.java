@@ -0,0 +1,231 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.cluster.PartitionLeases;
+import com.develhope.aquarium.configurations.RetryProperties;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.entities.TickCheckpoint;
+import com.develhope.aquarium.exceptions.TickCheckpointedException;
+import com.develhope.aquarium.mailboxes.AquariumMailboxes;
+import com.develhope.aquarium.metrics.TickMetrics;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.TickCheckpointRepository;
+import com.develhope.aquarium.retries.OptimisticRetry;
+import com.develhope.aquarium.simulation.PartitionedTickExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+public class PartitionedTickExecutorTest {
+
+    private static final long PARTITION_WIDTH = 1000;
+
+    private PartitionedTickExecutor executor;
+    private TickProperties tickProperties;
+    private TickCheckpointRepository tickCheckpointRepository;
+    private TickMetrics tickMetrics;
+
+    // Aquarium ids stored in the fake database
+    private final TreeSet<Long> aquariumIds = new TreeSet<>();
+
+    // Chunks run by the task, as pairs of first and last id
+    private final List<long[]> chunks = new CopyOnWriteArrayList<>();
+
+    // Number of times every aquarium was ticked
+    private final Map<Long, AtomicInteger> ticked = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        tickProperties = new TickProperties();
+        tickProperties.setPartitionSize(3);
+        tickProperties.setParallelism(1);
+
+        AquariumRepository aquariumRepository = mock(AquariumRepository.class);
+        when(aquariumRepository.findIdsBetween(anyLong(), anyLong(), any(Limit.class))).thenAnswer(invocation -> {
+            Long after = invocation.getArgument(0);
+            Long toId = invocation.getArgument(1);
+            Limit limit = invocation.getArgument(2);
+            return aquariumIds.subSet(after, false, toId, true).stream().limit(limit.max()).toList();
+        });
+
+        tickCheckpointRepository = mock(TickCheckpointRepository.class);
+        doAnswer(invocation -> {
+            List<TickCheckpoint> checkpoints = new ArrayList<>();
+            invocation.<Iterable<TickCheckpoint>>getArgument(0).forEach(checkpoints::add);
+            for (int i = 0; i < checkpoints.size(); i++) {
+                checkpoints.get(i).setId(i + 1L);
+            }
+            return checkpoints;
+        }).when(tickCheckpointRepository).saveAll(any());
+
+        PartitionLeases partitionLeases = mock(PartitionLeases.class);
+        when(partitionLeases.ownsAquarium(anyLong())).thenReturn(true);
+        when(partitionLeases.holds(anyLong())).thenReturn(true);
+        when(partitionLeases.partitionOf(anyLong())).thenAnswer(invocation -> invocation.<Long>getArgument(0) / PARTITION_WIDTH);
+
+        AquariumMailboxes aquariumMailboxes = mock(AquariumMailboxes.class);
+        doAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get()).when(aquariumMailboxes).runExclusive(any(), any());
+
+        OptimisticRetry optimisticRetry = new OptimisticRetry();
+        setField(optimisticRetry, "retryProperties", new RetryProperties());
+        setField(optimisticRetry, "meterRegistry", new SimpleMeterRegistry());
+
+        tickMetrics = mock(TickMetrics.class);
+
+        executor = new PartitionedTickExecutor();
+        setField(executor, "tickProperties", tickProperties);
+        setField(executor, "aquariumRepository", aquariumRepository);
+        setField(executor, "tickCheckpointRepository", tickCheckpointRepository);
+        setField(executor, "partitionLeases", partitionLeases);
+        setField(executor, "aquariumMailboxes", aquariumMailboxes);
+        setField(executor, "optimisticRetry", optimisticRetry);
+        setField(executor, "tickMetrics", tickMetrics);
+        setField(executor, "transactionManager", mock(PlatformTransactionManager.class));
+        setField(executor, "entityManager", mock(EntityManager.class));
+    }
+
+    // Test a tick without aquariums saves no checkpoint and runs nothing
+    @Test
+    public void emptyRange() {
+        executor.execute(TickMetrics.STATS, 1, 1, List.of(), this::tick);
+
+        assertTrue(savedCheckpoints().isEmpty());
+        assertTrue(chunks.isEmpty());
+    }
+
+    // Test a single aquarium is one segment and one chunk
+    @Test
+    public void singleAquarium() {
+        store(LongStream.of(42));
+
+        executor.execute(TickMetrics.STATS, 1, 2, List.copyOf(aquariumIds), this::tick);
+
+        assertEquals(List.of(List.of(42L, 42L)), ranges(savedCheckpoints()));
+        assertEquals(List.of(List.of(42L, 42L)), chunkRanges());
+        assertEquals(1, ticked.get(42L).get());
+        verify(tickCheckpointRepository).deleteById(1L);
+    }
+
+    // Test ids not divisible by the segment and chunk sizes leave a shorter last segment and chunk,
+    // and segments are cut where a lease partition ends
+    @Test
+    public void unevenRange() {
+        tickProperties.setParallelism(3);
+        store(LongStream.rangeClosed(1, 10));
+        store(LongStream.of(998, 999, 1000, 1001));
+
+        executor.execute(TickMetrics.STATS, 1, 1, List.copyOf(aquariumIds), this::tick);
+
+        // 14 aquariums in 3 segments have segments of 5, cut before aquarium 1000
+        assertEquals(List.of(List.of(1L, 5L), List.of(6L, 10L), List.of(998L, 999L), List.of(1000L, 1001L)),
+                ranges(savedCheckpoints()));
+        assertEquals(Set.of(List.of(1L, 3L), List.of(4L, 5L), List.of(6L, 8L), List.of(9L, 10L),
+                List.of(998L, 999L), List.of(1000L, 1001L)), new HashSet<>(chunkRanges()));
+        assertTickedOnce();
+    }
+
+    // Test segments run in parallel, every aquarium is ticked exactly once and all checkpoints are deleted
+    @Test
+    public void runsSegmentsInParallel() throws Exception {
+        tickProperties.setParallelism(4);
+        tickProperties.setPartitionSize(1);
+        store(LongStream.rangeClosed(1, 20));
+
+        // Every segment waits in its first chunk for another one to start, which never happens if they run one at a time
+        CountDownLatch started = new CountDownLatch(2);
+        executor.execute(TickMetrics.STATS, 1, 1, List.copyOf(aquariumIds), (fromId, toId, ticks) -> {
+            if ((fromId - 1) % 5 == 0) {
+                started.countDown();
+                try {
+                    assertTrue(started.await(5, TimeUnit.SECONDS), "Segments didn't run in parallel");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            tick(fromId, toId, ticks);
+        });
+
+        assertEquals(4, savedCheckpoints().size());
+        assertTickedOnce();
+        verify(tickCheckpointRepository, times(4)).deleteById(anyLong());
+    }
+
+    // Test a failing segment surfaces its error, keeps its checkpoint, and doesn't stop the other segments
+    @Test
+    public void surfacesFailingSegment() {
+        tickProperties.setParallelism(4);
+        tickProperties.setPartitionSize(1);
+        store(LongStream.rangeClosed(1, 20));
+        IllegalStateException failure = new IllegalStateException("Chunk failed");
+
+        TickCheckpointedException e = assertThrows(TickCheckpointedException.class, () ->
+                executor.execute(TickMetrics.STATS, 1, 1, List.copyOf(aquariumIds), (fromId, toId, ticks) -> {
+                    if (fromId == 8) {
+                        throw failure;
+                    }
+                    tick(fromId, toId, ticks);
+                }));
+
+        assertSame(failure, e.getCause());
+        verify(tickMetrics).recordSegmentFailure(TickMetrics.STATS);
+
+        // The segment of aquariums 6 to 10 stops at 8, the others are complete
+        for (long id = 1; id <= 20; id++) {
+            int expected = id >= 8 && id <= 10 ? 0 : 1;
+            assertEquals(expected, ticked.getOrDefault(id, new AtomicInteger()).get(), "ticks of aquarium " + id);
+        }
+        verify(tickCheckpointRepository, times(3)).deleteById(anyLong());
+        verify(tickCheckpointRepository, never()).deleteById(2L);
+    }
+
+    private void store(LongStream ids) {
+        ids.forEach(aquariumIds::add);
+    }
+
+    private void tick(Long fromId, Long toId, long ticks) {
+        chunks.add(new long[]{fromId, toId});
+        for (Long id : aquariumIds.subSet(fromId, true, toId, true)) {
+            ticked.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private void assertTickedOnce() {
+        for (Long id : aquariumIds) {
+            assertEquals(1, ticked.getOrDefault(id, new AtomicInteger()).get(), "ticks of aquarium " + id);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TickCheckpoint> savedCheckpoints() {
+        ArgumentCaptor<Iterable<TickCheckpoint>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(tickCheckpointRepository).saveAll(saved.capture());
+        List<TickCheckpoint> checkpoints = new ArrayList<>();
+        saved.getValue().forEach(checkpoints::add);
+        return checkpoints;
+    }
+
+    private static List<List<Long>> ranges(List<TickCheckpoint> checkpoints) {
+        return checkpoints.stream().map(checkpoint -> List.of(checkpoint.getFromAquariumId(), checkpoint.getToAquariumId())).toList();
+    }
+
+    private List<List<Long>> chunkRanges() {
+        return chunks.stream().map(chunk -> List.of(chunk[0], chunk[1])).toList();
+    }
+}
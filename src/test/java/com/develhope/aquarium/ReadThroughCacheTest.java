@@ -0,0 +1,204 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.caches.ReadThroughCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadThroughCacheTest {
+
+    private ReadThroughCache<Long, Value> cache;
+    private Map<Long, AtomicInteger> loads;
+
+    /**
+     * Value loaded from the database.
+     * @param group group of the value, the aquarium of a fish.
+     * @param load number of the load which read it, counting from 1.
+     */
+    private record Value(Long group, int load) {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        cache = new ReadThroughCache<>("values", 100, Value::group);
+        loads = new ConcurrentHashMap<>();
+    }
+
+    // Test concurrent misses on the same key run the loader once and share its value
+    @Test
+    public void loadsOnceForConcurrentMisses() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<Long, Optional<Value>> blockingLoader = key -> {
+            loading.countDown();
+            await(release);
+            return load(key);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Value>> first = executor.submit(() -> cache.get(1L, blockingLoader));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<Thread> secondThread = new CompletableFuture<>();
+            Future<Optional<Value>> second = executor.submit(() -> {
+                secondThread.complete(Thread.currentThread());
+                return cache.get(1L, blockingLoader);
+            });
+            awaitBlocked(secondThread.get(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            assertEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get(1L).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Test a cached value is served without loading it again, while empty results aren't cached
+    @Test
+    public void cachesFoundValuesOnly() {
+        assertEquals(1, cache.get(1L, this::load).orElseThrow().load());
+        assertEquals(1, cache.get(1L, this::load).orElseThrow().load());
+
+        assertTrue(cache.get(2L, key -> countLoad(key, Optional.empty())).isEmpty());
+        assertTrue(cache.get(2L, key -> countLoad(key, Optional.empty())).isEmpty());
+        assertEquals(2, loads.get(2L).get());
+    }
+
+    // Test a value loaded before an invalidation of its group is discarded by its stamp and loaded again
+    @Test
+    public void discardsValuesLoadedBeforeInvalidation() {
+        cache.get(1L, this::load);
+
+        cache.invalidateGroup(10L);
+
+        assertEquals(2, cache.get(1L, this::load).orElseThrow().load());
+        assertEquals(2, cache.get(1L, this::load).orElseThrow().load());
+    }
+
+    // Test invalidating a group only reloads the values of that group, and invalidating all reloads every value
+    @Test
+    public void invalidatesGroups() {
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        cache.get(3L, this::load);
+        cache.get(4L, this::load);
+
+        cache.invalidateGroup(10L);
+
+        assertEquals(2, cache.get(1L, this::load).orElseThrow().load());
+        assertEquals(2, cache.get(2L, this::load).orElseThrow().load());
+        assertEquals(1, cache.get(3L, this::load).orElseThrow().load());
+        assertEquals(1, cache.get(4L, this::load).orElseThrow().load());
+
+        cache.invalidateAll();
+
+        assertEquals(3, cache.get(1L, this::load).orElseThrow().load());
+        assertEquals(2, cache.get(3L, this::load).orElseThrow().load());
+        assertEquals(2, cache.get(4L, this::load).orElseThrow().load());
+    }
+
+    // Test a load still running when its group is invalidated isn't returned, it's loaded again instead
+    @Test
+    public void reloadsLoadRacedAgainstInvalidation() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<Value>> reader = executor.submit(() -> cache.get(1L, key -> {
+
+                // Only the first load is held, as if it read the database before a write committed
+                if (loads.computeIfAbsent(key, k -> new AtomicInteger()).get() == 0) {
+                    loading.countDown();
+                    await(release);
+                }
+                return load(key);
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            cache.invalidateGroup(10L);
+            release.countDown();
+
+            assertEquals(2, reader.get(5, TimeUnit.SECONDS).orElseThrow().load());
+            assertEquals(2, cache.get(1L, this::load).orElseThrow().load());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Test invalidating a key while it's loading waits for the load, so the loaded value isn't kept
+    @Test
+    public void invalidatesKeyAfterRunningLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Value>> reader = executor.submit(() -> cache.get(1L, key -> {
+                loading.countDown();
+                await(release);
+                return load(key);
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<Thread> invalidatorThread = new CompletableFuture<>();
+            Future<?> invalidator = executor.submit(() -> {
+                invalidatorThread.complete(Thread.currentThread());
+                cache.invalidate(1L);
+            });
+            awaitBlocked(invalidatorThread.get(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            assertEquals(1, reader.get(5, TimeUnit.SECONDS).orElseThrow().load());
+            invalidator.get(5, TimeUnit.SECONDS);
+            assertEquals(2, cache.get(1L, this::load).orElseThrow().load());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads the value with the given key, keys 1 and 2 are in group 10, key 3 in group 20 and key 4 in no group.
+     * @param key
+     * @return an optional containing the value.
+     */
+    private Optional<Value> load(Long key) {
+        Long group = key <= 2 ? 10L : key == 3 ? 20L : null;
+        return Optional.of(new Value(group, loads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet()));
+    }
+
+    private Optional<Value> countLoad(Long key, Optional<Value> value) {
+        loads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        return value;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits until the given thread is blocked, as it waits for a load running on the same key.
+     * @param thread
+     */
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.BLOCKED && thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "Thread never blocked");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.caches.EntityCache;
+import com.develhope.aquarium.caches.JsonSnapshots;
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.enumerations.TickMode;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import com.develhope.aquarium.simulation.StatsMaterializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs real ticks on a generated world in an embedded database, first alone and then under concurrent REST traffic,
+ * checks that every stats tick takes at most the configured fraction of its period
+ * and writes a JSON report with durations, SQL statement counts and request latencies.
+ * Excluded from the default build, run with: mvn -Pscale test [-Dscale.aquariums=1000 -Dscale.fishes=100000 -Dscale.traffic=30s -Daquarium.tick.mode=bulk]
+ * The default world fits the embedded database, larger worlds (as 10000 aquariums and 1000000 fishes) need a larger heap, see -Dscale.heap.
+ */
+@Tag("scale")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("scale")
+public class ScaleTest {
+
+    @Value("${scale.aquariums:1000}")
+    private int aquariums;
+
+    @Value("${scale.fishes:100000}")
+    private int fishes;
+
+    @Value("${scale.seed:42}")
+    private long seed;
+
+    @Value("${scale.ticks:5}")
+    private int ticks;
+
+    @Value("${scale.clients:8}")
+    private int clients;
+
+    // Minimum duration of the REST traffic, spread between the loaded ticks
+    @Value("${scale.traffic:10s}")
+    private Duration traffic;
+
+    @Value("${scale.slo-fraction:0.25}")
+    private double sloFraction;
+
+    @Value("${scale.report:target/scale-report.json}")
+    private Path reportPath;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private JsonSnapshots jsonSnapshots;
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private StatsMaterializer statsMaterializer;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Report of a run, compared across builds.
+     * @param timestamp
+     * @param mode
+     * @param aquariums
+     * @param fishes
+     * @param seed
+     * @param clients
+     * @param generationMillis time taken to insert the world.
+     * @param budgetMillis maximum duration of a stats tick.
+     * @param quietTicks ticks run without traffic.
+     * @param loadedTicks ticks run under REST traffic.
+     * @param aging aging run after the ticks.
+     * @param endpoints latencies of the REST traffic, by endpoint.
+     * @param passed true if every stats tick met the budget.
+     */
+    public record Report(Instant timestamp, TickMode mode, int aquariums, int fishes, long seed, int clients,
+                         long generationMillis, long budgetMillis, List<TickReport> quietTicks,
+                         List<TickReport> loadedTicks, TickReport aging, List<EndpointReport> endpoints, boolean passed) {
+    }
+
+    /**
+     * @param millis duration of updateStats, or updateFishesAge for aging.
+     * @param refreshMillis duration of the JSON snapshots refresh following the tick.
+     * @param statements SQL statements prepared by Hibernate during the tick, by kind.
+     * @param entityLoads
+     * @param entityUpdates
+     * @param entityDeletes
+     */
+    public record TickReport(long millis, long refreshMillis, Map<String, Long> statements, long entityLoads,
+                             long entityUpdates, long entityDeletes) {
+    }
+
+    /**
+     * @param endpoint
+     * @param requests
+     * @param errors requests answered with a server error or failed.
+     * @param notFound requests answered 404, as dead fishes are deleted.
+     * @param p50Millis
+     * @param p95Millis
+     * @param p99Millis
+     * @param maxMillis
+     */
+    public record EndpointReport(String endpoint, long requests, long errors, long notFound, double p50Millis,
+                                 double p95Millis, double p99Millis, double maxMillis) {
+    }
+
+    /**
+     * Outcomes of the requests sent by a client to an endpoint, latencies of the successful ones in nanoseconds.
+     */
+    private static class Outcomes {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private long errors;
+        private long notFound;
+
+        private Outcomes add(Outcomes other) {
+            latencies.addAll(other.latencies);
+            errors += other.errors;
+            notFound += other.notFound;
+            return this;
+        }
+    }
+
+    @Test
+    public void ticksMeetBudget() throws Exception {
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                new WorldGenerator(jdbcTemplate, fishRepository).generate(aquariums, fishes, seed));
+        long generationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        reload();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long budgetMillis = (long) (tickProperties.getStatsPeriod().toMillis() * sloFraction);
+
+        // Ticks alone
+        List<TickReport> quietTicks = new ArrayList<>();
+        for (int i = 0; i < ticks; i++) {
+            quietTicks.add(tick(statistics, aquariumService::updateStats));
+        }
+
+        // Ticks under REST traffic
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Map<String, Outcomes>>> clientOutcomes = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            SplittableRandom random = new SplittableRandom(seed + i);
+            clientOutcomes.add(executor.submit(() -> sendRequests(random, running)));
+        }
+
+        List<TickReport> loadedTicks = new ArrayList<>();
+        for (int i = 0; i < ticks; i++) {
+            Thread.sleep(traffic.toMillis() / ticks);
+            loadedTicks.add(tick(statistics, aquariumService::updateStats));
+        }
+        running.set(false);
+        List<EndpointReport> endpoints = endpointReports(clientOutcomes);
+        executor.shutdown();
+
+        TickReport aging = tick(statistics, aquariumService::updateFishesAge);
+
+        boolean passed = quietTicks.stream().allMatch(tick -> tick.millis() <= budgetMillis)
+                && loadedTicks.stream().allMatch(tick -> tick.millis() <= budgetMillis);
+        Report report = new Report(Instant.now(), tickProperties.getMode(), aquariums, fishes, seed, clients,
+                generationMillis, budgetMillis, quietTicks, loadedTicks, aging, endpoints, passed);
+        writeReport(report);
+
+        assertTrue(endpoints.stream().allMatch(endpoint -> endpoint.errors() == 0), "REST requests failed, see " + reportPath);
+        assertTrue(passed, "Stats ticks exceeded " + budgetMillis + " ms, see " + reportPath);
+    }
+
+    /**
+     * Loads the generated world into the state held outside the database, as done on startup.
+     */
+    private void reload() {
+        if (tickProperties.getMode() == TickMode.ENGINE) {
+            simulationEngine.load();
+        }
+        if (tickProperties.getMode() == TickMode.LAZY) {
+            statsMaterializer.rebase();
+            statsMaterializer.materializeAll();
+        }
+        entityCache.invalidateAll();
+        jsonSnapshots.refresh();
+    }
+
+    /**
+     * Runs a tick followed by the JSON snapshots refresh, as the timers do, and measures both.
+     * @param statistics
+     * @param tick
+     * @return the report of the tick.
+     */
+    private TickReport tick(Statistics statistics, Runnable tick) {
+        statistics.clear();
+        SqlStatementCounter.reset();
+
+        long start = System.nanoTime();
+        tick.run();
+        long end = System.nanoTime();
+        Map<String, Long> statements = SqlStatementCounter.snapshot();
+        long entityLoads = statistics.getEntityLoadCount();
+        long entityUpdates = statistics.getEntityUpdateCount();
+        long entityDeletes = statistics.getEntityDeleteCount();
+
+        jsonSnapshots.refresh();
+        long refreshEnd = System.nanoTime();
+
+        return new TickReport(TimeUnit.NANOSECONDS.toMillis(end - start), TimeUnit.NANOSECONDS.toMillis(refreshEnd - end),
+                statements, entityLoads, entityUpdates, entityDeletes);
+    }
+
+    /**
+     * Sends random requests to the controllers until stopped.
+     * @param random
+     * @param running
+     * @return the outcomes, by endpoint.
+     */
+    private Map<String, Outcomes> sendRequests(SplittableRandom random, AtomicBoolean running) {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Map<String, Outcomes> outcomes = new TreeMap<>();
+
+        while (running.get()) {
+            long aquariumId = 1 + random.nextInt(aquariums);
+            long fishId = 1 + random.nextInt(Math.max(1, fishes));
+            int operation = random.nextInt(10);
+
+            // Mostly reads, as clients poll the aquariums
+            String endpoint;
+            HttpRequest request;
+            if (operation < 5) {
+                endpoint = "GET /aquariums/find-by-id";
+                request = HttpRequest.newBuilder(uri("/aquariums/find-by-id/" + aquariumId)).GET().build();
+            } else if (operation < 8) {
+                endpoint = "GET /fishes/find-by-id";
+                request = HttpRequest.newBuilder(uri("/fishes/find-by-id/" + fishId)).GET().build();
+            } else if (operation < 9) {
+                endpoint = "PUT /aquariums/feed-fishes";
+                request = HttpRequest.newBuilder(uri("/aquariums/" + aquariumId + "/feed-fishes?foodQuantity=" + random.nextInt(1, 11)))
+                        .PUT(HttpRequest.BodyPublishers.noBody()).build();
+            } else {
+                endpoint = "PUT /aquariums/clean";
+                request = HttpRequest.newBuilder(uri("/aquariums/" + aquariumId + "/clean"))
+                        .PUT(HttpRequest.BodyPublishers.noBody()).build();
+            }
+
+            Outcomes endpointOutcomes = outcomes.computeIfAbsent(endpoint, key -> new Outcomes());
+            long start = System.nanoTime();
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+
+                // Dead fishes are deleted, so some fishes are not found
+                if (status == 404) {
+                    endpointOutcomes.notFound++;
+                } else if (status >= 400) {
+                    endpointOutcomes.errors++;
+                } else {
+                    endpointOutcomes.latencies.add(System.nanoTime() - start);
+                }
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                endpointOutcomes.errors++;
+            } catch (InterruptedException e) {
+
+                // The run can't be measured any more, so it fails when the outcomes are collected
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Client interrupted while sending " + endpoint, e);
+            }
+        }
+        return outcomes;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    /**
+     * Merges the outcomes of all clients and computes the latency percentiles by endpoint.
+     * @param traffic
+     * @return the reports, by endpoint.
+     * @throws Exception if a client failed.
+     */
+    private List<EndpointReport> endpointReports(List<Future<Map<String, Outcomes>>> traffic) throws Exception {
+        Map<String, Outcomes> merged = new TreeMap<>();
+        for (Future<Map<String, Outcomes>> client : traffic) {
+            client.get().forEach((endpoint, outcomes) -> merged.merge(endpoint, outcomes, Outcomes::add));
+        }
+
+        List<EndpointReport> reports = new ArrayList<>();
+        merged.forEach((endpoint, outcomes) -> {
+            long[] sorted = outcomes.latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            reports.add(new EndpointReport(endpoint, sorted.length + outcomes.errors + outcomes.notFound,
+                    outcomes.errors, outcomes.notFound, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                    percentile(sorted, 0.99), percentile(sorted, 1)));
+        });
+        return reports;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+
+    private void writeReport(Report report) throws IOException {
+        Path parent = reportPath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writeValue(reportPath.toFile(), report);
+    }
+}
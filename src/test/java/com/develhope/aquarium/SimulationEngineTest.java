@@ -0,0 +1,158 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.dtos.KeysetPage;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.metrics.TickCounts;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.services.AquariumService;
+import com.develhope.aquarium.services.FishService;
+import com.develhope.aquarium.simulation.SimulationEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.mode=engine",
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false"})
+public class SimulationEngineTest {
+
+    @Autowired
+    private SimulationEngine simulationEngine;
+
+    @Autowired
+    private AquariumService aquariumService;
+
+    @Autowired
+    private FishService fishService;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    // Test the engine loads the rows written directly to the database
+    @Test
+    public void loadsDatabase() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(10L);
+        aquarium.setClearness(42);
+        aquarium = aquariumRepository.save(aquarium);
+        Fish fish = new Fish("Nemo", FishSpecies.GOLDFISH);
+        fish.setHunger(17);
+        fish.setAquarium(aquarium);
+        fish = fishRepository.save(fish);
+        try {
+            simulationEngine.load();
+
+            Aquarium loaded = simulationEngine.findAquariumById(aquarium.getId()).orElseThrow();
+            assertEquals(42, loaded.getClearness());
+            assertEquals(17, simulationEngine.findFishById(fish.getId()).orElseThrow().getHunger());
+        } finally {
+            aquariumRepository.deleteById(aquarium.getId());
+            simulationEngine.load();
+        }
+    }
+
+    // Test ticks change the engine only, until the write-behind flush writes them
+    @Test
+    public void ticksAreWrittenBehind() {
+        Aquarium aquarium = newAquarium();
+        Fish fish = aquariumService.addFish(aquarium.getId(), "Nemo", FishSpecies.GOLDFISH);
+        try {
+            TickCounts counts = new TickCounts();
+            simulationEngine.updateStats(2, counts);
+            assertTrue(counts.getFishes() >= 1);
+
+            assertEquals(98, simulationEngine.findAquariumById(aquarium.getId()).orElseThrow().getClearness());
+            assertEquals(2, simulationEngine.findFishById(fish.getId()).orElseThrow().getHunger());
+            assertEquals(100, aquariumRepository.findById(aquarium.getId()).orElseThrow().getClearness());
+            assertEquals(0, fishRepository.findById(fish.getId()).orElseThrow().getHunger());
+
+            simulationEngine.flush();
+            assertEquals(98, aquariumRepository.findById(aquarium.getId()).orElseThrow().getClearness());
+            assertEquals(2, fishRepository.findById(fish.getId()).orElseThrow().getHunger());
+        } finally {
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+
+    // Test dead fishes are deleted by the flush
+    @Test
+    public void deadFishesAreDeletedByFlush() {
+        Aquarium aquarium = newAquarium();
+        Fish fish = aquariumService.addFish(aquarium.getId(), "Nemo", FishSpecies.GOLDFISH);
+        try {
+            fish.setHealth(1);
+            fish.setHunger(100);
+            fishService.update(fish.getId(), fish);
+
+            TickCounts counts = new TickCounts();
+            simulationEngine.updateStats(1, counts);
+            assertTrue(counts.getDeaths() >= 1);
+            assertTrue(simulationEngine.findFishById(fish.getId()).isEmpty());
+            assertTrue(fishRepository.existsById(fish.getId()));
+
+            simulationEngine.flush();
+            assertFalse(fishRepository.existsById(fish.getId()));
+        } finally {
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+
+    // Test a page is filled past the fishes which died in the engine and aren't flushed yet
+    @Test
+    public void pagesSkipDeadFishes() {
+        Aquarium aquarium = newAquarium();
+        try {
+            Fish first = aquariumService.addFish(aquarium.getId(), "Nemo", FishSpecies.GOLDFISH);
+            Fish second = aquariumService.addFish(aquarium.getId(), "Dory", FishSpecies.GOLDFISH);
+            Fish third = aquariumService.addFish(aquarium.getId(), "Marlin", FishSpecies.GOLDFISH);
+            for (Fish fish : List.of(first, second)) {
+                fish.setHealth(1);
+                fish.setHunger(100);
+                fishService.update(fish.getId(), fish);
+            }
+            simulationEngine.updateStats(1, new TickCounts());
+
+            KeysetPage<Fish> page = fishService.findPage(first.getId() - 1, 1);
+            assertEquals(List.of(third.getId()), page.items().stream().map(Fish::getId).toList());
+            assertEquals(third.getId(), page.nextAfter());
+        } finally {
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+
+    // Test aquariums and fishes created through the services appear in the engine
+    @Test
+    public void newEntitiesAppearInEngine() {
+        Aquarium aquarium = newAquarium();
+        try {
+            assertTrue(simulationEngine.findAquariumById(aquarium.getId()).isPresent());
+
+            Fish fish = aquariumService.addFish(aquarium.getId(), "Nemo", FishSpecies.GOLDFISH);
+            assertTrue(simulationEngine.findFishById(fish.getId()).isPresent());
+
+            Fish stray = fishService.save(new Fish("Dory", FishSpecies.GOLDFISH));
+            assertTrue(simulationEngine.findFishById(stray.getId()).isPresent());
+            fishService.deleteById(stray.getId());
+            assertTrue(simulationEngine.findFishById(stray.getId()).isEmpty());
+        } finally {
+            aquariumService.delete(aquarium.getId());
+        }
+    }
+
+    private Aquarium newAquarium() {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(10L);
+        return aquariumService.save(aquarium);
+    }
+}
@@ -0,0 +1,47 @@
+package com.develhope.aquarium;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the SQL statements prepared by Hibernate, by their first keyword.
+ * Hibernate creates the inspector from its class name, so counts are static.
+ * Statements sent through JdbcTemplate aren't counted.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final Map<String, LongAdder> COUNTS = new ConcurrentHashMap<>();
+
+    @Override
+    public String inspect(String sql) {
+        COUNTS.computeIfAbsent(kind(sql), kind -> new LongAdder()).increment();
+        return sql;
+    }
+
+    /**
+     * @return the statements counted since the last reset, by kind.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        COUNTS.forEach((kind, count) -> snapshot.put(kind, count.sum()));
+        return snapshot;
+    }
+
+    public static void reset() {
+        COUNTS.clear();
+    }
+
+    private static String kind(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? "other" : trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,90 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.snapshots.StateSnapshotFile;
+import com.develhope.aquarium.snapshots.StateSnapshotFile.AquariumRecord;
+import com.develhope.aquarium.snapshots.StateSnapshotFile.FishRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateSnapshotFileTest {
+
+    @TempDir
+    private Path directory;
+
+    // Test a written snapshot is read back with the same header and records, null values included
+    @Test
+    public void writeAndRead() throws IOException {
+        Path path = directory.resolve("aquarium.snapshot");
+        AquariumRecord aquarium = new AquariumRecord(1L, 10L, 80, 25, 2L, 7L);
+        AquariumRecord emptyAquarium = new AquariumRecord(2L, null, null, null, null, null);
+        FishRecord fish = new FishRecord(3L, 1L, "Nemò", FishSpecies.GOLDFISH, 12, 90, 4L, 7L);
+        FishRecord strayFish = new FishRecord(4L, null, null, null, null, null, null, null);
+
+        try (StateSnapshotFile.Writer writer = StateSnapshotFile.create(path, 42)) {
+            writer.writeAquarium(aquarium);
+            writer.writeAquarium(emptyAquarium);
+            writer.writeFish(fish);
+            writer.writeFish(strayFish);
+            writer.commit(99);
+        }
+
+        StateSnapshotFile.Reader reader = StateSnapshotFile.open(path);
+        assertEquals(42, reader.getTick());
+        assertEquals(99, reader.getChangeVersion());
+        assertEquals(2, reader.getAquariumCount());
+        assertEquals(2, reader.getFishCount());
+        assertFalse(reader.hasNextFish());
+        assertEquals(aquarium, reader.nextAquarium());
+        assertEquals(emptyAquarium, reader.nextAquarium());
+        assertFalse(reader.hasNextAquarium());
+        assertEquals(fish, reader.nextFish());
+        assertEquals(strayFish, reader.nextFish());
+        assertFalse(reader.hasNextFish());
+    }
+
+    // Test a snapshot with a changed record byte is rejected
+    @Test
+    public void rejectsCorruptedRecords() throws IOException {
+        Path path = directory.resolve("aquarium.snapshot");
+        try (StateSnapshotFile.Writer writer = StateSnapshotFile.create(path, 1)) {
+            writer.writeAquarium(new AquariumRecord(1L, 10L, 80, 25, 0L, 1L));
+            writer.commit(1);
+        }
+
+        // Flip a byte of the clearness, which follows the id and capacity of the only record
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long recordStart = file.length() - Long.BYTES - (Long.BYTES * 4 + Integer.BYTES * 2);
+            long position = recordStart + Long.BYTES * 2;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+
+        IOException exception = assertThrows(IOException.class, () -> StateSnapshotFile.open(path));
+        assertTrue(exception.getMessage().startsWith("Corrupted snapshot"));
+    }
+
+    // Test closing a writer without committing leaves the previous snapshot in place
+    @Test
+    public void uncommittedWriteKeepsPreviousSnapshot() throws IOException {
+        Path path = directory.resolve("aquarium.snapshot");
+        try (StateSnapshotFile.Writer writer = StateSnapshotFile.create(path, 1)) {
+            writer.commit(5);
+        }
+        try (StateSnapshotFile.Writer writer = StateSnapshotFile.create(path, 2)) {
+            writer.writeAquarium(new AquariumRecord(1L, 10L, 80, 25, 0L, 1L));
+        }
+
+        assertEquals(1, StateSnapshotFile.open(path).getTick());
+        assertFalse(Files.exists(path.resolveSibling("aquarium.snapshot.tmp")));
+    }
+}
@@ -0,0 +1,88 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.changes.ChangeVersions;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.FishRepository;
+import com.develhope.aquarium.repositories.TombstoneRepository;
+import com.develhope.aquarium.snapshots.StateSnapshots;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "aquarium.tick.scheduled=false",
+        "aquarium.snapshot.enabled=false",
+        "aquarium.snapshot.path=target/test-snapshots/aquarium.snapshot"})
+public class StateSnapshotTest {
+
+    @Autowired
+    private StateSnapshots stateSnapshots;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private FishRepository fishRepository;
+
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    // Test a snapshot is restored into an empty database after a restart, with change versions after the stored ones
+    @Test
+    public void restoresSnapshot() throws Exception {
+        clearDatabase();
+        Aquarium aquarium = new Aquarium();
+        aquarium.setCapacity(10L);
+        aquarium.setClearness(42);
+        aquarium = aquariumRepository.save(aquarium);
+        Fish fish = new Fish("Nemo", FishSpecies.GOLDFISH);
+        fish.setHunger(17);
+        fish.setAquarium(aquarium);
+        fish = fishRepository.save(fish);
+
+        try {
+            stateSnapshots.write();
+            long lastVersion = changeVersions.lastVersion();
+
+            // An empty database with versions starting over, as after a restart with create-drop
+            clearDatabase();
+            changeVersions.init();
+
+            assertTrue(stateSnapshots.restore());
+
+            Aquarium restoredAquarium = aquariumRepository.findById(aquarium.getId()).orElseThrow();
+            assertEquals(42, restoredAquarium.getClearness());
+            assertTrue(restoredAquarium.getChangeVersion() > lastVersion);
+            Fish restoredFish = fishRepository.findById(fish.getId()).orElseThrow();
+            assertEquals(17, restoredFish.getHunger());
+            assertEquals(aquarium.getId(), restoredFish.getAquarium().getId());
+            assertEquals(restoredAquarium.getChangeVersion(), restoredFish.getChangeVersion());
+
+            // Restored rows can be written again, and nothing is restored over them
+            restoredAquarium.setClearness(50);
+            aquariumRepository.save(restoredAquarium);
+            assertFalse(stateSnapshots.restore());
+
+            // New fishes get ids after the restored ones
+            Fish newFish = new Fish("Dory", FishSpecies.GOLDFISH);
+            newFish.setAquarium(restoredAquarium);
+            assertTrue(fishRepository.save(newFish).getId() > fish.getId());
+        } finally {
+            clearDatabase();
+        }
+    }
+
+    private void clearDatabase() {
+        fishRepository.deleteAllInBatch();
+        aquariumRepository.deleteAllInBatch();
+        tombstoneRepository.deleteAllInBatch();
+    }
+}
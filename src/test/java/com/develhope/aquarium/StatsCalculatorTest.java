@@ -0,0 +1,71 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.simulation.StatsCalculator;
+import com.develhope.aquarium.simulation.StatsProjection;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatsCalculatorTest {
+
+    // Test closed-form stats against the entity rules applied once per tick
+    @Test
+    public void matchesTickByTickRules() {
+        for (int hunger = 0; hunger <= 100; hunger += 3) {
+            for (int health = 1; health <= 100; health += 3) {
+                for (int clearness = 0; clearness <= 100; clearness += 7) {
+                    assertSameStats(hunger, health, clearness, 250);
+                }
+            }
+        }
+    }
+
+    // Test stats around the hunger and clearness thresholds
+    @Test
+    public void matchesTickByTickRulesAroundThresholds() {
+        int[] values = {0, 1, 2, 29, 30, 31, 69, 70, 71, 98, 99, 100};
+        for (int hunger : values) {
+            for (int health : values) {
+                for (int clearness : values) {
+                    assertSameStats(hunger, health, clearness, 150);
+                }
+            }
+        }
+    }
+
+    private void assertSameStats(int hunger, int health, int clearness, int maxTicks) {
+        Aquarium aquarium = new Aquarium();
+        aquarium.setClearness(clearness);
+
+        Fish fish = new Fish();
+        fish.setHunger(hunger);
+        fish.setHealth(health);
+
+        for (int tick = 1; tick <= maxTicks; tick++) {
+
+            // Same steps as the entity based stats tick
+            aquarium.dirty(1);
+            fish.increaseHunger();
+            fish.updateHealth();
+            if (aquarium.getClearness() <= Aquarium.LOW_CLEARNESS) {
+                fish.decreaseHealth();
+            }
+
+            String message = "hunger " + hunger + ", health " + health + ", clearness " + clearness + ", tick " + tick;
+            StatsProjection stats = StatsCalculator.project(hunger, health, clearness, tick);
+
+            assertEquals(aquarium.getClearness(), StatsCalculator.clearnessAfter(clearness, tick), message);
+            assertEquals(fish.getHunger(), stats.hunger(), message);
+
+            if (fish.getHealth() <= 0) {
+                assertEquals(tick, stats.deathTick(), message);
+                return;
+            }
+
+            assertEquals(StatsCalculator.NEVER, stats.deathTick(), message);
+            assertEquals(fish.getHealth(), stats.health(), message);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.entities.Aquarium;
+import com.develhope.aquarium.entities.TickCheckpoint;
+import com.develhope.aquarium.exceptions.TickCheckpointedException;
+import com.develhope.aquarium.repositories.AquariumRepository;
+import com.develhope.aquarium.repositories.TickCheckpointRepository;
+import com.develhope.aquarium.simulation.PartitionedTickExecutor;
+import com.develhope.aquarium.simulation.PartitionedTickExecutor.PartitionTask;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class TickCheckpointTest {
+
+    private static final String TICK = "checkpoint-test";
+
+    @Autowired
+    private PartitionedTickExecutor partitionedTickExecutor;
+
+    @Autowired
+    private AquariumRepository aquariumRepository;
+
+    @Autowired
+    private TickCheckpointRepository tickCheckpointRepository;
+
+    @Autowired
+    private TickProperties tickProperties;
+
+    // Test a tick failing halfway resumes after the last committed chunk
+    @Test
+    public void resumeAfterFailure() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Aquarium aquarium = new Aquarium();
+            aquarium.setCapacity(10L);
+            ids.add(aquariumRepository.save(aquarium).getId());
+        }
+
+        Integer partitionSize = tickProperties.getPartitionSize();
+        tickProperties.setPartitionSize(2);
+        try {
+            List<Long> processed = new ArrayList<>();
+
+            // The second chunk fails
+            assertThrows(TickCheckpointedException.class, () -> partitionedTickExecutor.execute(TICK, 7, 3, ids, (fromId, toId, ticks) -> {
+                if (fromId.equals(ids.get(2))) {
+                    throw new IllegalStateException("Chunk failed");
+                }
+                processed.add(toId);
+            }));
+            assertEquals(List.of(ids.get(1)), processed);
+
+            List<TickCheckpoint> checkpoints = tickCheckpointRepository.findByTickOrderById(TICK);
+            assertEquals(1, checkpoints.size());
+            assertEquals(7, checkpoints.get(0).getTickNumber());
+            assertEquals(ids.get(1), checkpoints.get(0).getLastProcessedId());
+
+            // Only the chunks after the checkpoint run again, with the ticks of the failed run
+            partitionedTickExecutor.resume(TICK, (fromId, toId, ticks) -> {
+                assertEquals(3, ticks);
+                processed.add(toId);
+            });
+            assertEquals(List.of(ids.get(1), ids.get(3), ids.get(4)), processed);
+            assertTrue(tickCheckpointRepository.findByTickOrderById(TICK).isEmpty());
+        } finally {
+            tickProperties.setPartitionSize(partitionSize);
+            aquariumRepository.deleteAllById(ids);
+        }
+    }
+
+    // Test a segment failing at every run doesn't stop the others, and keeps one checkpoint gathering the missed ticks
+    @Test
+    public void failingSegmentDoesNotBlockOthers() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Aquarium aquarium = new Aquarium();
+            aquarium.setCapacity(10L);
+            ids.add(aquariumRepository.save(aquarium).getId());
+        }
+
+        Integer partitionSize = tickProperties.getPartitionSize();
+        Integer parallelism = tickProperties.getParallelism();
+        tickProperties.setPartitionSize(1);
+        tickProperties.setParallelism(3);
+        try {
+            Map<Long, List<Long>> applied = new ConcurrentHashMap<>();
+            AtomicBoolean failing = new AtomicBoolean(true);
+            PartitionTask task = (fromId, toId, ticks) -> {
+                if (failing.get() && fromId.equals(ids.get(2))) {
+                    throw new IllegalStateException("Chunk failed");
+                }
+                applied.computeIfAbsent(fromId, id -> new CopyOnWriteArrayList<>()).add(ticks);
+            };
+
+            // Segments [0, 1], [2, 3] and [4], the second one fails at its first aquarium
+            for (long tickNumber = 1; tickNumber <= 3; tickNumber++) {
+                long run = tickNumber;
+                assertThrows(TickCheckpointedException.class, () -> partitionedTickExecutor.execute(TICK, run, 1, ids, task));
+            }
+            List<TickCheckpoint> checkpoints = tickCheckpointRepository.findByTickOrderById(TICK);
+            assertEquals(1, checkpoints.size());
+            assertEquals(3, checkpoints.get(0).getTicks());
+            assertEquals(3, checkpoints.get(0).getTickNumber());
+
+            // Once fixed, the blocked aquariums get all their ticks at once
+            failing.set(false);
+            partitionedTickExecutor.execute(TICK, 4, 1, ids, task);
+
+            for (int i : List.of(0, 1, 4)) {
+                assertEquals(List.of(1L, 1L, 1L, 1L), applied.get(ids.get(i)));
+            }
+            for (int i : List.of(2, 3)) {
+                assertEquals(List.of(4L), applied.get(ids.get(i)));
+            }
+            assertTrue(tickCheckpointRepository.findByTickOrderById(TICK).isEmpty());
+        } finally {
+            tickProperties.setPartitionSize(partitionSize);
+            tickProperties.setParallelism(parallelism);
+            tickCheckpointRepository.deleteAll(tickCheckpointRepository.findByTickOrderById(TICK));
+            aquariumRepository.deleteAllById(ids);
+        }
+    }
+}
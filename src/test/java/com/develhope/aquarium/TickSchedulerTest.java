@@ -0,0 +1,148 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.configurations.TickProperties;
+import com.develhope.aquarium.exceptions.TickCheckpointedException;
+import com.develhope.aquarium.metrics.TickMetrics;
+import com.develhope.aquarium.simulation.SimulationClock;
+import com.develhope.aquarium.simulation.TickScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/**
+ * Drives the scheduler with a clock and an executor moved forward by the test, so no run depends on real time.
+ */
+public class TickSchedulerTest {
+
+    private static final Duration PERIOD = Duration.ofMinutes(1);
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    // Runs scheduled on the executor, run once the clock reaches their time
+    private final List<ScheduledRun> scheduledRuns = new ArrayList<>();
+
+    private MeterRegistry meterRegistry;
+
+    private TickScheduler tickScheduler;
+
+    private record ScheduledRun(Runnable runnable, long nanoTime) {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        TickProperties tickProperties = new TickProperties();
+        tickProperties.setStatsPeriod(PERIOD);
+        SimulationClock simulationClock = new SimulationClock(nanoTime::get);
+        setField(simulationClock, "tickProperties", tickProperties);
+        meterRegistry = new SimpleMeterRegistry();
+        TickMetrics tickMetrics = new TickMetrics();
+        setField(tickMetrics, "meterRegistry", meterRegistry);
+        setField(tickMetrics, "tickProperties", tickProperties);
+
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        when(executor.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            long delay = invocation.<TimeUnit>getArgument(2).toNanos(invocation.getArgument(1));
+            scheduledRuns.add(new ScheduledRun(invocation.getArgument(0), nanoTime.get() + delay));
+            return null;
+        });
+
+        tickScheduler = new TickScheduler();
+        setField(tickScheduler, "simulationClock", simulationClock);
+        setField(tickScheduler, "tickMetrics", tickMetrics);
+        setField(tickScheduler, "executorFactory", (Function<String, ScheduledExecutorService>) tick -> executor);
+    }
+
+    // Test late ticks are coalesced into the next run
+    @Test
+    public void coalescesLateTicks() {
+        List<Long> runs = new ArrayList<>();
+        tickScheduler.schedule(TickMetrics.STATS, PERIOD, ticks -> {
+            runs.add(ticks);
+
+            // The first run overruns by three periods
+            if (runs.size() == 1) {
+                nanoTime.addAndGet(PERIOD.multipliedBy(3).toNanos());
+            }
+        });
+
+        advance(PERIOD);
+        assertEquals(List.of(1L, 3L), runs);
+        advance(PERIOD);
+        assertEquals(List.of(1L, 3L, 1L), runs);
+        assertEquals(2, meterRegistry.get("aquarium.tick.coalesced").counter().count(), 0.1);
+    }
+
+    // Test the ticks of a failed run are passed to the next run, which isn't started before its deadline
+    @Test
+    public void carriesOverFailedTicks() {
+        List<Long> runs = new ArrayList<>();
+        tickScheduler.schedule(TickMetrics.STATS, PERIOD, ticks -> {
+            runs.add(ticks);
+            if (runs.size() == 1) {
+                throw new IllegalStateException("Tick failed");
+            }
+        });
+
+        advance(PERIOD);
+        assertEquals(List.of(1L), runs);
+        advance(PERIOD.dividedBy(2));
+        assertEquals(List.of(1L), runs);
+        advance(PERIOD.dividedBy(2));
+        assertEquals(List.of(1L, 2L), runs);
+        advance(PERIOD);
+        assertEquals(List.of(1L, 2L, 1L), runs);
+        assertEquals(1, meterRegistry.get("aquarium.tick.failures").counter().count(), 0.1);
+    }
+
+    // Test the ticks of a run failing with checkpoints aren't passed again, the checkpoints resume them
+    @Test
+    public void doesNotCarryOverCheckpointedTicks() {
+        List<Long> runs = new ArrayList<>();
+        tickScheduler.schedule(TickMetrics.STATS, PERIOD, ticks -> {
+            runs.add(ticks);
+            if (runs.size() == 1) {
+                throw new TickCheckpointedException("Segments failed", new IllegalStateException("Chunk failed"));
+            }
+        });
+
+        advance(PERIOD);
+        advance(PERIOD);
+        assertEquals(List.of(1L, 1L), runs);
+        assertEquals(1, meterRegistry.get("aquarium.tick.failures").counter().count(), 0.1);
+    }
+
+    /**
+     * Moves the clock forward and runs the scheduled runs which are due, including the ones they schedule.
+     * @param duration
+     */
+    private void advance(Duration duration) {
+        nanoTime.addAndGet(duration.toNanos());
+        while (true) {
+            Optional<ScheduledRun> due = scheduledRuns.stream()
+                    .filter(run -> run.nanoTime() <= nanoTime.get())
+                    .findFirst();
+            if (due.isEmpty()) {
+                return;
+            }
+            scheduledRuns.remove(due.get());
+            due.get().runnable().run();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.develhope.aquarium;
+
+import com.develhope.aquarium.entities.Fish;
+import com.develhope.aquarium.enumerations.FishSpecies;
+import com.develhope.aquarium.repositories.FishRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a world of aquariums and fishes straight into the database with JDBC batches.
+ * All values come from a random generator with the given seed, so the same seed always gives the same world.
+ * Fishes are generated healthy and in clean aquariums, so that the world doesn't die out during a test.
+ */
+public class WorldGenerator {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Room left in every aquarium for the fishes added during a test
+    private static final int SPARE_CAPACITY = 20;
+
+    private static final FishSpecies[] SPECIES = FishSpecies.values();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FishRepository fishRepository;
+
+    public WorldGenerator(JdbcTemplate jdbcTemplate, FishRepository fishRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fishRepository = fishRepository;
+    }
+
+    /**
+     * Inserts the given number of aquariums and fishes, fishes are spread randomly over the aquariums.
+     * Must run in a transaction.
+     * @param aquariums
+     * @param fishes
+     * @param seed
+     */
+    public void generate(int aquariums, int fishes, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // Fishes are assigned first, so that every aquarium gets the capacity it needs
+        int[] fishAquariums = new int[fishes];
+        long[] fishCounts = new long[aquariums + 1];
+        for (int i = 0; i < fishes; i++) {
+            fishAquariums[i] = 1 + random.nextInt(aquariums);
+            fishCounts[fishAquariums[i]]++;
+        }
+
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int id = 1; id <= aquariums; id++) {
+            rows.add(new Object[]{id, fishCounts[id] + SPARE_CAPACITY, random.nextInt(60, 101),
+                    random.nextInt(20, 31), fishCounts[id]});
+            if (rows.size() == BATCH_SIZE || id == aquariums) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO aquariums (id, capacity, clearness, temperature, fish_count) VALUES (?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        for (int id = 1; id <= fishes; id++) {
+            rows.add(new Object[]{id, "Fish " + id, SPECIES[random.nextInt(SPECIES.length)].name(),
+                    random.nextInt(0, Fish.LOW_HUNGER + 1), random.nextInt(80, 101), random.nextInt(0, 1000),
+                    fishAquariums[id - 1]});
+            if (rows.size() == BATCH_SIZE || id == fishes) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO fishes (id, name, species, hunger, health, age, aquarium_id) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        // New fishes must get ids after the generated ones
+        fishRepository.advanceIdSequence((long) fishes + Fish.ID_ALLOCATION_SIZE);
+    }
+}
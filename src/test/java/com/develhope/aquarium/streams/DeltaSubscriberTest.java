@@ -0,0 +1,103 @@
+package com.develhope.aquarium.streams;
+
+import com.develhope.aquarium.dtos.AquariumDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DeltaSubscriberTest {
+
+    private SseEmitter emitter;
+    private DeltaSubscriber subscriber;
+
+    @BeforeEach
+    public void setUp() {
+        emitter = mock(SseEmitter.class);
+        subscriber = new DeltaSubscriber(emitter, null);
+    }
+
+    // Test deltas offered before the send starts are merged into one delta per aquarium and sent in one event
+    @Test
+    public void coalescesPendingDeltas() throws IOException {
+        assertTrue(subscriber.offer(List.of(clearness(1L, 99))));
+        assertFalse(subscriber.offer(List.of(clearness(1L, 98), clearness(2L, 50))));
+
+        assertTrue(subscriber.send());
+
+        assertEquals(List.of(List.of(clearness(1L, 98), clearness(2L, 50))), sentEvents(1));
+    }
+
+    // Test deltas offered while an event is being sent wait for it and are merged into the next event
+    @Test
+    public void coalescesDeltasOfferedWhileSending() throws IOException {
+        doAnswer(invocation -> {
+            assertFalse(subscriber.offer(List.of(clearness(1L, 97))));
+            assertFalse(subscriber.offer(List.of(clearness(1L, 96))));
+            return null;
+        }).doNothing().when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+
+        assertTrue(subscriber.offer(List.of(clearness(1L, 99))));
+        assertTrue(subscriber.send());
+
+        assertEquals(List.of(List.of(clearness(1L, 99)), List.of(clearness(1L, 96))), sentEvents(2));
+
+        // The send is over, so the next offer starts another one
+        assertTrue(subscriber.offer(List.of(clearness(1L, 95))));
+    }
+
+    // Test only the deltas of the subscribed aquariums are kept
+    @Test
+    public void filtersAquariums() throws IOException {
+        subscriber = new DeltaSubscriber(emitter, Set.of(2L));
+
+        assertFalse(subscriber.offer(List.of(clearness(1L, 99))));
+        assertTrue(subscriber.offer(List.of(clearness(1L, 98), clearness(2L, 50))));
+        assertTrue(subscriber.send());
+
+        assertEquals(List.of(List.of(clearness(2L, 50))), sentEvents(1));
+    }
+
+    // Test a failed send closes the subscriber, which refuses further deltas
+    @Test
+    public void closesOnFailedSend() throws IOException {
+        doThrow(new IOException("Broken pipe")).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+
+        assertTrue(subscriber.offer(List.of(clearness(1L, 99))));
+        assertFalse(subscriber.send());
+
+        assertFalse(subscriber.offer(List.of(clearness(1L, 98))));
+    }
+
+    private static AquariumDelta clearness(Long aquariumId, Integer clearness) {
+        return new AquariumDelta(aquariumId, null, clearness, null, List.of(), List.of(), null);
+    }
+
+    /**
+     * @param count expected number of sent events.
+     * @return the deltas of each sent event.
+     */
+    private List<Object> sentEvents(int count) throws IOException {
+        ArgumentCaptor<SseEmitter.SseEventBuilder> events = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, times(count)).send(events.capture());
+
+        List<Object> deltas = new ArrayList<>();
+        for (SseEmitter.SseEventBuilder event : events.getAllValues()) {
+            event.build().stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .filter(List.class::isInstance)
+                    .forEach(deltas::add);
+        }
+        return deltas;
+    }
+}